@@ -0,0 +1,23 @@
+package si.uni.fri.sprouty.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import si.uni.fri.sprouty.ratelimit.RateLimitProperties;
+import si.uni.fri.sprouty.ratelimit.RateLimiter;
+
+@Configuration
+public class RateLimitConfig {
+
+    @Bean
+    @ConfigurationProperties("sprouty.gateway.rate-limit")
+    public RateLimitProperties rateLimitProperties() {
+        return new RateLimitProperties();
+    }
+
+    @Bean
+    public RateLimiter rateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        return new RateLimiter(properties, meterRegistry);
+    }
+}
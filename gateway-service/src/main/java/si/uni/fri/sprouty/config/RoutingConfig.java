@@ -0,0 +1,22 @@
+package si.uni.fri.sprouty.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import si.uni.fri.sprouty.routing.RouteClassifier;
+import si.uni.fri.sprouty.routing.RoutingProperties;
+
+@Configuration
+public class RoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("sprouty.gateway.routing")
+    public RoutingProperties routingProperties() {
+        return new RoutingProperties();
+    }
+
+    @Bean
+    public RouteClassifier routeClassifier(RoutingProperties properties) {
+        return RouteClassifier.from(properties);
+    }
+}
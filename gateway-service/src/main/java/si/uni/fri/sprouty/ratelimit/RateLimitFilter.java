@@ -0,0 +1,103 @@
+package si.uni.fri.sprouty.ratelimit;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import si.uni.fri.sprouty.routing.RouteClassifier;
+import si.uni.fri.sprouty.routing.RoutePolicy;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throttles requests at the edge, before they are routed to a service.
+ * Runs right after JwtAuthFilter: authenticated routes are limited per verified user, public routes per
+ * client address, taken from the connection or from the hop added by a trusted proxy, never from a value
+ * the client controls. A device's X-Sensor-Id only picks its own bucket within its address's limit.
+ * Throttled requests get 429 with Retry-After.
+ */
+@Component
+@ConditionalOnProperty(value = "sprouty.gateway.rate-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class RateLimitFilter implements GlobalFilter, Ordered {
+
+    static final String SENSOR_ID_HEADER = "X-Sensor-Id";
+    static final String FORWARDED_FOR_HEADER = "X-Forwarded-For";
+
+    record ClientKey(String key, String subKey) {}
+
+    private final RouteClassifier routeClassifier;
+    private final RateLimiter rateLimiter;
+    private final int trustedProxies;
+
+    public RateLimitFilter(RouteClassifier routeClassifier, RateLimiter rateLimiter, RateLimitProperties properties) {
+        this.routeClassifier = routeClassifier;
+        this.rateLimiter = rateLimiter;
+        this.trustedProxies = Math.max(0, properties.getTrustedProxies());
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        RoutePolicy policy = routeClassifier.classify(exchange.getRequest().getURI().getPath());
+        if (!rateLimiter.isMetered(policy.rateLimitClass())) {
+            return chain.filter(exchange);
+        }
+
+        ClientKey client = clientKey(exchange.getRequest(), policy);
+        long waitNanos = rateLimiter.tryAcquire(policy.rateLimitClass(), client.key(), client.subKey());
+        if (waitNanos == 0) {
+            return chain.filter(exchange);
+        }
+
+        long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        exchange.getResponse().getHeaders().setContentType(MediaType.TEXT_PLAIN);
+        return exchange.getResponse().setComplete();
+    }
+
+    ClientKey clientKey(ServerHttpRequest request, RoutePolicy policy) {
+        HttpHeaders headers = request.getHeaders();
+        // X-User-Id is only trusted on authenticated routes, where JwtAuthFilter has just set it
+        if (policy.requiresAuth()) {
+            String userId = headers.getFirst("X-User-Id");
+            if (userId != null) return new ClientKey("user:" + userId, null);
+        }
+
+        String address = "ip:" + clientAddress(request);
+        String sensorId = policy.requiresAuth() ? null : headers.getFirst(SENSOR_ID_HEADER);
+        return new ClientKey(address, sensorId != null && !sensorId.isBlank() ? "sensor:" + sensorId.trim() : null);
+    }
+
+    /**
+     * The address the outermost trusted proxy saw the request come from: with n trusted proxies, the n-th
+     * X-Forwarded-For hop from the right. Hops further left were sent by the client and are ignored.
+     */
+    private String clientAddress(ServerHttpRequest request) {
+        if (trustedProxies > 0) {
+            List<String> hops = new ArrayList<>();
+            for (String value : request.getHeaders().getOrEmpty(FORWARDED_FOR_HEADER)) {
+                for (String hop : value.split(",")) {
+                    if (!hop.isBlank()) hops.add(hop.trim());
+                }
+            }
+            if (!hops.isEmpty()) return hops.get(Math.max(0, hops.size() - trustedProxies));
+        }
+        InetSocketAddress remote = request.getRemoteAddress();
+        return remote != null && remote.getAddress() != null ? remote.getAddress().getHostAddress() : "unknown";
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 1;
+    }
+}
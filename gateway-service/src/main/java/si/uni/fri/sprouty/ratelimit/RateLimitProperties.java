@@ -0,0 +1,51 @@
+package si.uni.fri.sprouty.ratelimit;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Request rate limits, bound from sprouty.gateway.rate-limit.
+ * Each entry under classes is a limit that routes refer to by their rate-limit class; routes whose
+ * class has no entry here are not metered.
+ */
+@Getter
+@Setter
+public class RateLimitProperties {
+
+    /**
+     * Gateway replicas that share each limit. Every replica enforces its share of the rate, which holds
+     * the total close to the configured rate as long as the load balancer spreads clients evenly.
+     */
+    private int replicas = 1;
+
+    /** Buckets kept in memory, and how long an unused one is kept before it is dropped. */
+    private long maxKeys = 100_000;
+    private Duration idleTimeout = Duration.ofMinutes(10);
+
+    /**
+     * Proxies in front of the gateway that append the caller's address to X-Forwarded-For. Anonymous
+     * clients are keyed by the hop the outermost of them added; with 0 the header is ignored and the
+     * connection's remote address is used, since every hop a client sends itself can be forged.
+     */
+    private int trustedProxies = 0;
+
+    private Map<String, Limit> classes = new LinkedHashMap<>();
+
+    @Getter
+    @Setter
+    public static class Limit {
+        private double requestsPerSecond = 10;
+        /** Requests a client can send at once after being idle. */
+        private int burst = 20;
+        /**
+         * Sensors expected behind one address, such as a home router. Requests that name a sensor are
+         * limited per sensor and, at this many times the rate and burst, per address, so rotating
+         * sensor IDs from one address earns no more than that.
+         */
+        private int sensorsPerAddress = 1;
+    }
+}
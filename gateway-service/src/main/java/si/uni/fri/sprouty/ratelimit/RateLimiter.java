@@ -0,0 +1,111 @@
+package si.uni.fri.sprouty.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets per (rate-limit class, client key), implemented with the generic cell rate algorithm:
+ * a bucket is a single theoretical arrival time, advanced by one emission interval per admitted request
+ * with a compare-and-set, so admitting a request never takes a lock. A request conforms while the
+ * theoretical arrival time is at most burst - 1 intervals ahead of now.
+ * Buckets live in a bounded cache and are dropped after idleTimeout without requests; a dropped
+ * bucket is full again, which is what an idle client would have anyway.
+ * A request may name a sub-key within its key, such as a sensor behind an address: it then has to conform
+ * to the key's bucket, at the class's shared rate, before the sub-key's bucket is consulted or created,
+ * so sub-keys a client makes up neither raise its rate nor crowd other clients out of the cache.
+ */
+public class RateLimiter {
+
+    private record Rate(long intervalNanos, long toleranceNanos) {
+        static Rate of(double requestsPerSecond, int burst, int replicas) {
+            // Each replica admits its share of the rate and of the burst
+            long interval = (long) (TimeUnit.SECONDS.toNanos(1) * replicas / requestsPerSecond);
+            int share = Math.max(1, burst / replicas);
+            return new Rate(interval, interval * (share - 1));
+        }
+    }
+
+    private record Limit(Rate perKey, Rate shared) {}
+
+    private final Map<String, Limit> limits = new HashMap<>();
+    private final Map<String, Counter> throttled = new HashMap<>();
+    private final Cache<String, AtomicLong> buckets;
+    private final LongSupplier nanoClock;
+
+    public RateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::nanoTime);
+    }
+
+    RateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        int replicas = Math.max(1, properties.getReplicas());
+        properties.getClasses().forEach((name, limit) -> {
+            if (limit.getRequestsPerSecond() <= 0 || limit.getBurst() < 1 || limit.getSensorsPerAddress() < 1) {
+                throw new IllegalArgumentException("Rate limit class " + name + " needs a positive rate, burst and sensors per address");
+            }
+            int shared = limit.getSensorsPerAddress();
+            limits.put(name, new Limit(
+                    Rate.of(limit.getRequestsPerSecond(), limit.getBurst(), replicas),
+                    Rate.of(limit.getRequestsPerSecond() * shared, limit.getBurst() * shared, replicas)));
+            throttled.put(name, Counter.builder("sprouty.gateway.ratelimit.throttled")
+                    .description("Requests rejected by the gateway rate limiter")
+                    .tag("class", name)
+                    .register(meterRegistry));
+        });
+
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxKeys())
+                .expireAfterAccess(properties.getIdleTimeout())
+                .build();
+        meterRegistry.gauge("sprouty.gateway.ratelimit.buckets", buckets, Cache::estimatedSize);
+    }
+
+    public boolean isMetered(String limitClass) {
+        return limitClass != null && limits.containsKey(limitClass);
+    }
+
+    /**
+     * Admits one request for the key. Returns 0 if it was admitted, otherwise how many nanoseconds
+     * until the next request would be.
+     */
+    public long tryAcquire(String limitClass, String key) {
+        return tryAcquire(limitClass, key, null);
+    }
+
+    /**
+     * Admits one request for the sub-key within the key: the key's bucket at the shared rate first, then
+     * the sub-key's own. Without a sub-key this is the key's bucket at the class's rate.
+     */
+    public long tryAcquire(String limitClass, String key, String subKey) {
+        Limit limit = limitClass != null ? limits.get(limitClass) : null;
+        if (limit == null) return 0;
+
+        if (subKey == null) return acquire(limitClass, limitClass + ':' + key, limit.perKey());
+        long waitNanos = acquire(limitClass, limitClass + ':' + key, limit.shared());
+        if (waitNanos != 0) return waitNanos;
+        return acquire(limitClass, limitClass + ':' + key + '/' + subKey, limit.perKey());
+    }
+
+    private long acquire(String limitClass, String bucket, Rate rate) {
+        AtomicLong arrival = buckets.get(bucket, k -> new AtomicLong(Long.MIN_VALUE));
+        while (true) {
+            long now = nanoClock.getAsLong();
+            long current = arrival.get();
+            long start = Math.max(current, now);
+            long ahead = start - now;
+            if (ahead > rate.toleranceNanos()) {
+                throttled.get(limitClass).increment();
+                return ahead - rate.toleranceNanos();
+            }
+            if (arrival.compareAndSet(current, start + rate.intervalNanos())) return 0;
+        }
+    }
+}
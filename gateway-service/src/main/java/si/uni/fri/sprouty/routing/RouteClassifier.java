@@ -0,0 +1,127 @@
+package si.uni.fri.sprouty.routing;
+
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maps a request path to its {@link RoutePolicy} by longest matching prefix.
+ * The rules are compiled at startup into an immutable character trie whose nodes keep their edges in
+ * sorted arrays, so classifying a path is one walk over its characters with a binary search per step,
+ * without allocating.
+ */
+public final class RouteClassifier {
+
+    private static final class Node {
+        private final char[] labels;
+        private final Node[] children;
+        private final RoutePolicy policy;
+
+        private Node(char[] labels, Node[] children, RoutePolicy policy) {
+            this.labels = labels;
+            this.children = children;
+            this.policy = policy;
+        }
+    }
+
+    private final Node root;
+    private final RoutePolicy defaultPolicy;
+    private final int size;
+
+    private RouteClassifier(Node root, RoutePolicy defaultPolicy, int size) {
+        this.root = root;
+        this.defaultPolicy = defaultPolicy;
+        this.size = size;
+    }
+
+    public static RouteClassifier from(RoutingProperties properties) {
+        RoutePolicy defaultPolicy = new RoutePolicy(null, properties.getDefaultAccess(), properties.getDefaultRateLimitClass());
+        Builder root = new Builder();
+        for (RoutingProperties.Rule rule : properties.getRules()) {
+            String prefix = rule.getPrefix();
+            if (prefix == null || !prefix.startsWith("/")) {
+                throw new IllegalArgumentException("Route prefix must start with '/': " + prefix);
+            }
+            String rateLimitClass = rule.getRateLimitClass() != null ? rule.getRateLimitClass() : properties.getDefaultRateLimitClass();
+
+            Builder node = root;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.children.computeIfAbsent(prefix.charAt(i), c -> new Builder());
+            }
+            if (node.policy != null) {
+                throw new IllegalArgumentException("Duplicate route prefix: " + prefix);
+            }
+            node.policy = new RoutePolicy(prefix, rule.getAccess(), rateLimitClass);
+        }
+        return new RouteClassifier(root.freeze(), defaultPolicy, properties.getRules().size());
+    }
+
+    /**
+     * Decodes a raw request path into the path downstream services will route, or returns null if the path
+     * holds anything they could resolve differently from this classifier: dot segments, empty segments,
+     * matrix parameters, backslashes or encoded separators.
+     */
+    public static String normalize(String rawPath) {
+        if (rawPath == null) return null;
+        String path = rawPath;
+        if (rawPath.indexOf('%') >= 0) {
+            String lower = rawPath.toLowerCase(Locale.ROOT);
+            if (lower.contains("%2f") || lower.contains("%5c")) return null;
+            try {
+                path = UriUtils.decode(rawPath, StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        if (path.indexOf(';') >= 0 || path.indexOf('\\') >= 0) return null;
+
+        int segmentStart = 0;
+        for (int i = 0; i <= path.length(); i++) {
+            if (i < path.length() && path.charAt(i) != '/') continue;
+            int length = i - segmentStart;
+            // An empty segment is only allowed as the leading root or a trailing slash
+            if (length == 0 && segmentStart > 0 && i < path.length()) return null;
+            if (length == 1 && path.charAt(segmentStart) == '.') return null;
+            if (length == 2 && path.charAt(segmentStart) == '.' && path.charAt(segmentStart + 1) == '.') return null;
+            segmentStart = i + 1;
+        }
+        return path;
+    }
+
+    public RoutePolicy classify(String path) {
+        RoutePolicy match = defaultPolicy;
+        Node node = root;
+        for (int i = 0; i < path.length(); i++) {
+            int slot = Arrays.binarySearch(node.labels, path.charAt(i));
+            if (slot < 0) break;
+            node = node.children[slot];
+            if (node.policy != null) match = node.policy;
+        }
+        return match;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static final class Builder {
+        private final Map<Character, Builder> children = new TreeMap<>();
+        private RoutePolicy policy;
+
+        private Node freeze() {
+            char[] labels = new char[children.size()];
+            Node[] frozen = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, Builder> child : children.entrySet()) {
+                labels[i] = child.getKey();
+                frozen[i] = child.getValue().freeze();
+                i++;
+            }
+            return new Node(labels, frozen, policy);
+        }
+    }
+}
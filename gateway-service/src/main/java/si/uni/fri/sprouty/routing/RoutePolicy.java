@@ -0,0 +1,17 @@
+package si.uni.fri.sprouty.routing;
+
+/**
+ * What the gateway enforces for a request path: whether a verified token is required, and which
+ * rate-limit class the request counts against. prefix is the matching rule's prefix, or null for the default.
+ */
+public record RoutePolicy(String prefix, Access access, String rateLimitClass) {
+
+    public enum Access {
+        PUBLIC,
+        AUTHENTICATED
+    }
+
+    public boolean requiresAuth() {
+        return access == Access.AUTHENTICATED;
+    }
+}
@@ -0,0 +1,31 @@
+package si.uni.fri.sprouty.routing;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-route policies for the gateway, bound from sprouty.gateway.routing.
+ * A rule applies to every path that starts with its prefix; when several rules match, the one with
+ * the longest prefix wins, so a narrower rule can override a broader one. Paths that match no rule
+ * get the defaults.
+ */
+@Getter
+@Setter
+public class RoutingProperties {
+
+    private RoutePolicy.Access defaultAccess = RoutePolicy.Access.AUTHENTICATED;
+    private String defaultRateLimitClass = "standard";
+    private List<Rule> rules = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Rule {
+        private String prefix;
+        private RoutePolicy.Access access = RoutePolicy.Access.AUTHENTICATED;
+        /** Falls back to defaultRateLimitClass when not set. */
+        private String rateLimitClass;
+    }
+}
@@ -1,10 +1,7 @@
 package si.uni.fri.sprouty.security;
 
-import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.JwtException;
-import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
-import jakarta.annotation.PostConstruct;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.Ordered;
 import org.springframework.http.HttpHeaders;
@@ -15,89 +12,72 @@ import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
+import si.uni.fri.sprouty.routing.RouteClassifier;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
+import java.time.Duration;
 
 @Component
 public class JwtAuthFilter implements GlobalFilter, Ordered {
 
-    private final List<String> publicEndpoints = List.of(
-            "/actuator",
-            "/users/actuator",
-            "/plants/actuator",
-            "/sensors/actuator",
-            "/notifications/actuator",
-            "/users/login",
-            "/users/register",
-            "/sensors",
-            "/swagger-ui",
-            "/v3/api-docs",
-            "/users/swagger-ui",
-            "/plants/swagger-ui",
-            "/sensors/swagger-ui",
-            "/notifications/swagger-ui",
-            "/users/v3/api-docs",
-            "/plants/v3/api-docs",
-            "/sensors/v3/api-docs",
-            "/notifications/v3/api-docs"
-    );
+    static final String USER_ID_HEADER = "X-User-Id";
 
-    @Value("${jwt.secret}")
-    private String secretKey;
+    private final RouteClassifier routeClassifier;
+    private final TokenVerifier tokenVerifier;
 
-    private SecretKey signingKey;
-
-    @PostConstruct
-    public void init() {
+    public JwtAuthFilter(@Value("${jwt.secret}") String secretKey, RouteClassifier routeClassifier, MeterRegistry meterRegistry,
+                         @Value("${sprouty.gateway.token-cache.max-size:10000}") long tokenCacheSize,
+                         @Value("${sprouty.gateway.token-cache.max-ttl:15m}") Duration tokenCacheTtl) {
+        this.routeClassifier = routeClassifier;
         if (secretKey != null && !secretKey.isBlank()) {
-            byte[] keyBytes = secretKey.getBytes(StandardCharsets.UTF_8);
-            this.signingKey = Keys.hmacShaKeyFor(keyBytes);
+            SecretKey signingKey = Keys.hmacShaKeyFor(secretKey.getBytes(StandardCharsets.UTF_8));
+            this.tokenVerifier = new TokenVerifier(signingKey, meterRegistry, tokenCacheSize, tokenCacheTtl);
+        } else {
+            // Without a secret no token can be verified, so every protected route answers 401
+            this.tokenVerifier = null;
         }
     }
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
-        String path = exchange.getRequest().getURI().getPath();
+        // Classify the path the services will route, so no spelling of a protected path falls under a public rule
+        String path = RouteClassifier.normalize(exchange.getRequest().getURI().getRawPath());
+        if (path == null) {
+            return reject(exchange, HttpStatus.BAD_REQUEST);
+        }
 
-        if (publicEndpoints.stream().anyMatch(path::startsWith)) {
-            return chain.filter(exchange);
+        // Services trust X-User-Id as the authenticated user; only a verified token may set it
+        ServerWebExchange stripped = exchange.getRequest().getHeaders().containsKey(USER_ID_HEADER)
+                ? exchange.mutate().request(r -> r.headers(headers -> headers.remove(USER_ID_HEADER))).build()
+                : exchange;
+
+        if (!routeClassifier.classify(path).requiresAuth()) {
+            return chain.filter(stripped);
         }
 
         if (exchange.getRequest().getMethod().name().equals("OPTIONS")) {
-            return chain.filter(exchange);
+            return chain.filter(stripped);
         }
 
         String authHeader = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            return unauthorized(exchange);
+            return reject(exchange, HttpStatus.UNAUTHORIZED);
         }
 
-        String token = authHeader.substring(7);
-        try {
-            Claims claims = Jwts.parser()
-                    .verifyWith(signingKey)
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload();
-
-            String subject = claims.getSubject();
-            if (subject != null && !subject.isBlank()) {
-                ServerWebExchange mutatedExchange = exchange.mutate()
-                        .request(r -> r.header("X-User-Id", subject))
-                        .build();
-                return chain.filter(mutatedExchange);
-            }
-        } catch (JwtException | IllegalArgumentException e) {
-            return unauthorized(exchange);
+        String subject = tokenVerifier != null ? tokenVerifier.verify(authHeader.substring(7)) : null;
+        if (subject == null) {
+            return reject(exchange, HttpStatus.UNAUTHORIZED);
         }
 
-        return unauthorized(exchange);
+        ServerWebExchange mutatedExchange = exchange.mutate()
+                .request(r -> r.headers(headers -> headers.set(USER_ID_HEADER, subject)))
+                .build();
+        return chain.filter(mutatedExchange);
     }
 
-    private Mono<Void> unauthorized(ServerWebExchange exchange) {
-        exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
+    private Mono<Void> reject(ServerWebExchange exchange, HttpStatus status) {
+        exchange.getResponse().setStatusCode(status);
         exchange.getResponse().getHeaders().setContentType(MediaType.TEXT_PLAIN);
         return exchange.getResponse().setComplete();
     }
@@ -0,0 +1,109 @@
+package si.uni.fri.sprouty.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HexFormat;
+
+/**
+ * Verifies bearer tokens with a parser built once, and remembers verified tokens until they expire,
+ * so a client sending the same token on every call skips the signature check and claims parsing.
+ * Entries are keyed by the token's SHA-256 digest, so raw tokens are not kept on the heap, and live
+ * no longer than the token's own expiry or maxTtl, whichever comes first.
+ */
+public class TokenVerifier {
+
+    record VerifiedToken(String subject, long expiresAt) {}
+
+    private final JwtParser parser;
+    private final Cache<String, VerifiedToken> cache;
+    private final Counter rejected;
+
+    public TokenVerifier(SecretKey signingKey, MeterRegistry meterRegistry, long maxSize, Duration maxTtl) {
+        this.parser = Jwts.parser().verifyWith(signingKey).build();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+                        long remainingMs = Math.max(0, token.expiresAt() - System.currentTimeMillis());
+                        return Duration.ofMillis(Math.min(remainingMs, maxTtl.toMillis())).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken token, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, token, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken token, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        // Exposes cache_gets{result=hit|miss} and friends, from which the hit rate follows
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt_tokens");
+        this.rejected = Counter.builder("sprouty.gateway.jwt.rejected")
+                .description("Bearer tokens that failed verification")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the token's subject, or null if the token is invalid, expired or has no subject.
+     */
+    public String verify(String token) {
+        String key = digest(token);
+        VerifiedToken cached = cache.getIfPresent(key);
+        if (cached != null && cached.expiresAt() > System.currentTimeMillis()) {
+            return cached.subject();
+        }
+
+        Claims claims;
+        try {
+            claims = parser.parseSignedClaims(token).getPayload();
+        } catch (JwtException | IllegalArgumentException e) {
+            rejected.increment();
+            return null;
+        }
+
+        String subject = claims.getSubject();
+        if (subject == null || subject.isBlank()) {
+            rejected.increment();
+            return null;
+        }
+
+        Date expiration = claims.getExpiration();
+        cache.put(key, new VerifiedToken(subject, expiration != null ? expiration.getTime() : Long.MAX_VALUE));
+        return subject;
+    }
+
+    long cachedTokens() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -2,18 +2,28 @@ package si.uni.fri.sprouty;
 
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
 import org.springframework.mock.web.server.MockServerWebExchange;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
+import si.uni.fri.sprouty.routing.RouteClassifier;
+import si.uni.fri.sprouty.routing.RoutePolicy;
+import si.uni.fri.sprouty.routing.RoutingProperties;
 import si.uni.fri.sprouty.security.JwtAuthFilter;
 
 import javax.crypto.SecretKey;
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 
 class JwtAuthFilterTest {
@@ -22,13 +32,14 @@ class JwtAuthFilterTest {
     private SecretKey key;
 
     @BeforeEach
-    void setUp() throws Exception {
-        filter = new JwtAuthFilter();
-        var field = JwtAuthFilter.class.getDeclaredField("secretKey");
-        field.setAccessible(true);
+    void setUp() {
         String secret = "my-super-secret-test-key-that-is-at-least-32-characters-long";
-        field.set(filter, secret);
-        filter.init();
+        RoutingProperties routing = new RoutingProperties();
+        routing.setRules(List.of(
+                rule("/users/login", RoutePolicy.Access.PUBLIC),
+                rule("/sensors", RoutePolicy.Access.PUBLIC),
+                rule("/sensors/history", RoutePolicy.Access.AUTHENTICATED)));
+        filter = new JwtAuthFilter(secret, RouteClassifier.from(routing), new SimpleMeterRegistry(), 100, Duration.ofMinutes(15));
 
         this.key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
     }
@@ -67,4 +78,78 @@ class JwtAuthFilterTest {
                 "user123".equals(ex.getRequest().getHeaders().getFirst("X-User-Id"))
         ));
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldRejectSensorHistoryWithoutToken() {
+        MockServerHttpRequest request = MockServerHttpRequest.get("/sensors/history/plant1").build();
+        ServerWebExchange exchange = MockServerWebExchange.from(request);
+        GatewayFilterChain chain = mock(GatewayFilterChain.class);
+
+        filter.filter(exchange, chain).block();
+
+        verify(chain, never()).filter(any());
+        assertEquals(HttpStatus.UNAUTHORIZED, exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    void shouldStripClientSuppliedUserIdOnPublicRoutes() {
+        MockServerHttpRequest request = MockServerHttpRequest.post("/sensors/data").header("X-User-Id", "victim").build();
+        ServerWebExchange exchange = MockServerWebExchange.from(request);
+        GatewayFilterChain chain = mock(GatewayFilterChain.class);
+        when(chain.filter(any())).thenReturn(Mono.empty());
+
+        filter.filter(exchange, chain).block();
+
+        verify(chain).filter(argThat(ex -> !ex.getRequest().getHeaders().containsKey("X-User-Id")));
+    }
+
+    @Test
+    void shouldReplaceClientSuppliedUserIdWithTokenSubject() {
+        String token = Jwts.builder().subject("user123").signWith(key).compact();
+        MockServerHttpRequest request = MockServerHttpRequest.get("/sensors/history/plant1")
+                .header("Authorization", "Bearer " + token)
+                .header("X-User-Id", "victim")
+                .build();
+        ServerWebExchange exchange = MockServerWebExchange.from(request);
+        GatewayFilterChain chain = mock(GatewayFilterChain.class);
+        when(chain.filter(any())).thenReturn(Mono.empty());
+
+        filter.filter(exchange, chain).block();
+
+        verify(chain).filter(argThat(ex -> List.of("user123").equals(ex.getRequest().getHeaders().get("X-User-Id"))));
+    }
+
+    @Test
+    void shouldRejectPathsThatDownstreamWouldResolveIntoAProtectedRoute() {
+        for (String path : List.of("/sensors/./history/plant1", "/sensors/x/../history/plant1", "/sensors;a/history/plant1",
+                "/sensors//history/plant1", "/sensors/%2e/history/plant1", "/sensors%2Fhistory/plant1")) {
+            // Taken as is; the path template variant would percent-encode the escapes again
+            ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.method(HttpMethod.GET, URI.create(path)).build());
+            GatewayFilterChain chain = mock(GatewayFilterChain.class);
+
+            filter.filter(exchange, chain).block();
+
+            verify(chain, never()).filter(any());
+            assertEquals(HttpStatus.BAD_REQUEST, exchange.getResponse().getStatusCode(), path);
+        }
+    }
+
+    @Test
+    void shouldClassifyPercentEncodedPathsAfterDecoding() {
+        ServerWebExchange exchange = MockServerWebExchange.from(
+                MockServerHttpRequest.method(HttpMethod.GET, URI.create("/sensors/hi%73tory/plant1")).build());
+        GatewayFilterChain chain = mock(GatewayFilterChain.class);
+
+        filter.filter(exchange, chain).block();
+
+        verify(chain, never()).filter(any());
+        assertEquals(HttpStatus.UNAUTHORIZED, exchange.getResponse().getStatusCode());
+    }
+
+    private static RoutingProperties.Rule rule(String prefix, RoutePolicy.Access access) {
+        RoutingProperties.Rule rule = new RoutingProperties.Rule();
+        rule.setPrefix(prefix);
+        rule.setAccess(access);
+        return rule;
+    }
+}
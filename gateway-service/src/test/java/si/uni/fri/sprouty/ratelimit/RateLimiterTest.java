@@ -0,0 +1,121 @@
+package si.uni.fri.sprouty.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import si.uni.fri.sprouty.routing.RouteClassifier;
+import si.uni.fri.sprouty.routing.RoutePolicy;
+import si.uni.fri.sprouty.routing.RoutingProperties;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong(42 * SECOND);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void tryAcquire_ShouldAllowBurstThenRefillAtTheConfiguredRate() {
+        RateLimiter limiter = limiter(1, limit(2, 3));
+
+        for (int i = 0; i < 3; i++) assertEquals(0, limiter.tryAcquire("standard", "user:a"));
+        assertEquals(SECOND / 2, limiter.tryAcquire("standard", "user:a"));
+        // Other clients have their own buckets
+        assertEquals(0, limiter.tryAcquire("standard", "user:b"));
+
+        clock.addAndGet(SECOND / 2);
+        assertEquals(0, limiter.tryAcquire("standard", "user:a"));
+        assertTrue(limiter.tryAcquire("standard", "user:a") > 0);
+        assertEquals(2.0, registry.get("sprouty.gateway.ratelimit.throttled").tag("class", "standard").counter().count());
+    }
+
+    @Test
+    void tryAcquire_ShouldEnforceEachReplicasShare() {
+        RateLimiter limiter = limiter(2, limit(2, 4));
+
+        assertEquals(0, limiter.tryAcquire("standard", "user:a"));
+        assertEquals(0, limiter.tryAcquire("standard", "user:a"));
+        assertEquals(SECOND, limiter.tryAcquire("standard", "user:a"));
+        assertEquals(0, limiter.tryAcquire("unmetered", "user:a"));
+        assertFalse(limiter.isMetered("unmetered"));
+    }
+
+    @Test
+    void filter_ShouldAnswer429PerVerifiedUser_AndIgnoreUserHeaderOnPublicRoutes() {
+        RoutingProperties routing = new RoutingProperties();
+        RoutingProperties.Rule sensors = new RoutingProperties.Rule();
+        sensors.setPrefix("/sensors");
+        sensors.setAccess(RoutePolicy.Access.PUBLIC);
+        sensors.setRateLimitClass("standard");
+        routing.getRules().add(sensors);
+        RateLimitFilter filter = new RateLimitFilter(RouteClassifier.from(routing), limiter(1, limit(1, 1)), new RateLimitProperties());
+        GatewayFilterChain chain = mock(GatewayFilterChain.class);
+        when(chain.filter(any())).thenReturn(Mono.empty());
+
+        MockServerWebExchange first = MockServerWebExchange.from(MockServerHttpRequest.get("/plants/my-garden").header("X-User-Id", "user123"));
+        MockServerWebExchange second = MockServerWebExchange.from(MockServerHttpRequest.get("/plants/my-garden").header("X-User-Id", "user123"));
+        filter.filter(first, chain).block();
+        filter.filter(second, chain).block();
+
+        assertNull(first.getResponse().getStatusCode());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, second.getResponse().getStatusCode());
+        assertEquals("1", second.getResponse().getHeaders().getFirst("Retry-After"));
+        verify(chain, times(1)).filter(any());
+
+        // A public route never trusts a client-supplied user id, nor a client-supplied forwarding hop
+        RoutePolicy publicRoute = RouteClassifier.from(routing).classify("/sensors/data");
+        MockServerHttpRequest spoofed = MockServerHttpRequest.get("/sensors/data").remoteAddress(new InetSocketAddress("198.51.100.4", 5000))
+                .header("X-User-Id", "user123").header(RateLimitFilter.SENSOR_ID_HEADER, "AABBCC")
+                .header("X-Forwarded-For", "203.0.113.7, 10.0.0.1").build();
+        assertEquals(new RateLimitFilter.ClientKey("ip:198.51.100.4", "sensor:AABBCC"), filter.clientKey(spoofed, publicRoute));
+
+        RateLimitProperties behindProxy = new RateLimitProperties();
+        behindProxy.setTrustedProxies(1);
+        RateLimitFilter proxied = new RateLimitFilter(RouteClassifier.from(routing), limiter(1, limit(1, 1)), behindProxy);
+        assertEquals(new RateLimitFilter.ClientKey("ip:10.0.0.1", "sensor:AABBCC"), proxied.clientKey(spoofed, publicRoute));
+    }
+
+    @Test
+    void tryAcquire_ShouldNotLetMadeUpSensorIdsRaiseAnAddressesLimit() {
+        RateLimitProperties.Limit telemetry = limit(1, 2);
+        telemetry.setSensorsPerAddress(2);
+        RateLimiter limiter = limiter(1, telemetry);
+
+        // Each sensor has its own burst of 2, the address as a whole 4
+        assertEquals(0, limiter.tryAcquire("standard", "ip:a", "sensor:1"));
+        assertEquals(0, limiter.tryAcquire("standard", "ip:a", "sensor:1"));
+        assertTrue(limiter.tryAcquire("standard", "ip:a", "sensor:1") > 0);
+        assertEquals(0, limiter.tryAcquire("standard", "ip:a", "sensor:2"));
+        for (int i = 3; i < 100; i++) {
+            assertTrue(limiter.tryAcquire("standard", "ip:a", "sensor:" + i) > 0);
+        }
+        // Another address is unaffected
+        assertEquals(0, limiter.tryAcquire("standard", "ip:b", "sensor:1"));
+        assertEquals(1.0 + 97, registry.get("sprouty.gateway.ratelimit.throttled").tag("class", "standard").counter().count());
+    }
+
+    private RateLimiter limiter(int replicas, RateLimitProperties.Limit standard) {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setReplicas(replicas);
+        properties.getClasses().put("standard", standard);
+        return new RateLimiter(properties, registry, clock::get);
+    }
+
+    private static RateLimitProperties.Limit limit(double requestsPerSecond, int burst) {
+        RateLimitProperties.Limit limit = new RateLimitProperties.Limit();
+        limit.setRequestsPerSecond(requestsPerSecond);
+        limit.setBurst(burst);
+        return limit;
+    }
+}
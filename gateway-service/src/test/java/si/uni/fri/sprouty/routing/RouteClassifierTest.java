@@ -0,0 +1,119 @@
+package si.uni.fri.sprouty.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class RouteClassifierTest {
+
+    private static final List<String> PUBLIC_PREFIXES = List.of(
+            "/actuator", "/users/actuator", "/users/login", "/users/register", "/sensors",
+            "/swagger-ui", "/v3/api-docs", "/plants/swagger-ui", "/plants/v3/api-docs");
+
+    /** A mix of routed, public, overridden and near-miss paths. */
+    private static final List<String> PATHS = List.of(
+            "/plants/my-garden", "/plants/abc123/water", "/plants/swagger-ui.html", "/plants/v3/api-docs",
+            "/users/login", "/users/login/refresh", "/users/me", "/users/register", "/users/actuator/health",
+            "/sensors/data", "/sensors/batch", "/sensors/history/plant1", "/sensors/historyx",
+            "/notifications/send", "/actuator/prometheus", "/swagger-ui/index.html", "/v3/api-docs/swagger-config",
+            "/", "", "/s", "/sensor", "/plants");
+
+    @Test
+    void classify_ShouldAgreeWithPrefixScan_OnRealisticPaths() {
+        RouteClassifier classifier = gatewayClassifier();
+
+        for (String path : PATHS) {
+            boolean protectedOverride = path.startsWith("/sensors/history");
+            boolean expectedPublic = !protectedOverride && PUBLIC_PREFIXES.stream().anyMatch(path::startsWith);
+            assertEquals(expectedPublic, !classifier.classify(path).requiresAuth(), path);
+        }
+    }
+
+    @Test
+    void classify_ShouldNotAllocate_OnRealisticPaths() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        RouteClassifier classifier = gatewayClassifier();
+        String[] paths = PATHS.toArray(new String[0]);
+        int requests = 200_000;
+        classifyAll(classifier, paths, requests);
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        int authenticated = classifyAll(classifier, paths, requests);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertTrue(authenticated > 0);
+        // The stream and lambda of the old anyMatch scan alone cost more than this per request
+        assertTrue(allocated < requests, "classifying " + requests + " paths allocated " + allocated + " bytes");
+    }
+
+    @Test
+    void normalize_ShouldDecodePaths_AndRejectAmbiguousOnes() {
+        assertEquals("/sensors/history/plant1", RouteClassifier.normalize("/sensors/hi%73tory/plant1"));
+        assertEquals("/plants/", RouteClassifier.normalize("/plants/"));
+        assertEquals("/", RouteClassifier.normalize("/"));
+        assertEquals("", RouteClassifier.normalize(""));
+
+        for (String path : List.of("/sensors/./history", "/sensors/..", "/a//b", "/sensors;v=1/history", "/a\\b",
+                "/sensors/%2E%2E/x", "/a%2fb", "/a%5Cb", "/a%zz")) {
+            assertNull(RouteClassifier.normalize(path), path);
+        }
+    }
+
+    private static int classifyAll(RouteClassifier classifier, String[] paths, int requests) {
+        int authenticated = 0;
+        for (int i = 0; i < requests; i++) {
+            if (classifier.classify(paths[i % paths.length]).requiresAuth()) authenticated++;
+        }
+        return authenticated;
+    }
+
+    @Test
+    void classify_ShouldReturnLongestMatchingRule() {
+        RoutingProperties properties = new RoutingProperties();
+        properties.setDefaultRateLimitClass("standard");
+        properties.getRules().add(rule("/users", RoutePolicy.Access.AUTHENTICATED, null));
+        properties.getRules().add(rule("/users/login", RoutePolicy.Access.PUBLIC, "auth"));
+        RouteClassifier classifier = RouteClassifier.from(properties);
+
+        assertEquals("/users/login", classifier.classify("/users/login").prefix());
+        assertEquals("auth", classifier.classify("/users/login").rateLimitClass());
+        assertEquals("/users", classifier.classify("/users/logout").prefix());
+        assertEquals("standard", classifier.classify("/users/logout").rateLimitClass());
+
+        RoutePolicy fallback = classifier.classify("/plants/my-garden");
+        assertNull(fallback.prefix());
+        assertTrue(fallback.requiresAuth());
+    }
+
+    @Test
+    void from_ShouldRejectInvalidAndDuplicatePrefixes() {
+        RoutingProperties relative = new RoutingProperties();
+        relative.getRules().add(rule("users", RoutePolicy.Access.PUBLIC, null));
+        assertThrows(IllegalArgumentException.class, () -> RouteClassifier.from(relative));
+
+        RoutingProperties duplicate = new RoutingProperties();
+        duplicate.getRules().add(rule("/users", RoutePolicy.Access.PUBLIC, null));
+        duplicate.getRules().add(rule("/users", RoutePolicy.Access.AUTHENTICATED, null));
+        assertThrows(IllegalArgumentException.class, () -> RouteClassifier.from(duplicate));
+    }
+
+    private static RouteClassifier gatewayClassifier() {
+        RoutingProperties properties = new RoutingProperties();
+        properties.getRules().addAll(PUBLIC_PREFIXES.stream().map(p -> rule(p, RoutePolicy.Access.PUBLIC, null)).toList());
+        properties.getRules().add(rule("/sensors/history", RoutePolicy.Access.AUTHENTICATED, null));
+        return RouteClassifier.from(properties);
+    }
+
+    private static RoutingProperties.Rule rule(String prefix, RoutePolicy.Access access, String rateLimitClass) {
+        RoutingProperties.Rule rule = new RoutingProperties.Rule();
+        rule.setPrefix(prefix);
+        rule.setAccess(access);
+        rule.setRateLimitClass(rateLimitClass);
+        return rule;
+    }
+}
@@ -0,0 +1,88 @@
+package si.uni.fri.sprouty.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class TokenVerifierTest {
+
+    private final SecretKey key = Keys.hmacShaKeyFor(
+            "my-super-secret-test-key-that-is-at-least-32-characters-long".getBytes(StandardCharsets.UTF_8));
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final TokenVerifier verifier = new TokenVerifier(key, registry, 100, Duration.ofMinutes(15));
+
+    @Test
+    void verify_ShouldServeRepeatedTokenFromCache() {
+        String token = token(key, new Date(System.currentTimeMillis() + 60_000));
+
+        assertEquals("user123", verifier.verify(token));
+        assertEquals("user123", verifier.verify(token));
+
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "jwt_tokens").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "jwt_tokens").tag("result", "miss").functionCounter().count());
+        assertEquals(1, verifier.cachedTokens());
+    }
+
+    @Test
+    void verify_ShouldRejectExpiredAndForgedTokensWithoutCachingThem() {
+        SecretKey otherKey = Keys.hmacShaKeyFor(
+                "a-completely-different-key-that-is-also-32-characters".getBytes(StandardCharsets.UTF_8));
+
+        assertNull(verifier.verify(token(key, new Date(System.currentTimeMillis() - 1_000))));
+        assertNull(verifier.verify(token(otherKey, new Date(System.currentTimeMillis() + 60_000))));
+        assertNull(verifier.verify("not-a-jwt"));
+
+        assertEquals(0, verifier.cachedTokens());
+        assertEquals(3.0, registry.get("sprouty.gateway.jwt.rejected").counter().count());
+    }
+
+    @Test
+    void verify_ShouldMakeARepeatedTokenMuchCheaperThanFullVerification() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        String token = token(key, new Date(System.currentTimeMillis() + 60_000));
+        int requests = 2_000;
+        for (int i = 0; i < requests; i++) {
+            parseUncached(token);
+            verifier.verify(token);
+        }
+
+        // What the filter used to do for every request: build a parser, check the signature, parse the claims
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < requests; i++) {
+            assertEquals("user123", parseUncached(token));
+        }
+        long uncached = threads.getCurrentThreadAllocatedBytes() - before;
+
+        before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < requests; i++) {
+            assertEquals("user123", verifier.verify(token));
+        }
+        long cached = threads.getCurrentThreadAllocatedBytes() - before;
+
+        // Allocation tracks the skipped Base64, HMAC and JSON work; the digest of the token is what remains
+        assertTrue(cached * 3 < uncached, "cached verification allocated " + cached + " bytes against " + uncached + " uncached");
+    }
+
+    private String parseUncached(String token) {
+        return Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getPayload().getSubject();
+    }
+
+    private static String token(SecretKey signingKey, Date expiration) {
+        return Jwts.builder()
+                .subject("user123")
+                .expiration(expiration)
+                .signWith(signingKey)
+                .compact();
+    }
+}
@@ -9,10 +9,13 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import si.uni.fri.sprouty.dto.BulkNotificationResponse;
 import si.uni.fri.sprouty.dto.ErrorResponse;
 import si.uni.fri.sprouty.dto.NotificationRequest;
 import si.uni.fri.sprouty.service.NotificationService;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/notifications")
 @RequiredArgsConstructor
@@ -35,4 +38,20 @@ public class NotificationController {
         notificationService.sendPush(request);
         return ResponseEntity.ok().build();
     }
+
+    @Operation(
+            summary = "Send Notifications in Bulk",
+            description = "Sends up to 500 messages with a single device token lookup and one FCM call. " +
+                    "Users without a registered device are skipped instead of failing the batch."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch handed off to FCM", content = @Content(schema = @Schema(implementation = BulkNotificationResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Empty batch or missing userId", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "413", description = "Too many notifications in one batch", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "FCM infrastructure error", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @PostMapping("/send/bulk")
+    public ResponseEntity<BulkNotificationResponse> sendBulk(@RequestBody List<NotificationRequest> requests) {
+        return ResponseEntity.ok(notificationService.sendBulk(requests));
+    }
 }
\ No newline at end of file
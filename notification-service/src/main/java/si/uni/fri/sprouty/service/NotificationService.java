@@ -1,7 +1,9 @@
 package si.uni.fri.sprouty.service;
 
+import com.google.cloud.firestore.DocumentReference;
 import com.google.cloud.firestore.DocumentSnapshot;
 import com.google.cloud.firestore.Firestore;
+import com.google.firebase.messaging.BatchResponse;
 import com.google.firebase.messaging.FirebaseMessaging;
 import com.google.firebase.messaging.Message;
 import com.google.firebase.messaging.Notification;
@@ -10,12 +12,21 @@ import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
+import si.uni.fri.sprouty.dto.BulkNotificationResponse;
 import si.uni.fri.sprouty.dto.NotificationRequest;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 @Service
 public class NotificationService {
 
     private static final Logger logger = LoggerFactory.getLogger(NotificationService.class);
+    /** FCM's limit for a single sendEach call. */
+    static final int MAX_BULK_SIZE = 500;
+
     private final FirebaseMessaging firebaseMessaging;
     private final Firestore db;
 
@@ -40,28 +51,7 @@ public class NotificationService {
                 return;
             }
 
-            // Build the FCM Message
-            Message.Builder messageBuilder = Message.builder().setToken(token);
-
-            // Add Custom Data Payload (Essential for silent syncs)
-            messageBuilder.putData("action", "REFRESH_PLANTS");
-            messageBuilder.putData("userId", request.getUserId());
-
-            if (request.getData() != null && !request.getData().isEmpty()) {
-                messageBuilder.putAllData(request.getData());
-            }
-
-            // Attach Notification UI if present
-            if (isDisplayable(request)) {
-                Notification notification = Notification.builder()
-                        .setTitle(request.getTitle())
-                        .setBody(request.getBody())
-                        .build();
-
-                messageBuilder.setNotification(notification);
-            }
-
-            String response = firebaseMessaging.send(messageBuilder.build());
+            String response = firebaseMessaging.send(buildMessage(request, token));
             logger.info("Successfully sent FCM message for user {}. ID: {}", request.getUserId(), response);
 
         } catch (ResponseStatusException e) {
@@ -72,6 +62,75 @@ public class NotificationService {
         }
     }
 
+    /**
+     * Sends many notifications with one user lookup round trip and one FCM call.
+     * Recipients without a user document or device token are skipped, as in {@link #sendPush}.
+     */
+    public BulkNotificationResponse sendBulk(List<NotificationRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Notification batch is empty.");
+        }
+        if (requests.size() > MAX_BULK_SIZE) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "At most " + MAX_BULK_SIZE + " notifications per batch.");
+        }
+        if (requests.stream().anyMatch(r -> r.getUserId() == null || r.getUserId().isBlank())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Every notification needs a userId.");
+        }
+
+        try {
+            DocumentReference[] users = requests.stream()
+                    .map(NotificationRequest::getUserId)
+                    .distinct()
+                    .map(userId -> db.collection("users").document(userId))
+                    .toArray(DocumentReference[]::new);
+
+            Map<String, String> tokens = new HashMap<>();
+            for (DocumentSnapshot userDoc : db.getAll(users).get()) {
+                String token = userDoc.exists() ? userDoc.getString("fcmToken") : null;
+                if (token != null && !token.isBlank()) tokens.put(userDoc.getId(), token);
+            }
+
+            List<Message> messages = new ArrayList<>(requests.size());
+            for (NotificationRequest request : requests) {
+                String token = tokens.get(request.getUserId());
+                if (token != null) messages.add(buildMessage(request, token));
+            }
+            int skipped = requests.size() - messages.size();
+            if (messages.isEmpty()) return new BulkNotificationResponse(0, skipped, 0);
+
+            BatchResponse response = firebaseMessaging.sendEach(messages);
+            logger.info("Bulk FCM submission: {} sent, {} skipped, {} failed",
+                    response.getSuccessCount(), skipped, response.getFailureCount());
+            return new BulkNotificationResponse(response.getSuccessCount(), skipped, response.getFailureCount());
+        } catch (Exception e) {
+            logger.error("Bulk FCM delivery failure for {} notifications: ", requests.size(), e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to deliver push notifications.");
+        }
+    }
+
+    private Message buildMessage(NotificationRequest request, String token) {
+        Message.Builder messageBuilder = Message.builder().setToken(token);
+
+        // Add Custom Data Payload (Essential for silent syncs)
+        messageBuilder.putData("action", "REFRESH_PLANTS");
+        messageBuilder.putData("userId", request.getUserId());
+
+        if (request.getData() != null && !request.getData().isEmpty()) {
+            messageBuilder.putAllData(request.getData());
+        }
+
+        // Attach Notification UI if present
+        if (isDisplayable(request)) {
+            Notification notification = Notification.builder()
+                    .setTitle(request.getTitle())
+                    .setBody(request.getBody())
+                    .build();
+
+            messageBuilder.setNotification(notification);
+        }
+        return messageBuilder.build();
+    }
+
     private boolean isDisplayable(NotificationRequest request) {
         return request.getTitle() != null && !request.getTitle().isBlank() &&
                 request.getBody() != null && !request.getBody().isBlank();
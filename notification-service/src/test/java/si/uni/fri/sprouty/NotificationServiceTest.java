@@ -5,6 +5,7 @@ import com.google.cloud.firestore.CollectionReference;
 import com.google.cloud.firestore.DocumentReference;
 import com.google.cloud.firestore.DocumentSnapshot;
 import com.google.cloud.firestore.Firestore;
+import com.google.firebase.messaging.BatchResponse;
 import com.google.firebase.messaging.FirebaseMessaging;
 import com.google.firebase.messaging.FirebaseMessagingException;
 import com.google.firebase.messaging.Message;
@@ -14,10 +15,17 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import si.uni.fri.sprouty.dto.BulkNotificationResponse;
 import si.uni.fri.sprouty.dto.NotificationRequest;
 import si.uni.fri.sprouty.service.NotificationService;
 
+import java.util.Collections;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -101,6 +109,53 @@ class NotificationServiceTest {
         verify(fcm, never()).send(any());
     }
 
+    @Test
+    void sendBulk_ShouldLookUpUsersOnceAndSkipThoseWithoutToken() throws Exception {
+        DocumentSnapshot withToken = mock(DocumentSnapshot.class);
+        DocumentSnapshot withoutToken = mock(DocumentSnapshot.class);
+        when(db.collection("users")).thenReturn(collectionReference);
+        when(collectionReference.document(anyString())).thenReturn(documentReference);
+        when(withToken.exists()).thenReturn(true);
+        when(withToken.getId()).thenReturn("user1");
+        when(withToken.getString("fcmToken")).thenReturn("token-1");
+        when(withoutToken.exists()).thenReturn(false);
+        when(db.getAll(any(DocumentReference[].class))).thenReturn(ApiFutures.immediateFuture(List.of(withToken, withoutToken)));
+
+        BatchResponse batchResponse = mock(BatchResponse.class);
+        when(batchResponse.getSuccessCount()).thenReturn(2);
+        when(batchResponse.getFailureCount()).thenReturn(0);
+        when(fcm.sendEach(anyList())).thenReturn(batchResponse);
+
+        BulkNotificationResponse response = notificationService.sendBulk(List.of(
+                request("user1", "Sprouty", "Basil needs water."),
+                request("user1", "Sprouty", "Fern needs water."),
+                request("user2", "Sprouty", "Monstera needs water.")));
+
+        assertEquals(new BulkNotificationResponse(2, 1, 0), response);
+        verify(db, times(1)).getAll(any(DocumentReference[].class));
+        verify(fcm).sendEach(argThat(messages -> messages.size() == 2));
+        verify(fcm, never()).send(any());
+    }
+
+    @Test
+    void sendBulk_ShouldRejectOversizedBatch() {
+        List<NotificationRequest> requests = Collections.nCopies(501, request("user1", "t", "b"));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> notificationService.sendBulk(requests));
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, exception.getStatusCode());
+        verifyNoInteractions(db, fcm);
+    }
+
+    private static NotificationRequest request(String userId, String title, String body) {
+        NotificationRequest request = new NotificationRequest();
+        request.setUserId(userId);
+        request.setTitle(title);
+        request.setBody(body);
+        return request;
+    }
+
     private void mockFirestoreUser(String userId) {
         when(db.collection("users")).thenReturn(collectionReference);
         when(collectionReference.document(userId)).thenReturn(documentReference);
@@ -0,0 +1,55 @@
+package si.uni.fri.sprouty.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.firestore.Firestore;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import si.uni.fri.sprouty.care.SpeciesThresholdCache;
+import si.uni.fri.sprouty.service.GardenProfileCache;
+import si.uni.fri.sprouty.service.ImageHashIndex;
+import si.uni.fri.sprouty.service.SpeciesCache;
+
+import java.time.Duration;
+
+@Configuration
+public class CacheConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public SpeciesThresholdCache speciesThresholdCache(Firestore firestore,
+                                                       @Value("${sprouty.cache.species-thresholds.max-size:5000}") long maxSize) {
+        return new SpeciesThresholdCache(firestore, maxSize);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public SpeciesCache speciesCache(Firestore firestore,
+                                     @Value("${sprouty.cache.species.max-size:5000}") long maxSize,
+                                     @Value("${sprouty.cache.species.ttl:24h}") Duration ttl,
+                                     @Value("${sprouty.cache.species.negative-ttl:5m}") Duration negativeTtl) {
+        return new SpeciesCache(firestore, maxSize, ttl, negativeTtl);
+    }
+
+    @Bean(initMethod = "start")
+    public ImageHashIndex imageHashIndex(Firestore firestore, MeterRegistry meterRegistry,
+                                         @Value("${sprouty.cache.image-hashes.max-size:10000}") int maxSize,
+                                         @Value("${sprouty.cache.image-hashes.max-distance:6}") int maxDistance) {
+        return new ImageHashIndex(firestore, meterRegistry, maxSize, maxDistance);
+    }
+
+    @Bean(destroyMethod = "stop")
+    public GardenProfileCache gardenProfileCache(Firestore firestore, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                                 SpeciesCache speciesCache,
+                                                 @Value("${sprouty.cache.garden-profiles.max-size:64MB}") DataSize maxSize,
+                                                 @Value("${sprouty.cache.garden-profiles.ttl:1h}") Duration ttl,
+                                                 @Value("${sprouty.cache.garden-profiles.unwatched-ttl:1m}") Duration unwatchedTtl,
+                                                 @Value("${sprouty.cache.garden-profiles.max-listeners:1000}") int maxListeners,
+                                                 @Value("${sprouty.cache.garden-profiles.load-timeout:10s}") Duration loadTimeout) {
+        GardenProfileCache cache = new GardenProfileCache(firestore, objectMapper, meterRegistry, maxSize, ttl,
+                unwatchedTtl, maxListeners, loadTimeout);
+        // Profiles embed species care data, and species edits are rare enough to drop them all
+        speciesCache.addChangeListener(masterId -> cache.invalidateAll());
+        return cache;
+    }
+}
@@ -0,0 +1,26 @@
+package si.uni.fri.sprouty.config;
+
+import com.google.cloud.firestore.Firestore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import si.uni.fri.sprouty.coordination.FirestoreLeaseStore;
+import si.uni.fri.sprouty.coordination.JobCoordinator;
+import si.uni.fri.sprouty.coordination.LeaseStore;
+
+import java.time.Duration;
+
+@Configuration
+public class CoordinationConfig {
+
+    @Bean
+    public LeaseStore leaseStore(Firestore firestore) {
+        return new FirestoreLeaseStore(firestore, "locks");
+    }
+
+    @Bean
+    public JobCoordinator jobCoordinator(LeaseStore leaseStore,
+                                         @Value("${sprouty.jobs.lease-ttl:5m}") Duration leaseTtl) {
+        return new JobCoordinator(leaseStore, leaseTtl);
+    }
+}
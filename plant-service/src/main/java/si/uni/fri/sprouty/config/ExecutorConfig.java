@@ -0,0 +1,35 @@
+package si.uni.fri.sprouty.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import si.uni.fri.sprouty.concurrent.VirtualThreadPinningMonitor;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Identification stages block on PlantNet, OpenAI, Storage and Firestore,
+     * so each stage gets its own virtual thread instead of a pooled platform thread.
+     */
+    @Bean(destroyMethod = "close")
+    public ExecutorService identifyExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Registered only when the service runs on virtual threads (SPROUTY_VIRTUAL_THREADS=true).
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(value = "spring.threads.virtual.enabled", havingValue = "true")
+    public VirtualThreadPinningMonitor pinningMonitor(MeterRegistry meterRegistry,
+                                                      @Value("${sprouty.threads.pinning-threshold-ms:20}") long thresholdMs) {
+        return new VirtualThreadPinningMonitor(meterRegistry, Duration.ofMillis(thresholdMs));
+    }
+}
@@ -11,7 +11,6 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.Profile;
-import org.springframework.web.client.RestTemplate;
 import java.io.IOException;
 
 @Slf4j
@@ -39,9 +38,4 @@ public class PlantConfig {
     public Firestore getFirestore(FirebaseApp app) {
         return FirestoreClient.getFirestore(app, "sprouty-firestore");
     }
-
-    @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
-    }
 }
\ No newline at end of file
@@ -8,13 +8,16 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 import si.uni.fri.sprouty.dto.*;
+import si.uni.fri.sprouty.service.GardenProfileCache;
 import si.uni.fri.sprouty.service.PlantService;
 
 import java.io.IOException;
@@ -26,9 +29,11 @@ import java.util.Map;
 public class PlantController {
 
     private final PlantService plantService;
+    private final GardenProfileCache gardenProfileCache;
 
-    public PlantController(PlantService plantService) {
+    public PlantController(PlantService plantService, GardenProfileCache gardenProfileCache) {
         this.plantService = plantService;
+        this.gardenProfileCache = gardenProfileCache;
     }
 
     // --- IDENTIFICATION ---
@@ -58,16 +63,28 @@ public class PlantController {
 
     // --- GARDEN MANAGEMENT ---
 
-    @Operation(summary = "Get full garden profile", description = "Returns all user plants and associated botanical data.")
+    @Operation(summary = "Get full garden profile", description = "Returns all user plants and associated botanical data. " +
+            "Send the last ETag in If-None-Match to get 304 when the garden has not changed.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Profile retrieved", content = @Content(schema = @Schema(implementation = GardenProfileResponse.class))),
+            @ApiResponse(responseCode = "304", description = "Profile unchanged since the given ETag"),
             @ApiResponse(responseCode = "401", description = "Unauthorized", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
     })
     @SecurityRequirement(name = "bearerAuth")
     @GetMapping("/profile")
-    public ResponseEntity<GardenProfileResponse> getGardenProfile(
-            @Parameter(hidden = true) @RequestHeader(name = "X-User-Id") String uid) {
-        return ResponseEntity.ok(plantService.getFullGardenProfile(uid));
+    public ResponseEntity<byte[]> getGardenProfile(
+            @Parameter(hidden = true) @RequestHeader(name = "X-User-Id") String uid,
+            WebRequest request) {
+        GardenProfileCache.Profile profile = gardenProfileCache.get(uid, plantService::buildGardenProfile);
+        if (request.checkNotModified(profile.etag())) {
+            gardenProfileCache.notModified(profile);
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(profile.etag())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(profile.body());
     }
 
     @Operation(summary = "Log watering event", description = "Resets the watering timer for a specific plant.")
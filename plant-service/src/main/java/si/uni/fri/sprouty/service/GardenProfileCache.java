@@ -0,0 +1,202 @@
+package si.uni.fri.sprouty.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.ListenerRegistration;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+import si.uni.fri.sprouty.dto.GardenProfileResponse;
+import si.uni.fri.sprouty.dto.UserPlant;
+import si.uni.fri.sprouty.garden.GardenViews;
+
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Per-user cache of the serialized garden profile, so the app's refetch on every REFRESH_PLANTS push
+ * is served from memory, and answered with 304 when the client already holds the same version.
+ * Up to maxListeners cached profiles own a snapshot listener on the user's garden view: its first snapshot
+ * is the single document read the profile is built from, and any later change (every plant write, from this
+ * service, the sensor service or another replica, is mirrored into the view) drops the entry, which also
+ * detaches the listener. Past that many, profiles are read once and cached without a listener for the
+ * shorter unwatchedTtl, since only this replica's own writes reach them.
+ * Writes made through this replica invalidate once they have committed, so a user sees their own change
+ * before the listener delivers it. Species edits drop every entry, see CacheConfig.
+ * Entries are bounded by serialized size and expire after ttl.
+ */
+public class GardenProfileCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(GardenProfileCache.class);
+
+    public record Profile(byte[] body, String etag) {}
+
+    /** A cached profile; registration is null when the entry is not watched. */
+    private record Entry(Profile profile, ListenerRegistration registration) {}
+
+    private final Firestore db;
+    private final ObjectMapper objectMapper;
+    private final Duration loadTimeout;
+    private final int maxListeners;
+    private final AtomicInteger listeners = new AtomicInteger();
+    private final AsyncCache<String, Entry> cache;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter bytesSaved;
+    private final Counter rebuilds;
+
+    public GardenProfileCache(Firestore db, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                              DataSize maximumSize, Duration ttl, Duration unwatchedTtl, int maxListeners,
+                              Duration loadTimeout) {
+        this.db = db;
+        this.objectMapper = objectMapper;
+        this.loadTimeout = loadTimeout;
+        this.maxListeners = maxListeners;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumSize.toBytes())
+                .weigher((String uid, Entry entry) -> entry.profile().body().length)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String uid, Entry entry, long currentTime) {
+                        return (entry.registration() != null ? ttl : unwatchedTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String uid, Entry entry, long currentTime, long currentDuration) {
+                        return expireAfterCreate(uid, entry, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String uid, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .removalListener((String uid, Entry entry, RemovalCause cause) -> {
+                    if (entry != null && entry.registration() != null) unwatch(entry.registration());
+                })
+                .buildAsync();
+
+        this.hits = Counter.builder("sprouty.plants.profile_cache").tag("result", "hit")
+                .description("Garden profile requests served from memory").register(meterRegistry);
+        this.misses = Counter.builder("sprouty.plants.profile_cache").tag("result", "miss")
+                .description("Garden profile requests that read Firestore").register(meterRegistry);
+        this.bytesSaved = Counter.builder("sprouty.plants.profile_cache.bytes_saved")
+                .description("Response bytes not sent because the client's ETag matched")
+                .baseUnit("bytes").register(meterRegistry);
+        this.rebuilds = Counter.builder("sprouty.plants.garden_view.rebuilds")
+                .description("Garden views rebuilt from user_plants").register(meterRegistry);
+        meterRegistry.gauge("sprouty.plants.profile_cache.size", cache, c -> c.synchronous().estimatedSize());
+        meterRegistry.gauge("sprouty.plants.profile_cache.listeners", listeners);
+    }
+
+    public void stop() {
+        cache.synchronous().invalidateAll();
+    }
+
+    /**
+     * Returns the user's serialized profile, building it from the user's plants with the assembler on a miss.
+     * Only one caller per user runs the load; the others wait for its result.
+     */
+    public Profile get(String uid, Function<List<UserPlant>, GardenProfileResponse> assembler) {
+        CompletableFuture<Entry> pending = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = cache.asMap().putIfAbsent(uid, pending);
+        if (existing != null) {
+            try {
+                Profile profile = existing.join().profile();
+                hits.increment();
+                return profile;
+            } catch (CompletionException e) {
+                throw (e.getCause() instanceof ResponseStatusException rse) ? rse :
+                        new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Could not load garden profile.");
+            }
+        }
+
+        misses.increment();
+        ListenerRegistration registration = null;
+        boolean watched = listeners.incrementAndGet() <= maxListeners;
+        if (!watched) listeners.decrementAndGet();
+        try {
+            DocumentSnapshot view;
+            if (watched) {
+                CompletableFuture<DocumentSnapshot> initial = new CompletableFuture<>();
+                registration = GardenViews.of(db, uid).addSnapshotListener((snapshot, error) -> {
+                    if (!initial.isDone()) {
+                        if (error != null || snapshot == null) {
+                            initial.completeExceptionally(error != null ? error : new IllegalStateException("Empty snapshot"));
+                        } else {
+                            initial.complete(snapshot);
+                        }
+                        return;
+                    }
+                    if (error != null) {
+                        logger.warn("Garden profile listener failed for user {}: {}", uid, error.getMessage());
+                    }
+                    cache.asMap().remove(uid, pending);
+                });
+                view = initial.get(loadTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } else {
+                view = GardenViews.of(db, uid).get().get(loadTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            }
+
+            List<UserPlant> plants = GardenViews.plants(view);
+            if (plants == null) {
+                // First read of a garden that has no view yet; the rebuild's own write drops a watched entry again
+                plants = GardenViews.rebuild(db, uid);
+                rebuilds.increment();
+            }
+            byte[] body = objectMapper.writeValueAsBytes(assembler.apply(plants));
+            Entry entry = new Entry(new Profile(body, etag(body)), registration);
+            pending.complete(entry);
+            return entry.profile();
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            cache.asMap().remove(uid, pending);
+            pending.completeExceptionally(e);
+            if (registration != null) registration.remove();
+            if (watched) listeners.decrementAndGet();
+            if (e instanceof ResponseStatusException rse) throw rse;
+            logger.error("Failed to build garden profile for user {}", uid, e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Could not load garden profile.");
+        }
+    }
+
+    public void invalidate(String uid) {
+        cache.synchronous().invalidate(uid);
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    /** Records a response that was answered with 304 instead of the cached body. */
+    public void notModified(Profile profile) {
+        bytesSaved.increment(profile.body().length);
+    }
+
+    private void unwatch(ListenerRegistration registration) {
+        registration.remove();
+        listeners.decrementAndGet();
+    }
+
+    private static String etag(byte[] body) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+        return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16)) + '"';
+    }
+}
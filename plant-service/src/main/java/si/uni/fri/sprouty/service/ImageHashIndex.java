@@ -0,0 +1,198 @@
+package si.uni.fri.sprouty.service;
+
+import com.google.cloud.firestore.*;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import si.uni.fri.sprouty.image.PerceptualHash;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * LRU index of perceptual hashes of recently identified photos and the species PlantNet returned for them.
+ * A photo within the configured Hamming distance of an indexed one reuses its species instead of
+ * paying for another recognition call. Entries are mirrored to the image_hashes collection so the
+ * index survives restarts.
+ * Firestore writes are issued outside the index lock, under a separate mirror lock that re-checks
+ * the index, so a hash evicted by another caller is never written back after its delete.
+ */
+public class ImageHashIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageHashIndex.class);
+    private static final String IMAGE_HASHES_COLLECTION = "image_hashes";
+    private static final long TOUCH_INTERVAL_MS = TimeUnit.DAYS.toMillis(1);
+
+    private record Entry(String species, long lastUsed) {}
+
+    private final Firestore db;
+    private final int maxEntries;
+    private final int maxDistance;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock mirrorLock = new ReentrantLock();
+    private final LinkedHashMap<Long, Entry> entries;
+    // Hashes evicted under lock, deleted from Firestore once it is released
+    private final List<Long> evicted = new ArrayList<>();
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public ImageHashIndex(Firestore db, MeterRegistry meterRegistry, int maxEntries, int maxDistance) {
+        this.db = db;
+        this.maxEntries = maxEntries;
+        this.maxDistance = maxDistance;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() <= ImageHashIndex.this.maxEntries) return false;
+                evicted.add(eldest.getKey());
+                return true;
+            }
+        };
+
+        this.hits = Counter.builder("sprouty.identify.hash_cache").tag("result", "hit")
+                .description("Identifications answered from the perceptual hash index").register(meterRegistry);
+        this.misses = Counter.builder("sprouty.identify.hash_cache").tag("result", "miss")
+                .description("Identifications that needed a recognition call").register(meterRegistry);
+        meterRegistry.gauge("sprouty.identify.hash_cache.size", this, ImageHashIndex::size);
+    }
+
+    public void start() {
+        try {
+            List<QueryDocumentSnapshot> stored = db.collection(IMAGE_HASHES_COLLECTION)
+                    .orderBy("lastUsed", Query.Direction.DESCENDING)
+                    .limit(maxEntries)
+                    .get().get().getDocuments();
+
+            lock.lock();
+            try {
+                // Oldest first, so the most recently used end up most recent in the LRU order
+                for (int i = stored.size() - 1; i >= 0; i--) {
+                    QueryDocumentSnapshot doc = stored.get(i);
+                    Long lastUsed = doc.getLong("lastUsed");
+                    String species = doc.getString("species");
+                    if (species == null) continue;
+                    entries.put(Long.parseUnsignedLong(doc.getId(), 16), new Entry(species, lastUsed != null ? lastUsed : 0L));
+                }
+            } finally {
+                lock.unlock();
+            }
+            logger.info("Loaded {} image hashes", stored.size());
+        } catch (Exception e) {
+            logger.warn("Image hash index could not be loaded from {}: {}", IMAGE_HASHES_COLLECTION, e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the species of the closest indexed photo within the distance threshold, or null.
+     */
+    public String lookup(long hash) {
+        long now = System.currentTimeMillis();
+        Long bestHash = null;
+        Entry best = null;
+
+        lock.lock();
+        try {
+            int bestDistance = maxDistance + 1;
+            for (Map.Entry<Long, Entry> candidate : entries.entrySet()) {
+                int distance = PerceptualHash.distance(hash, candidate.getKey());
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    bestHash = candidate.getKey();
+                    best = candidate.getValue();
+                    if (distance == 0) break;
+                }
+            }
+            if (best != null) {
+                // Refresh LRU position; persist the touch at most once a day
+                Entry touched = new Entry(best.species(), now);
+                entries.put(bestHash, touched);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (best == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (now - best.lastUsed() > TOUCH_INTERVAL_MS) {
+            persist(bestHash, best.species(), now);
+        }
+        return best.species();
+    }
+
+    public void record(long hash, String species) {
+        long now = System.currentTimeMillis();
+        List<Long> removed;
+        lock.lock();
+        try {
+            entries.put(hash, new Entry(species, now));
+            removed = drainEvicted();
+        } finally {
+            lock.unlock();
+        }
+        persist(hash, species, now);
+        removed.forEach(this::forget);
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Long> drainEvicted() {
+        if (evicted.isEmpty()) return List.of();
+        List<Long> drained = new ArrayList<>(evicted);
+        evicted.clear();
+        return drained;
+    }
+
+    private boolean indexed(long hash) {
+        lock.lock();
+        try {
+            return entries.containsKey(hash);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void persist(long hash, String species, long lastUsed) {
+        mirrorLock.lock();
+        try {
+            // Evicted meanwhile; its delete is issued by whoever evicted it
+            if (!indexed(hash)) return;
+            // Fire and forget: the index works from memory, Firestore only seeds the next start
+            db.collection(IMAGE_HASHES_COLLECTION).document(docId(hash))
+                    .set(Map.of("species", species, "lastUsed", lastUsed));
+        } catch (Exception e) {
+            logger.warn("Could not persist image hash {}: {}", docId(hash), e.getMessage());
+        } finally {
+            mirrorLock.unlock();
+        }
+    }
+
+    private void forget(long hash) {
+        mirrorLock.lock();
+        try {
+            // Recorded again since it was evicted; its own persist keeps the document
+            if (indexed(hash)) return;
+            db.collection(IMAGE_HASHES_COLLECTION).document(docId(hash)).delete();
+        } catch (Exception e) {
+            logger.warn("Could not remove evicted image hash {}: {}", docId(hash), e.getMessage());
+        } finally {
+            mirrorLock.unlock();
+        }
+    }
+
+    private static String docId(long hash) {
+        return String.format("%016x", hash);
+    }
+}
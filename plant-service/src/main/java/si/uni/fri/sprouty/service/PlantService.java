@@ -2,12 +2,13 @@ package si.uni.fri.sprouty.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.core.ApiFuture;
 import com.google.cloud.firestore.*;
-import com.google.cloud.storage.Blob;
-import com.google.cloud.storage.Bucket;
-import com.google.firebase.cloud.StorageClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.*;
@@ -20,9 +21,18 @@ import si.uni.fri.sprouty.dto.GardenProfileResponse;
 import si.uni.fri.sprouty.dto.MasterPlant;
 import si.uni.fri.sprouty.dto.NotificationRequest;
 import si.uni.fri.sprouty.dto.UserPlant;
+import si.uni.fri.sprouty.garden.GardenViews;
+import si.uni.fri.sprouty.image.BlobStore;
+import si.uni.fri.sprouty.image.ImagePipeline;
+import si.uni.fri.sprouty.image.PerceptualHash;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -32,9 +42,16 @@ public class PlantService {
     private final Firestore db;
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final RestTemplate restTemplate;
+    private final BlobStore blobStore;
+    private final ImagePipeline imagePipeline;
+    private final SpeciesCache speciesCache;
+    private final ImageHashIndex hashIndex;
+    private final WateringReminderScheduler reminderScheduler;
+    private final GardenProfileCache gardenProfileCache;
+    private final Executor identifyExecutor;
+    private final MeterRegistry meterRegistry;
 
     private final String USER_PLANTS_COLLECTION = "user_plants";
-    private final String MASTER_PLANTS_COLLECTION = "master_plants";
 
     @Value("${openai.api.key}")
     private String openAiKey;
@@ -42,9 +59,21 @@ public class PlantService {
     @Value("${plantnet.api.key}")
     private String plantNetKey;
 
-    public PlantService(Firestore db, RestTemplate restTemplate) {
+    public PlantService(Firestore db, RestTemplate restTemplate, BlobStore blobStore, ImagePipeline imagePipeline,
+                        SpeciesCache speciesCache, ImageHashIndex hashIndex, WateringReminderScheduler reminderScheduler,
+                        GardenProfileCache gardenProfileCache,
+                        @Qualifier("identifyExecutor") Executor identifyExecutor,
+                        MeterRegistry meterRegistry) {
         this.db = db;
         this.restTemplate = restTemplate;
+        this.blobStore = blobStore;
+        this.imagePipeline = imagePipeline;
+        this.speciesCache = speciesCache;
+        this.hashIndex = hashIndex;
+        this.reminderScheduler = reminderScheduler;
+        this.gardenProfileCache = gardenProfileCache;
+        this.identifyExecutor = identifyExecutor;
+        this.meterRegistry = meterRegistry;
     }
 
     // --- SECURITY HELPER ---
@@ -74,23 +103,27 @@ public class PlantService {
 
     // --- CORE LOGIC ---
 
+    /**
+     * Runs identification as a dependency graph: the photo upload overlaps recognition,
+     * and the species lookup starts as soon as recognition returns a name.
+     */
     public Map<String, Object> identifyAndProcess(String uid, byte[] imageBytes) {
+        long started = System.nanoTime();
+        String imagePath = String.format("users/%s/plants/%s.jpg", uid, UUID.randomUUID());
+
+        CompletableFuture<String> upload = CompletableFuture.supplyAsync(
+                () -> timed("upload", () -> uploadImageToStorage(imageBytes, imagePath)), identifyExecutor);
+        CompletableFuture<String> recognition = CompletableFuture.supplyAsync(
+                () -> timed("recognize", () -> recognize(imageBytes)), identifyExecutor);
+        // Known species are served from memory; concurrent misses share one load
+        CompletableFuture<MasterPlant> species = recognition.thenApplyAsync(recognizedSpecies -> timed("species",
+                () -> speciesCache.get(toMasterId(recognizedSpecies), () -> fetchPlantDataFromOpenAI(recognizedSpecies))), identifyExecutor);
+
         try {
-            String recognizedSpecies = callPlantRecognitionApi(imageBytes);
-            String masterId = recognizedSpecies.toLowerCase().trim().replace(" ", "_");
-            String publicImageUrl = uploadImageToStorage(imageBytes, uid);
-
-            DocumentReference masterRef = db.collection(MASTER_PLANTS_COLLECTION).document(masterId);
-            DocumentSnapshot masterSnap = masterRef.get().get();
-
-            MasterPlant masterPlant;
-            if (!masterSnap.exists()) {
-                masterPlant = fetchPlantDataFromOpenAI(recognizedSpecies);
-                masterPlant.setId(masterId);
-                masterRef.set(masterPlant).get();
-            } else {
-                masterPlant = masterSnap.toObject(MasterPlant.class);
-            }
+            String recognizedSpecies = recognition.join();
+            MasterPlant masterPlant = species.join();
+            String publicImageUrl = upload.join();
+            String masterId = toMasterId(recognizedSpecies);
 
             UserPlant userPlant = new UserPlant();
             userPlant.setOwnerId(uid);
@@ -105,16 +138,84 @@ public class PlantService {
 
             DocumentReference userPlantRef = db.collection(USER_PLANTS_COLLECTION).document();
             userPlant.setId(userPlantRef.getId());
-            userPlantRef.set(userPlant).get();
+            userPlant.setWateringShard(WateringSchedule.shardOf(userPlant.getId()));
+            userPlant.setNextWateringDue(WateringSchedule.nextDue(
+                    userPlant.getLastWatered(), userPlant.getTargetWateringInterval(), userPlant.isNotificationsEnabled()));
+            timed("save", () -> {
+                try {
+                    WriteBatch batch = db.batch();
+                    batch.set(userPlantRef, userPlant);
+                    GardenViews.putPlant(batch, db, userPlant);
+                    return batch.commit().get();
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            });
+            reminderScheduler.plantScheduled(userPlant.getId(), userPlant.getNextWateringDue());
+            gardenProfileCache.invalidate(uid);
+            attachImageVariants(userPlantRef, uid, imagePath, imageBytes);
 
+            recordIdentify(started, "success");
             return Map.of("userPlant", userPlant, "masterPlant", masterPlant != null ? masterPlant : new Object());
         } catch (Exception e) {
-            logger.error("Failed to process plant identification for user {}", uid, e);
-            throw (e instanceof ResponseStatusException) ? (ResponseStatusException) e :
+            recordIdentify(started, "error");
+            // The upload ran ahead of recognition, so remove the photo if identification failed
+            upload.thenAccept(url -> blobStore.delete(imagePath));
+
+            Throwable cause = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+            logger.error("Failed to process plant identification for user {}", uid, cause);
+            throw (cause instanceof ResponseStatusException) ? (ResponseStatusException) cause :
                     new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Plant processing failed.");
         }
     }
 
+    /**
+     * Resolves the species from the perceptual hash index when a near-identical photo was identified before,
+     * otherwise calls PlantNet and indexes the result.
+     */
+    String recognize(byte[] imageBytes) {
+        Long hash = null;
+        try {
+            hash = PerceptualHash.dHash(imageBytes);
+            String known = hashIndex.lookup(hash);
+            if (known != null) return known;
+        } catch (IOException e) {
+            logger.debug("Could not hash image, skipping index: {}", e.getMessage());
+        }
+
+        String species = callPlantRecognitionApi(imageBytes);
+        if (hash != null) hashIndex.record(hash, species);
+        return species;
+    }
+
+    private static String toMasterId(String recognizedSpecies) {
+        return recognizedSpecies.toLowerCase().trim().replace(" ", "_");
+    }
+
+    private <T> T timed(String stage, Supplier<T> work) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            T result = work.get();
+            outcome = "success";
+            return result;
+        } finally {
+            sample.stop(Timer.builder("sprouty.identify.stage")
+                    .description("Latency of one plant identification stage")
+                    .tag("stage", stage)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private void recordIdentify(long startedNanos, String outcome) {
+        Timer.builder("sprouty.identify")
+                .description("End-to-end plant identification latency")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+    }
+
     public void manageSensor(String userId, String plantId, String sensorId) {
         DocumentReference docRef = getValidatedPlantReference(userId, plantId);
         try {
@@ -124,7 +225,8 @@ public class PlantService {
                     throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "This sensor is already linked to another plant.");
                 }
             }
-            docRef.update("connectedSensorId", sensorId).get();
+            update(docRef, userId, Collections.singletonMap("connectedSensorId", sensorId)).get();
+            gardenProfileCache.invalidate(userId);
         } catch (Exception e) {
             throw (e instanceof ResponseStatusException) ? (ResponseStatusException) e :
                     new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to update sensor link.");
@@ -135,13 +237,18 @@ public class PlantService {
         DocumentReference docRef = getValidatedPlantReference(userId, plantId);
         try {
             DocumentSnapshot snapshot = docRef.get().get();
-            Map<String, Object> updates = new HashMap<>();
-            updates.put("lastWatered", System.currentTimeMillis());
+            long now = System.currentTimeMillis();
+            Map<String, Object> updates = new HashMap<>(WateringSchedule.fields(plantId, now,
+                    wateringInterval(snapshot), !Boolean.FALSE.equals(snapshot.getBoolean("notificationsEnabled"))));
+            updates.put("lastWatered", now);
 
             if ("Thirsty".equalsIgnoreCase(snapshot.getString("healthStatus"))) {
                 updates.put("healthStatus", "Healthy");
             }
-            docRef.update(updates).get();
+            update(docRef, userId, updates).get();
+            reminderScheduler.plantScheduled(plantId, (Long) updates.get(WateringSchedule.NEXT_DUE_FIELD));
+            // Before the sync push, which makes the app refetch the profile
+            gardenProfileCache.invalidate(userId);
 
             NotificationRequest syncRequest = new NotificationRequest();
             syncRequest.setUserId(userId);
@@ -157,12 +264,35 @@ public class PlantService {
 
     public void updatePlantName(String userId, String plantId, String newName) {
         DocumentReference docRef = getValidatedPlantReference(userId, plantId);
-        docRef.update("customName", newName != null ? newName.trim() : null);
+        try {
+            update(docRef, userId, Collections.singletonMap("customName", newName != null ? newName.trim() : null)).get();
+            // Only once the write landed, or a concurrent read could cache the old name again
+            gardenProfileCache.invalidate(userId);
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to rename plant.");
+        }
     }
 
     public void updateNotificationSettings(String userId, String plantId, boolean enabled) {
         DocumentReference docRef = getValidatedPlantReference(userId, plantId);
-        docRef.update("notificationsEnabled", enabled);
+        try {
+            // Turning reminders off takes the plant out of the watering job's due queries
+            DocumentSnapshot snapshot = docRef.get().get();
+            Long lastWatered = snapshot.getLong("lastWatered");
+            Map<String, Object> updates = new HashMap<>(WateringSchedule.fields(plantId,
+                    lastWatered != null ? lastWatered : System.currentTimeMillis(), wateringInterval(snapshot), enabled));
+            updates.put("notificationsEnabled", enabled);
+            update(docRef, userId, updates).get();
+            reminderScheduler.plantScheduled(plantId, (Long) updates.get(WateringSchedule.NEXT_DUE_FIELD));
+            gardenProfileCache.invalidate(userId);
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to update notification settings.");
+        }
+    }
+
+    private static long wateringInterval(DocumentSnapshot snapshot) {
+        Long interval = snapshot.getLong("targetWateringInterval");
+        return interval != null ? interval : 0L;
     }
 
     // --- EXTERNAL API CALLS ---
@@ -233,22 +363,50 @@ public class PlantService {
 
     // --- STORAGE & DELETE ---
 
-    String uploadImageToStorage(byte[] imageBytes, String userId) {
+    String uploadImageToStorage(byte[] imageBytes, String path) {
         try {
-            Bucket bucket = StorageClient.getInstance().bucket();
-            String fileName = String.format("users/%s/plants/%s.jpg", userId, UUID.randomUUID());
-            Blob blob = bucket.create(fileName, imageBytes, "image/jpeg");
-            return blob.signUrl(3650, TimeUnit.DAYS).toString();
+            return blobStore.put(path, imageBytes, "image/jpeg");
         } catch (Exception e) {
-            logger.error("Image upload to Firebase Storage failed for user {}", userId, e);
+            logger.error("Image upload to Firebase Storage failed for {}", path, e);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to save plant image.");
         }
     }
 
+    /**
+     * Renders the normalized, medium and thumbnail variants in the background and points the plant at them.
+     * Until that finishes (or if it fails) the plant keeps the original image URL.
+     */
+    void attachImageVariants(DocumentReference plantRef, String ownerId, String imagePath, byte[] imageBytes) {
+        imagePipeline.submit(imagePath, imageBytes).whenComplete((urls, error) -> {
+            if (error != null) {
+                logger.warn("Image variants failed for {}: {}", imagePath, error.getMessage());
+                return;
+            }
+            update(plantRef, ownerId, Map.of(
+                    "imageUrl", urls.normalizedUrl(),
+                    "mediumImageUrl", urls.mediumUrl(),
+                    "thumbnailUrl", urls.thumbnailUrl()))
+                    .addListener(() -> gardenProfileCache.invalidate(ownerId), Runnable::run);
+        });
+    }
+
+    /** Updates the plant together with its entry in the owner's garden view. */
+    private ApiFuture<List<WriteResult>> update(DocumentReference plantRef, String ownerId, Map<String, Object> updates) {
+        WriteBatch batch = db.batch();
+        batch.update(plantRef, updates);
+        GardenViews.updatePlant(batch, db, ownerId, plantRef.getId(), updates);
+        return batch.commit();
+    }
+
     public void deleteUserPlant(String userId, String plantId) {
         DocumentReference docRef = getValidatedPlantReference(userId, plantId);
         try {
-            docRef.delete().get();
+            WriteBatch batch = db.batch();
+            batch.delete(docRef);
+            GardenViews.removePlant(batch, db, userId, plantId);
+            batch.commit().get();
+            reminderScheduler.plantRemoved(plantId);
+            gardenProfileCache.invalidate(userId);
             logger.info("Plant {} successfully deleted by user {}", plantId, userId);
         } catch (Exception e) {
             logger.error("Error deleting plant {} for user {}", plantId, userId, e);
@@ -267,7 +425,10 @@ public class PlantService {
             for (DocumentSnapshot doc : snapshot.getDocuments()) {
                 batch.delete(doc.getReference());
             }
+            batch.delete(GardenViews.of(db, uid));
             batch.commit().get();
+            snapshot.getDocuments().forEach(doc -> reminderScheduler.plantRemoved(doc.getId()));
+            gardenProfileCache.invalidate(uid);
             logger.info("Purged all plant records for user {}", uid);
         } catch (Exception e) {
             logger.error("Failed to batch delete plants for user {}", uid, e);
@@ -288,27 +449,19 @@ public class PlantService {
         }
     }
 
-    public GardenProfileResponse getFullGardenProfile(String uid) {
-        try {
-            List<UserPlant> userPlants = getUserPlants(uid);
-            if (userPlants.isEmpty()) return new GardenProfileResponse(List.of(), List.of());
-
-            List<String> speciesIds = userPlants.stream()
-                    .map(UserPlant::getSpeciesId)
-                    .filter(Objects::nonNull)
-                    .distinct()
-                    .collect(Collectors.toList());
-
-            List<MasterPlant> masterPlants = db.collection(MASTER_PLANTS_COLLECTION)
-                    .whereIn(FieldPath.documentId(), speciesIds)
-                    .get().get().getDocuments().stream()
-                    .map(doc -> doc.toObject(MasterPlant.class))
-                    .collect(Collectors.toList());
-
-            return new GardenProfileResponse(userPlants, masterPlants);
-        } catch (Exception e) {
-            logger.error("Failed to build garden profile for user {}", uid, e);
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Could not load garden profile.");
-        }
+    /**
+     * Joins the user's plants with the care data of their species. Species come from the in-memory
+     * {@link SpeciesCache}, so building a profile reads nothing beyond the user's garden view, and is not
+     * limited by the 30 values of a whereIn query. The plants are read by {@link GardenProfileCache}.
+     */
+    public GardenProfileResponse buildGardenProfile(List<UserPlant> userPlants) {
+        List<MasterPlant> masterPlants = userPlants.stream()
+                .map(UserPlant::getSpeciesId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .map(speciesCache::find)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return new GardenProfileResponse(userPlants, masterPlants);
     }
 }
\ No newline at end of file
@@ -0,0 +1,226 @@
+package si.uni.fri.sprouty.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.firestore.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.server.ResponseStatusException;
+import si.uni.fri.sprouty.dto.MasterPlant;
+import si.uni.fri.sprouty.firestore.FirestoreErrors;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide cache of master_plants care data, keyed by normalized master ID.
+ * Concurrent misses for the same species share a single in-flight load, so a new species
+ * is generated once per replica, and replicas that generate it at the same time keep whichever
+ * copy was stored first. Failed generations are cached for a short time so a broken
+ * species does not hammer the AI backend; Firestore errors and species that {@link #find} did not
+ * see are never cached, so the next caller reads again. A snapshot listener keeps entries current and tells
+ * change listeners about species that were edited or removed; while it is subscribed, species
+ * never expire, and ttl only applies after it failed.
+ */
+public class SpeciesCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpeciesCache.class);
+    private static final String MASTER_PLANTS_COLLECTION = "master_plants";
+
+    record Entry(MasterPlant plant, HttpStatusCode failureStatus, String failureReason, boolean retryable) {
+        static Entry found(MasterPlant plant) {
+            return new Entry(plant, null, null, false);
+        }
+
+        /** Generating care data failed; kept for negativeTtl. */
+        static Entry failed(HttpStatusCode status, String reason) {
+            return new Entry(null, status, reason, false);
+        }
+
+        /** The lookup failed for a reason unrelated to the species; handed to waiting callers, never kept. */
+        static Entry retryable(HttpStatusCode status, String reason) {
+            return new Entry(null, status, reason, true);
+        }
+
+        boolean isFailure() {
+            return plant == null;
+        }
+    }
+
+    private final Firestore db;
+    private final AsyncCache<String, Entry> cache;
+    private final List<Consumer<String>> changeListeners = new CopyOnWriteArrayList<>();
+    private ListenerRegistration registration;
+    private volatile boolean listening;
+
+    public SpeciesCache(Firestore db, long maximumSize, Duration ttl, Duration negativeTtl) {
+        this.db = db;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                        if (entry.isFailure()) return negativeTtl.toNanos();
+                        // The listener replaces or drops a species when it changes, so it only goes stale without it
+                        return listening ? Long.MAX_VALUE : ttl.toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, entry, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .buildAsync();
+    }
+
+    public void start() {
+        try {
+            // The initial snapshot delivers every species, which warms the cache
+            listening = true;
+            registration = db.collection(MASTER_PLANTS_COLLECTION).addSnapshotListener((snapshot, error) -> {
+                if (error != null) {
+                    logger.error("Species cache listener failed, clearing cache: {}", error.getMessage());
+                    listening = false;
+                    cache.synchronous().invalidateAll();
+                    return;
+                }
+                if (snapshot == null) return;
+                for (DocumentChange change : snapshot.getDocumentChanges()) {
+                    QueryDocumentSnapshot doc = change.getDocument();
+                    MasterPlant plant = (change.getType() == DocumentChange.Type.REMOVED) ? null : doc.toObject(MasterPlant.class);
+                    if (plant == null) {
+                        cache.synchronous().invalidate(doc.getId());
+                    } else {
+                        cache.put(doc.getId(), CompletableFuture.completedFuture(Entry.found(plant)));
+                    }
+                    // New species cannot be part of anything built before, so only edits are announced
+                    if (change.getType() != DocumentChange.Type.ADDED) {
+                        changeListeners.forEach(listener -> listener.accept(doc.getId()));
+                    }
+                }
+            });
+        } catch (Exception e) {
+            listening = false;
+            logger.warn("Species cache could not subscribe to master_plants: {}", e.getMessage());
+        }
+    }
+
+    public void stop() {
+        listening = false;
+        if (registration != null) registration.remove();
+    }
+
+    /**
+     * Returns the care data for the species, loading it from Firestore or generating it on a miss.
+     * Only one caller per species runs the load; the others wait for its result.
+     * The returned instance is shared and must not be modified.
+     */
+    public MasterPlant get(String masterId, Supplier<MasterPlant> generator) {
+        Entry entry = resolve(masterId, generator);
+        if (entry.isFailure()) {
+            throw new ResponseStatusException(entry.failureStatus(), entry.failureReason());
+        }
+        return entry.plant();
+    }
+
+    /**
+     * Returns the care data for the species, loading it from Firestore on a miss, or null if the species
+     * does not exist. Never generates care data, and a species it did not find stays a miss for {@link #get}.
+     */
+    public MasterPlant find(String masterId) {
+        Entry entry = resolve(masterId, null);
+        if (!entry.isFailure()) return entry.plant();
+        // A failed generation means the species was never stored either
+        if (!entry.retryable() || entry.failureStatus() == HttpStatus.NOT_FOUND) return null;
+        throw new ResponseStatusException(entry.failureStatus(), entry.failureReason());
+    }
+
+    private Entry resolve(String masterId, Supplier<MasterPlant> generator) {
+        while (true) {
+            CompletableFuture<Entry> pending = new CompletableFuture<>();
+            CompletableFuture<Entry> existing = cache.asMap().putIfAbsent(masterId, pending);
+            if (existing == null) {
+                Entry entry = load(masterId, generator);
+                pending.complete(entry);
+                if (entry.retryable()) cache.asMap().remove(masterId, pending);
+                return entry;
+            }
+
+            Entry entry;
+            try {
+                entry = existing.join();
+            } catch (CompletionException e) {
+                entry = Entry.retryable(HttpStatus.INTERNAL_SERVER_ERROR, "Species lookup failed.");
+            }
+            // Joined a find() that did not see the species; a caller that can generate it takes its own turn
+            if (generator != null && entry.retryable() && entry.failureStatus() == HttpStatus.NOT_FOUND) {
+                cache.asMap().remove(masterId, existing);
+                continue;
+            }
+            return entry;
+        }
+    }
+
+    /** Registers a callback for species that were edited or removed in master_plants. */
+    public void addChangeListener(Consumer<String> listener) {
+        changeListeners.add(listener);
+    }
+
+    public void invalidate(String masterId) {
+        cache.synchronous().invalidate(masterId);
+    }
+
+    /** Reads the species, generating and storing it when missing unless generator is null. */
+    private Entry load(String masterId, Supplier<MasterPlant> generator) {
+        try {
+            DocumentReference masterRef = db.collection(MASTER_PLANTS_COLLECTION).document(masterId);
+            DocumentSnapshot masterSnap = masterRef.get().get();
+            MasterPlant plant = masterSnap.exists() ? masterSnap.toObject(MasterPlant.class) : null;
+            if (plant != null) return Entry.found(plant);
+            if (generator == null) return Entry.retryable(HttpStatus.NOT_FOUND, "Unknown species.");
+
+            try {
+                plant = generator.get();
+            } catch (ResponseStatusException e) {
+                logger.warn("Caching failed generation for species {}: {}", masterId, e.getReason());
+                return Entry.failed(e.getStatusCode(), e.getReason());
+            } catch (RuntimeException e) {
+                logger.error("Care data generation failed for species {}", masterId, e);
+                return Entry.failed(HttpStatus.INTERNAL_SERVER_ERROR, "Species lookup failed.");
+            }
+            plant.setId(masterId);
+            try {
+                masterRef.create(plant).get();
+                logger.info("Generated care data for new species {}", masterId);
+            } catch (ExecutionException e) {
+                if (!FirestoreErrors.is(e.getCause(), StatusCode.Code.ALREADY_EXISTS)) throw e;
+                // Another replica generated it at the same time; everyone keeps the stored copy
+                plant = masterRef.get().get().toObject(MasterPlant.class);
+                if (plant == null) return Entry.retryable(HttpStatus.INTERNAL_SERVER_ERROR, "Species lookup failed.");
+                logger.info("Species {} was generated concurrently elsewhere, using the stored copy", masterId);
+            }
+            return Entry.found(plant);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Entry.retryable(HttpStatus.INTERNAL_SERVER_ERROR, "Species lookup interrupted.");
+        } catch (Exception e) {
+            logger.error("Species lookup failed for {}", masterId, e);
+            return Entry.retryable(HttpStatus.INTERNAL_SERVER_ERROR, "Species lookup failed.");
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package si.uni.fri.sprouty.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Hierarchical timing wheel keyed by K, with one deadline per key.
+ * Level 0 has one slot per tick; each higher level has slots SLOTS times wider, and its entries
+ * cascade down a level when the wheel reaches their slot. Schedule and cancel are O(1);
+ * {@link #advance} costs one slot visit per elapsed tick plus the entries it moves or fires.
+ * Not thread-safe; callers serialize access.
+ */
+class TimingWheel<K> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    static final int LEVELS = 4;
+
+    private final long tickMs;
+    private final Entry<K>[][] wheels;
+    private final Map<K, Entry<K>> entries = new HashMap<>();
+    /** Entries scheduled with a deadline the wheel has already passed. */
+    private final Entry<K> overdue = Entry.sentinel();
+    /** Next tick to be processed; everything before it has fired. */
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMs, long startMillis) {
+        this.tickMs = tickMs;
+        this.currentTick = startMillis / tickMs;
+        this.wheels = new Entry[LEVELS][SLOTS];
+        for (Entry<K>[] level : wheels) {
+            for (int i = 0; i < SLOTS; i++) level[i] = Entry.sentinel();
+        }
+    }
+
+    /**
+     * Sets the key's deadline, replacing any earlier one. A deadline that has already passed
+     * fires on the next {@link #advance}.
+     */
+    void schedule(K key, long deadlineMillis) {
+        Entry<K> entry = entries.get(key);
+        if (entry != null) {
+            entry.unlink();
+        } else {
+            entry = new Entry<>(key);
+            entries.put(key, entry);
+        }
+        entry.deadlineTick = deadlineMillis / tickMs;
+        place(entry);
+    }
+
+    boolean cancel(K key) {
+        Entry<K> entry = entries.remove(key);
+        if (entry == null) return false;
+        entry.unlink();
+        return true;
+    }
+
+    void removeIf(Predicate<K> filter) {
+        entries.values().removeIf(entry -> {
+            if (!filter.test(entry.key)) return false;
+            entry.unlink();
+            return true;
+        });
+    }
+
+    boolean contains(K key) {
+        return entries.containsKey(key);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Moves the wheel up to and including the tick containing nowMillis and returns the keys
+     * whose deadlines were reached.
+     */
+    List<K> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMs;
+        List<K> expired = new ArrayList<>();
+        drain(overdue, expired);
+        while (currentTick <= targetTick) {
+            cascade();
+            drain(wheels[0][(int) (currentTick & MASK)], expired);
+            currentTick++;
+        }
+        return expired;
+    }
+
+    private void drain(Entry<K> head, List<K> expired) {
+        while (head.next != head) {
+            Entry<K> entry = head.next;
+            entry.unlink();
+            entries.remove(entry.key);
+            expired.add(entry.key);
+        }
+    }
+
+    /**
+     * When currentTick starts a new slot on a higher level, that slot's entries move down.
+     * Higher levels go first so an entry can drop more than one level on the same tick.
+     */
+    private void cascade() {
+        int top = 0;
+        while (top + 1 < LEVELS && (currentTick & ((1L << ((top + 1) * BITS)) - 1)) == 0) top++;
+        for (int level = top; level >= 1; level--) {
+            Entry<K> head = wheels[level][(int) ((currentTick >>> (level * BITS)) & MASK)];
+            Entry<K> entry = head.next;
+            head.next = head;
+            head.prev = head;
+            while (entry != head) {
+                Entry<K> next = entry.next;
+                entry.next = entry.prev = null;
+                place(entry);
+                entry = next;
+            }
+        }
+    }
+
+    private void place(Entry<K> entry) {
+        long tick = entry.deadlineTick;
+        if (tick < currentTick) {
+            entry.linkBefore(overdue);
+            return;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = level * BITS;
+            if ((tick >>> shift) - (currentTick >>> shift) < SLOTS) {
+                entry.linkBefore(wheels[level][(int) ((tick >>> shift) & MASK)]);
+                return;
+            }
+        }
+        // Beyond the horizon: park in the farthest top-level slot and re-place when it cascades
+        int shift = (LEVELS - 1) * BITS;
+        entry.linkBefore(wheels[LEVELS - 1][(int) (((currentTick >>> shift) + SLOTS - 1) & MASK)]);
+    }
+
+    private static final class Entry<K> {
+        final K key;
+        long deadlineTick;
+        Entry<K> prev;
+        Entry<K> next;
+
+        Entry(K key) {
+            this.key = key;
+        }
+
+        static <K> Entry<K> sentinel() {
+            Entry<K> head = new Entry<>(null);
+            head.prev = head;
+            head.next = head;
+            return head;
+        }
+
+        void linkBefore(Entry<K> head) {
+            prev = head.prev;
+            next = head;
+            head.prev.next = this;
+            head.prev = this;
+        }
+
+        void unlink() {
+            if (prev == null) return;
+            prev.next = next;
+            next.prev = prev;
+            prev = next = null;
+        }
+    }
+}
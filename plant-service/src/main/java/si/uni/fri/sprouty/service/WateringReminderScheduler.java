@@ -0,0 +1,221 @@
+package si.uni.fri.sprouty.service;
+
+import com.google.cloud.firestore.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import si.uni.fri.sprouty.coordination.ClusterMembership;
+import si.uni.fri.sprouty.garden.GardenViews;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fires watering reminders within a tick of the plant becoming due, rather than at the next
+ * {@link WateringWatcher} sweep.
+ * Each replica owns a subset of the watering shards, chosen by rendezvous hashing over the replicas
+ * that heartbeat into locks/watering_wheel/members. For every owned shard a snapshot listener on
+ * plants with a nextWateringDue keeps a {@link TimingWheel} of deadlines current; the first snapshot
+ * rebuilds it at startup or when a shard changes hands. The hourly sweep stays as a safety net for
+ * shards that are briefly unowned.
+ */
+@Component
+public class WateringReminderScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(WateringReminderScheduler.class);
+    private static final String USER_PLANTS_COLLECTION = "user_plants";
+
+    private final Firestore db;
+    private final WateringWatcher wateringWatcher;
+    private final ClusterMembership membership;
+    private final int batchSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TimingWheel<String> wheel;
+    private final Set<Integer> ownedShards = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, ListenerRegistration> listeners = new ConcurrentHashMap<>();
+
+    public WateringReminderScheduler(Firestore db, WateringWatcher wateringWatcher, MeterRegistry meterRegistry,
+                                     @Value("${sprouty.watering.wheel.tick-ms:60000}") long tickMs,
+                                     @Value("${sprouty.watering.wheel.member-ttl-ms:180000}") long memberTtlMs,
+                                     @Value("${sprouty.watering.page-size:200}") int batchSize) {
+        this.db = db;
+        this.wateringWatcher = wateringWatcher;
+        this.membership = new ClusterMembership(db, "watering_wheel", Duration.ofMillis(memberTtlMs));
+        this.batchSize = Math.min(batchSize, GardenViews.MAX_PLANTS_PER_BATCH);
+        this.wheel = new TimingWheel<>(tickMs, System.currentTimeMillis());
+
+        meterRegistry.gauge("sprouty.watering.wheel.entries", this, WateringReminderScheduler::size);
+        meterRegistry.gauge("sprouty.watering.wheel.shards", ownedShards, Set::size);
+    }
+
+    /**
+     * Heartbeats this replica and adjusts the owned shards to the current membership.
+     * The first run (at startup) subscribes to this replica's shards, which loads their deadlines.
+     */
+    @Scheduled(fixedRateString = "${sprouty.watering.wheel.heartbeat-ms:60000}")
+    public void rebalance() {
+        try {
+            Set<Integer> target = shardsOwnedBy(membership.memberId(), membership.heartbeat());
+            for (Integer shard : List.copyOf(ownedShards)) {
+                if (!target.contains(shard)) release(shard);
+            }
+            for (Integer shard : target) {
+                if (!ownedShards.contains(shard)) acquire(shard);
+            }
+        } catch (Exception e) {
+            logger.warn("Watering wheel rebalance failed, keeping {} shards: {}", ownedShards.size(), e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedRateString = "${sprouty.watering.wheel.tick-ms:60000}")
+    public void tick() {
+        long now = System.currentTimeMillis();
+        List<String> due;
+        lock.lock();
+        try {
+            due = wheel.advance(now);
+        } finally {
+            lock.unlock();
+        }
+
+        for (int from = 0; from < due.size(); from += batchSize) {
+            List<String> plantIds = due.subList(from, Math.min(from + batchSize, due.size()));
+            try {
+                remind(plantIds, now);
+            } catch (Exception e) {
+                logger.error("Watering reminders for {} plants failed, retrying next tick: {}", plantIds.size(), e.getMessage());
+                for (String plantId : plantIds) plantScheduled(plantId, now);
+            }
+        }
+    }
+
+    /**
+     * Local fast path for writes made by this replica; writes from other replicas arrive through the listeners.
+     */
+    public void plantScheduled(String plantId, Long nextWateringDue) {
+        if (!ownedShards.contains(WateringSchedule.shardOf(plantId))) return;
+        lock.lock();
+        try {
+            if (nextWateringDue != null) wheel.schedule(plantId, nextWateringDue);
+            else wheel.cancel(plantId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void plantRemoved(String plantId) {
+        lock.lock();
+        try {
+            wheel.cancel(plantId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return wheel.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (Integer shard : List.copyOf(ownedShards)) release(shard);
+        try {
+            membership.leave();
+        } catch (Exception e) {
+            logger.warn("Could not leave watering wheel membership: {}", e.getMessage());
+        }
+    }
+
+    static Set<Integer> shardsOwnedBy(String member, Collection<String> members) {
+        return ClusterMembership.partitionsOwnedBy(member, members, WateringSchedule.SHARDS);
+    }
+
+    private void remind(List<String> plantIds, long now) throws Exception {
+        DocumentReference[] refs = plantIds.stream()
+                .map(id -> db.collection(USER_PLANTS_COLLECTION).document(id))
+                .toArray(DocumentReference[]::new);
+
+        WriteBatch batch = db.batch();
+        Map<String, Long> rescheduled = new HashMap<>();
+        List<WateringWatcher.Reminder> reminders = new ArrayList<>();
+        for (DocumentSnapshot doc : db.getAll(refs).get()) {
+            if (!doc.exists()) continue;
+            Long due = doc.getLong(WateringSchedule.NEXT_DUE_FIELD);
+            if (due == null || due > now) {
+                // Watered, disabled or already handled by the sweep since the wheel entry was set
+                plantScheduled(doc.getId(), due);
+                continue;
+            }
+            Map<String, Object> updates = wateringWatcher.checkPlant(doc, now, reminders);
+            batch.update(doc.getReference(), updates);
+            GardenViews.updatePlant(batch, db, doc.getString("ownerId"), doc.getId(), updates);
+            rescheduled.put(doc.getId(), (Long) updates.get(WateringSchedule.NEXT_DUE_FIELD));
+        }
+        if (rescheduled.isEmpty()) return;
+
+        batch.commit().get();
+        rescheduled.forEach(this::plantScheduled);
+        wateringWatcher.sendDigests(reminders);
+        logger.info("Watering wheel checked {} due plants, {} need water", rescheduled.size(), reminders.size());
+    }
+
+    private void acquire(int shard) {
+        // Owned before subscribing, so the initial snapshot is not discarded by apply
+        ownedShards.add(shard);
+        listeners.put(shard, db.collection(USER_PLANTS_COLLECTION)
+                .whereEqualTo(WateringSchedule.SHARD_FIELD, shard)
+                .whereGreaterThan(WateringSchedule.NEXT_DUE_FIELD, 0L)
+                .addSnapshotListener((snapshot, error) -> {
+                    if (error != null) {
+                        logger.error("Watering shard {} listener failed, the hourly sweep covers it: {}", shard, error.getMessage());
+                        return;
+                    }
+                    if (snapshot != null) apply(shard, snapshot);
+                }));
+        logger.info("Watering wheel acquired shard {}", shard);
+    }
+
+    private void release(int shard) {
+        ownedShards.remove(shard);
+        ListenerRegistration registration = listeners.remove(shard);
+        if (registration != null) registration.remove();
+        lock.lock();
+        try {
+            wheel.removeIf(plantId -> WateringSchedule.shardOf(plantId) == shard);
+        } finally {
+            lock.unlock();
+        }
+        logger.info("Watering wheel released shard {}", shard);
+    }
+
+    private void apply(int shard, QuerySnapshot snapshot) {
+        lock.lock();
+        try {
+            // A callback can still arrive after the shard was released
+            if (!ownedShards.contains(shard)) return;
+            for (DocumentChange change : snapshot.getDocumentChanges()) {
+                QueryDocumentSnapshot doc = change.getDocument();
+                Long due = doc.getLong(WateringSchedule.NEXT_DUE_FIELD);
+                if (change.getType() == DocumentChange.Type.REMOVED || due == null) {
+                    wheel.cancel(doc.getId());
+                } else {
+                    wheel.schedule(doc.getId(), due);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package si.uni.fri.sprouty.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fields that let the watering job find due plants without scanning user_plants.
+ * nextWateringDue is the epoch millis at which the plant should next be checked, or null when
+ * reminders are off (range queries skip nulls). wateringShard spreads plants over SHARDS
+ * buckets that replicas claim independently.
+ * Queries need the composite index user_plants(wateringShard ASC, nextWateringDue ASC).
+ */
+public final class WateringSchedule {
+
+    public static final int SHARDS = 16;
+    public static final String NEXT_DUE_FIELD = "nextWateringDue";
+    public static final String SHARD_FIELD = "wateringShard";
+
+    private WateringSchedule() {}
+
+    public static int shardOf(String plantId) {
+        return Math.floorMod(plantId.hashCode(), SHARDS);
+    }
+
+    public static Long nextDue(long lastWatered, long intervalDays, boolean notificationsEnabled) {
+        if (!notificationsEnabled || intervalDays <= 0) return null;
+        return lastWatered + TimeUnit.DAYS.toMillis(intervalDays);
+    }
+
+    /**
+     * Field updates that keep the schedule consistent with the given watering state.
+     */
+    public static Map<String, Object> fields(String plantId, long lastWatered, long intervalDays, boolean notificationsEnabled) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put(SHARD_FIELD, shardOf(plantId));
+        fields.put(NEXT_DUE_FIELD, nextDue(lastWatered, intervalDays, notificationsEnabled));
+        return fields;
+    }
+}
@@ -1,136 +1,325 @@
 package si.uni.fri.sprouty.service;
 
 import com.google.api.core.ApiFuture;
-import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
+import si.uni.fri.sprouty.care.SpeciesThresholdCache;
+import si.uni.fri.sprouty.coordination.JobCoordinator;
+import si.uni.fri.sprouty.dto.BulkNotificationResponse;
 import si.uni.fri.sprouty.dto.NotificationRequest;
+import si.uni.fri.sprouty.garden.GardenViews;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Sends watering reminders for plants whose nextWateringDue has passed.
+ * Each run walks the {@link WateringSchedule#SHARDS} shards in time-ordered, cursor-paged queries,
+ * so it only reads plants that are actually due. Shards are partitions of a {@link JobCoordinator} job,
+ * which lets several replicas split one run between them. Status updates are committed in batches
+ * and reminders go out as one digest per owner through notification-service's bulk endpoint.
+ */
 @Component
 public class WateringWatcher {
 
+    private static final Logger logger = LoggerFactory.getLogger(WateringWatcher.class);
+    private static final String USER_PLANTS_COLLECTION = "user_plants";
+    private static final long ONE_DAY_MS = TimeUnit.DAYS.toMillis(1);
+    /** Matches notification-service's bulk limit (one FCM sendEach call). */
+    private static final int MAX_BULK_SIZE = 500;
+    private static final int DIGEST_NAMED_PLANTS = 3;
+
     private final Firestore firestore;
     private final RestTemplate restTemplate;
+    private final SpeciesThresholdCache thresholdCache;
+    private final int pageSize;
+    private final long recheckIntervalMs;
+    private final long checkIntervalMs;
+    private final int maxInFlightBatches;
+    private final Timer runTimer;
+    private final JobCoordinator jobCoordinator;
 
-    public WateringWatcher(Firestore firestore, RestTemplate restTemplate) {
+    public WateringWatcher(Firestore firestore, RestTemplate restTemplate, SpeciesThresholdCache thresholdCache,
+                           JobCoordinator jobCoordinator, MeterRegistry meterRegistry,
+                           @Value("${sprouty.watering.page-size:200}") int pageSize,
+                           @Value("${sprouty.watering.recheck-interval-ms:43200000}") long recheckIntervalMs,
+                           @Value("${sprouty.schedule.watering-check:3600000}") long checkIntervalMs,
+                           @Value("${sprouty.watering.max-in-flight-batches:4}") int maxInFlightBatches) {
         this.restTemplate = restTemplate;
         this.firestore = firestore;
+        this.thresholdCache = thresholdCache;
+        this.jobCoordinator = jobCoordinator;
+        // Every plant update is mirrored into its owner's garden view, so a page takes two writes per plant
+        this.pageSize = Math.min(pageSize, GardenViews.MAX_PLANTS_PER_BATCH);
+        this.recheckIntervalMs = recheckIntervalMs;
+        this.checkIntervalMs = checkIntervalMs;
+        this.maxInFlightBatches = maxInFlightBatches;
+        this.runTimer = Timer.builder("sprouty.watering.run")
+                .description("Duration of a full watering sweep")
+                .register(meterRegistry);
     }
 
-    @Scheduled(fixedRateString = "${sprouty.schedule.watering-check:43200000}")
+    /** A plant that needs water, collected during a run and delivered in its owner's digest. */
+    record Reminder(String ownerId, String plantName, String reason) {}
+
+    /** Summary of one watering run, logged and recorded when the run ends. */
+    public record RunReport(int shards, int plantsChecked, int batchesCommitted, int batchesFailed,
+                            int reminders, int digestsSent, long durationMs) {}
+
+    /**
+     * Polls often so a shard whose run failed or whose replica died is picked up again within minutes;
+     * each shard is still swept at most once per check interval.
+     */
+    @Scheduled(fixedRateString = "${sprouty.watering.poll-ms:300000}")
     public void observePlantThirst() {
-        DocumentReference globalLockRef = firestore.collection("locks").document("watering_monitor_lock");
         long now = System.currentTimeMillis();
+        backfillSchedule();
 
-        try {
-            boolean jobLockAcquired = Boolean.TRUE.equals(firestore.runTransaction(transaction -> {
-                DocumentSnapshot lockSnap = transaction.get(globalLockRef).get();
+        Run run = new Run(maxInFlightBatches);
+        jobCoordinator.run("watering", WateringSchedule.SHARDS, Duration.ofMillis(checkIntervalMs), partition -> {
+            int failedBefore = run.batchesFailed;
+            processShard(partition.index(), now, run, partition::renew);
+            // The shard only counts as swept once its updates are durable
+            run.awaitAll();
+            if (run.batchesFailed > failedBefore) {
+                throw new IllegalStateException((run.batchesFailed - failedBefore) + " watering batches failed");
+            }
+        });
 
-                long lastRun = 0L;
-                if (lockSnap.exists() && lockSnap.contains("lastRun")) {
-                    Timestamp ts = lockSnap.getTimestamp("lastRun");
-                    if (ts != null) {
-                        lastRun = ts.toDate().getTime();
-                    }
-                }
+        RunReport report = finish(run);
+        if (report.shards() > 0) {
+            logger.info("Watering run finished: {}", report);
+        }
+    }
 
-                if (now - lastRun < 43200000) {
-                    return false;
-                }
+    /**
+     * Queues a status update for every plant in the shard that is due at or before now, one batch per page.
+     * Batches commit in the background, with at most maxInFlightBatches outstanding.
+     * heartbeat runs after every page and keeps the shard's lease alive.
+     */
+    void processShard(int shard, long now, Run run, Runnable heartbeat) throws Exception {
+        Query due = firestore.collection(USER_PLANTS_COLLECTION)
+                .whereEqualTo(WateringSchedule.SHARD_FIELD, shard)
+                .whereLessThanOrEqualTo(WateringSchedule.NEXT_DUE_FIELD, now)
+                .orderBy(WateringSchedule.NEXT_DUE_FIELD)
+                .limit(pageSize);
+
+        run.shards++;
+        DocumentSnapshot cursor = null;
+        while (true) {
+            List<QueryDocumentSnapshot> page = (cursor == null ? due : due.startAfter(cursor)).get().get().getDocuments();
+            if (page.isEmpty()) break;
 
-                transaction.set(globalLockRef, Map.of("lastRun", Timestamp.ofTimeMicroseconds(now * 1000)));
-                return true;
-            }).get());
+            WriteBatch batch = firestore.batch();
+            List<Reminder> reminders = new ArrayList<>();
+            for (QueryDocumentSnapshot doc : page) {
+                Map<String, Object> updates = checkPlant(doc, now, reminders);
+                batch.update(doc.getReference(), updates);
+                GardenViews.updatePlant(batch, firestore, doc.getString("ownerId"), doc.getId(), updates);
+            }
+            run.commit(batch, reminders);
+            run.plantsChecked += page.size();
+            heartbeat.run();
 
-            if (!jobLockAcquired) return;
+            if (page.size() < pageSize) break;
+            cursor = page.get(page.size() - 1);
+        }
+    }
+
+    /**
+     * Waits for the run's outstanding batches, then sends one digest per owner for the plants whose
+     * updates committed. A page whose batch failed stays due and is retried on the next run.
+     */
+    RunReport finish(Run run) {
+        run.awaitAll();
+        int digests = sendDigests(run.reminders);
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - run.startedNanos);
+        runTimer.record(durationMs, TimeUnit.MILLISECONDS);
+        return new RunReport(run.shards, run.plantsChecked, run.batchesCommitted, run.batchesFailed,
+                run.reminders.size(), digests, durationMs);
+    }
+
+    /**
+     * Groups reminders by owner and submits one digest per owner through the bulk endpoint.
+     * Returns the number of digests notification-service reports as sent; users without a device are not counted.
+     */
+    int sendDigests(List<Reminder> reminders) {
+        Map<String, List<Reminder>> byOwner = new LinkedHashMap<>();
+        for (Reminder reminder : reminders) {
+            if (reminder.ownerId() != null) byOwner.computeIfAbsent(reminder.ownerId(), id -> new ArrayList<>()).add(reminder);
+        }
+        List<NotificationRequest> digests = new ArrayList<>(byOwner.size());
+        byOwner.forEach((ownerId, plants) -> digests.add(digest(ownerId, plants)));
+
+        int sent = 0;
+        for (int from = 0; from < digests.size(); from += MAX_BULK_SIZE) {
+            List<NotificationRequest> chunk = digests.subList(from, Math.min(from + MAX_BULK_SIZE, digests.size()));
+            try {
+                BulkNotificationResponse response = restTemplate.postForObject(
+                        "http://notification-service/notifications/send/bulk", chunk, BulkNotificationResponse.class);
+                if (response != null) sent += response.sent();
+            } catch (Exception e) {
+                logger.warn("Watering digests failed for {} users: {}", chunk.size(), e.getMessage());
+            }
+        }
+        return sent;
+    }
 
-            System.out.println("Watering Watcher lock acquired. Processing plants...");
+    static NotificationRequest digest(String ownerId, List<Reminder> plants) {
+        NotificationRequest request = new NotificationRequest();
+        request.setUserId(ownerId);
+        if (plants.size() == 1) {
+            Reminder only = plants.getFirst();
+            request.setTitle("Sprouty: Thirsty Plant! 💧");
+            request.setBody(only.plantName() + " needs attention: " + only.reason());
+            return request;
+        }
 
-            Map<String, Double> speciesThresholds = loadMasterHumidityThresholds();
+        List<String> names = plants.stream().map(Reminder::plantName).limit(DIGEST_NAMED_PLANTS).toList();
+        int unnamed = plants.size() - names.size();
+        String list = unnamed > 0
+                ? String.join(", ", names) + " and " + unnamed + " more"
+                : String.join(", ", names.subList(0, names.size() - 1)) + " and " + names.getLast();
+        request.setTitle("Sprouty: " + plants.size() + " Thirsty Plants! 💧");
+        request.setBody(list + " need water.");
+        return request;
+    }
 
-            ApiFuture<QuerySnapshot> future = firestore.collection("user_plants")
-                    .whereEqualTo("notificationsEnabled", true)
-                    .get();
+    /**
+     * Decides whether a due plant needs a reminder and returns the updates for its document,
+     * including when it should be checked next. A needed reminder is added to reminders rather than sent.
+     * Also used by {@link WateringReminderScheduler}.
+     */
+    Map<String, Object> checkPlant(DocumentSnapshot doc, long now, List<Reminder> reminders) {
+        Map<String, Object> updates = new HashMap<>();
+        Long lastWatered = doc.getLong("lastWatered");
+        Long intervalDays = doc.getLong("targetWateringInterval");
+        boolean notificationsEnabled = !Boolean.FALSE.equals(doc.getBoolean("notificationsEnabled"));
 
-            List<QueryDocumentSnapshot> plants = future.get().getDocuments();
-            long nowInSeconds = now / 1000;
-            long oneDayInSeconds = 86400;
+        Long scheduledDue = lastWatered != null && intervalDays != null
+                ? WateringSchedule.nextDue(lastWatered, intervalDays, notificationsEnabled) : null;
+        if (scheduledDue == null || scheduledDue > now) {
+            // Stale schedule (watered or reconfigured without the field being updated); just correct it
+            updates.put(WateringSchedule.NEXT_DUE_FIELD, scheduledDue);
+            return updates;
+        }
 
-            for (QueryDocumentSnapshot doc : plants) {
-                String speciesName = doc.getString("speciesName");
-                Long lastWatered = doc.getLong("lastWatered");
-                Long intervalDays = doc.getLong("targetWateringInterval");
-                Double currentSoilHum = doc.getDouble("currentHumiditySoil");
-                Long lastSeen = doc.getLong("lastSeen");
-                String sensorId = doc.getString("connectedSensorId");
-                String ownerId = doc.getString("ownerId");
-                String customName = doc.getString("customName") != null ? doc.getString("customName") : speciesName;
+        String speciesName = doc.getString("speciesName");
+        Double currentSoilHum = doc.getDouble("currentHumiditySoil");
+        Long lastSeen = doc.getLong("lastSeen");
+        String sensorId = doc.getString("connectedSensorId");
+        String customName = doc.getString("customName") != null ? doc.getString("customName") : speciesName;
 
-                if (lastWatered == null || intervalDays == null) continue;
+        double dryThreshold = thresholdCache.get(doc.getString("speciesId")).dryThreshold(30.0);
+        boolean hasSensor = (sensorId != null && !sensorId.isEmpty());
+        boolean isDataFresh = (lastSeen != null && now - lastSeen < ONE_DAY_MS);
+        boolean canTrustSensor = hasSensor && isDataFresh;
+        boolean isActuallyDry = (canTrustSensor && currentSoilHum != null && currentSoilHum < dryThreshold);
 
-                double dryThreshold = speciesThresholds.getOrDefault(speciesName, 30.0);
-                long lastWateredSeconds = lastWatered / 1000;
-                long secondsInInterval = intervalDays * oneDayInSeconds;
+        if (canTrustSensor && currentSoilHum != null && currentSoilHum >= dryThreshold) {
+            updates.put("healthStatus", "Healthy");
+        } else {
+            String reason = isActuallyDry ?
+                    String.format("Soil is at %.1f%% (Min: %.1f%%).", currentSoilHum, dryThreshold) :
+                    "It's been " + intervalDays + " days since last watering.";
 
-                boolean isOverdueByCalendar = nowInSeconds > (lastWateredSeconds + secondsInInterval);
-                boolean hasSensor = (sensorId != null && !sensorId.isEmpty());
-                boolean isDataFresh = (lastSeen != null && (nowInSeconds - (lastSeen / 1000)) < oneDayInSeconds);
+            reminders.add(new Reminder(doc.getString("ownerId"), customName, reason));
+            updates.put("healthStatus", "Thirsty");
+        }
 
-                boolean canTrustSensor = hasSensor && isDataFresh;
-                boolean isActuallyDry = (canTrustSensor && currentSoilHum != null && currentSoilHum < dryThreshold);
+        // Still overdue until watered, so look again after the recheck interval
+        updates.put(WateringSchedule.NEXT_DUE_FIELD, now + recheckIntervalMs);
+        return updates;
+    }
 
-                if (isOverdueByCalendar) {
-                    if (canTrustSensor && currentSoilHum != null && currentSoilHum >= dryThreshold) {
-                        doc.getReference().update("healthStatus", "Healthy");
-                    } else {
-                        String reason = isActuallyDry ?
-                                String.format("Soil is at %.1f%% (Min: %.1f%%).", currentSoilHum, dryThreshold) :
-                                "It's been " + intervalDays + " days since last watering.";
+    /**
+     * One-time fill of the schedule fields on plants created before they existed.
+     * Runs as a single-partition job that checkpoints after every page, so an interrupted backfill
+     * resumes after the last document it finished.
+     */
+    void backfillSchedule() {
+        jobCoordinator.run("watering-backfill", 1, JobCoordinator.ONCE, partition -> {
+            Query plants = firestore.collection(USER_PLANTS_COLLECTION).orderBy(FieldPath.documentId()).limit(pageSize);
+            int updated = 0;
+            String cursor = partition.checkpoint();
+            while (true) {
+                List<QueryDocumentSnapshot> page = (cursor == null ? plants : plants.startAfter(cursor)).get().get().getDocuments();
+                if (page.isEmpty()) break;
 
-                        sendWateringReminder(ownerId, customName, reason);
-                        doc.getReference().update("healthStatus", "Thirsty");
-                    }
+                WriteBatch batch = firestore.batch();
+                int pending = 0;
+                for (QueryDocumentSnapshot doc : page) {
+                    if (doc.contains(WateringSchedule.SHARD_FIELD)) continue;
+                    Long lastWatered = doc.getLong("lastWatered");
+                    Long interval = doc.getLong("targetWateringInterval");
+                    Map<String, Object> updates = WateringSchedule.fields(doc.getId(),
+                            lastWatered != null ? lastWatered : 0L, interval != null ? interval : 0L,
+                            !Boolean.FALSE.equals(doc.getBoolean("notificationsEnabled")));
+                    batch.update(doc.getReference(), updates);
+                    GardenViews.updatePlant(batch, firestore, doc.getString("ownerId"), doc.getId(), updates);
+                    pending++;
                 }
+                if (pending > 0) batch.commit().get();
+                updated += pending;
+
+                if (page.size() < pageSize) break;
+                cursor = page.get(page.size() - 1).getId();
+                partition.checkpoint(cursor);
             }
-        } catch (Exception e) {
-            System.err.println("Watering Observer Fail: " + e.getMessage());
-        }
+            logger.info("Watering schedule backfill complete, {} plants updated", updated);
+        });
     }
 
-    private Map<String, Double> loadMasterHumidityThresholds() throws Exception {
-        Map<String, Double> thresholds = new HashMap<>();
-        ApiFuture<QuerySnapshot> masterFuture = firestore.collection("master_plants").get();
+    /**
+     * State of one run: the bounded window of uncommitted batches and the reminders whose updates committed.
+     */
+    static final class Run {
+        private final int maxInFlight;
+        private final Deque<PendingBatch> inFlight = new ArrayDeque<>();
+        private final List<Reminder> reminders = new ArrayList<>();
+        private final long startedNanos = System.nanoTime();
+        private int shards;
+        private int plantsChecked;
+        private int batchesCommitted;
+        private int batchesFailed;
 
-        for (QueryDocumentSnapshot doc : masterFuture.get().getDocuments()) {
-            String species = doc.getString("speciesName");
-            String soilH = doc.getString("soilH");
+        Run(int maxInFlight) {
+            this.maxInFlight = Math.max(1, maxInFlight);
+        }
 
-            if (species != null && soilH != null) {
-                try {
-                    String minVal = soilH.split(",")[0].trim();
-                    thresholds.put(species, Double.parseDouble(minVal));
-                } catch (Exception ignored) {}
-            }
+        private record PendingBatch(ApiFuture<List<WriteResult>> commit, List<Reminder> reminders) {}
+
+        void commit(WriteBatch batch, List<Reminder> batchReminders) {
+            if (inFlight.size() >= maxInFlight) await(inFlight.poll());
+            inFlight.add(new PendingBatch(batch.commit(), batchReminders));
         }
-        return thresholds;
-    }
 
-    private void sendWateringReminder(String userId, String plantName, String reason) {
-        NotificationRequest request = new NotificationRequest();
-        request.setUserId(userId);
-        request.setTitle("Sprouty: Thirsty Plant! 💧");
-        request.setBody(plantName + " needs attention: " + reason);
-
-        try {
-            restTemplate.postForEntity("http://notification-service/notifications/send", request, String.class);
-        } catch (Exception e) {
-            System.err.println("Cloud Comm Fail: " + e.getMessage());
+        void awaitAll() {
+            while (!inFlight.isEmpty()) await(inFlight.poll());
+        }
+
+        private void await(PendingBatch pending) {
+            try {
+                pending.commit().get();
+                batchesCommitted++;
+                reminders.addAll(pending.reminders());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batchesFailed++;
+            } catch (ExecutionException e) {
+                logger.warn("Watering batch failed, its {} reminders wait for the next run: {}",
+                        pending.reminders().size(), e.getCause().getMessage());
+                batchesFailed++;
+            }
         }
     }
-}
\ No newline at end of file
+}
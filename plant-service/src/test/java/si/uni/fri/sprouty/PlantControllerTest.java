@@ -7,8 +7,16 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import si.uni.fri.sprouty.controller.PlantController;
+import si.uni.fri.sprouty.service.GardenProfileCache;
 import si.uni.fri.sprouty.service.PlantService;
 
+import java.nio.charset.StandardCharsets;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -21,12 +29,32 @@ class PlantControllerTest {
     @MockBean
     private PlantService plantService;
 
+    @MockBean
+    private GardenProfileCache gardenProfileCache;
+
     @Test
     void getProfile_ShouldReturn401_WhenHeaderMissing() throws Exception {
         mockMvc.perform(get("/plants/profile"))
                 .andExpect(status().isInternalServerError());
     }
 
+    @Test
+    void getProfile_ShouldReturn304_WhenETagMatches() throws Exception {
+        GardenProfileCache.Profile profile = new GardenProfileCache.Profile(
+                "{\"userPlants\":[],\"masterPlants\":[]}".getBytes(StandardCharsets.UTF_8), "\"v1\"");
+        when(gardenProfileCache.get(eq("user1"), any())).thenReturn(profile);
+
+        mockMvc.perform(get("/plants/profile").header("X-User-Id", "user1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v1\""))
+                .andExpect(jsonPath("$.userPlants").isArray());
+
+        mockMvc.perform(get("/plants/profile").header("X-User-Id", "user1").header("If-None-Match", "\"v1\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+        verify(gardenProfileCache).notModified(profile);
+    }
+
     @Test
     void waterPlant_ShouldReturn200_WithCorrectHeader() throws Exception {
         mockMvc.perform(post("/plants/plant123/water")
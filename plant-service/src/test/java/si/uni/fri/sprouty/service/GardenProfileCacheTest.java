@@ -0,0 +1,163 @@
+package si.uni.fri.sprouty.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+import si.uni.fri.sprouty.dto.GardenProfileResponse;
+import si.uni.fri.sprouty.dto.GardenView;
+import si.uni.fri.sprouty.dto.UserPlant;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GardenProfileCacheTest {
+
+    @Mock private Firestore db;
+    @Mock private CollectionReference viewsCollection;
+    @Mock private DocumentReference viewRef;
+    @Mock private DocumentSnapshot viewSnapshot;
+    @Mock private ListenerRegistration registration;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<EventListener<DocumentSnapshot>> listeners = new ArrayList<>();
+    private GardenProfileCache cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        cache = cache(10);
+        when(db.collection("garden_views")).thenReturn(viewsCollection);
+        when(viewsCollection.document("user1")).thenReturn(viewRef);
+        // Like Firestore, every new listener first receives the current document
+        lenient().when(viewRef.addSnapshotListener(any(EventListener.class))).thenAnswer(invocation -> {
+            EventListener<DocumentSnapshot> listener = invocation.getArgument(0);
+            listeners.add(listener);
+            listener.onEvent(viewSnapshot, null);
+            return registration;
+        });
+    }
+
+    @Test
+    void get_ShouldServeRepeatedRequestsFromMemory() {
+        stubBuiltView();
+        AtomicInteger builds = new AtomicInteger();
+
+        GardenProfileCache.Profile first = cache.get("user1", plants -> {
+            builds.incrementAndGet();
+            assertEquals("plant1", plants.get(0).getId());
+            return new GardenProfileResponse(plants, List.of());
+        });
+        GardenProfileCache.Profile second = cache.get("user1", plants -> fail("should be cached"));
+
+        assertSame(first, second);
+        assertTrue(first.etag().startsWith("\"") && first.etag().endsWith("\""));
+        assertEquals(1, builds.get());
+        verify(viewRef, times(1)).addSnapshotListener(any());
+        assertEquals(1.0, meterRegistry.get("sprouty.plants.profile_cache").tag("result", "hit").counter().count());
+        assertEquals(1.0, meterRegistry.get("sprouty.plants.profile_cache").tag("result", "miss").counter().count());
+
+        cache.notModified(second);
+        assertEquals(first.body().length, meterRegistry.get("sprouty.plants.profile_cache.bytes_saved").counter().count());
+    }
+
+    @Test
+    void get_ShouldReloadAfterTheGardenViewChanges() {
+        stubBuiltView();
+        AtomicInteger builds = new AtomicInteger();
+        cache.get("user1", plants -> {
+            builds.incrementAndGet();
+            return new GardenProfileResponse(plants, List.of());
+        });
+
+        // A later snapshot means a write to one of the user's plants
+        listeners.get(0).onEvent(viewSnapshot, null);
+        verify(registration, timeout(1000)).remove();
+
+        cache.get("user1", plants -> {
+            builds.incrementAndGet();
+            return new GardenProfileResponse(plants, List.of());
+        });
+        assertEquals(2, builds.get());
+        verify(viewRef, times(2)).addSnapshotListener(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void get_ShouldRebuildAMissingViewFromUserPlants() throws Exception {
+        CollectionReference plantsCollection = mock(CollectionReference.class);
+        Query ownerQuery = mock(Query.class);
+        QuerySnapshot owned = mock(QuerySnapshot.class);
+        QueryDocumentSnapshot plantDoc = mock(QueryDocumentSnapshot.class);
+        Transaction transaction = mock(Transaction.class);
+        when(viewSnapshot.exists()).thenReturn(false);
+        when(db.collection("user_plants")).thenReturn(plantsCollection);
+        when(plantsCollection.whereEqualTo("ownerId", "user1")).thenReturn(ownerQuery);
+        when(transaction.get(ownerQuery)).thenReturn(ApiFutures.immediateFuture(owned));
+        when(owned.getDocuments()).thenReturn(List.of(plantDoc));
+        when(plantDoc.getId()).thenReturn("plant1");
+        when(plantDoc.toObject(UserPlant.class)).thenReturn(new UserPlant());
+        when(db.runTransaction(any(Transaction.Function.class))).thenAnswer(invocation ->
+                ApiFutures.immediateFuture(((Transaction.Function<Object>) invocation.getArgument(0)).updateCallback(transaction)));
+
+        GardenProfileCache.Profile profile = cache.get("user1", plants -> {
+            assertEquals("plant1", plants.get(0).getId());
+            return new GardenProfileResponse(plants, List.of());
+        });
+
+        assertNotNull(profile);
+        verify(transaction).set(eq(viewRef), argThat((Map<String, Object> data) ->
+                data.containsKey("builtAt") && ((Map<String, UserPlant>) data.get("plants")).containsKey("plant1")));
+        assertEquals(1.0, meterRegistry.get("sprouty.plants.garden_view.rebuilds").counter().count());
+    }
+
+    @Test
+    void get_ShouldCacheProfilesPastTheListenerCapWithoutAListener() {
+        GardenProfileCache capped = cache(0);
+        stubBuiltView();
+        when(viewRef.get()).thenReturn(ApiFutures.immediateFuture(viewSnapshot));
+
+        GardenProfileCache.Profile first = capped.get("user1", plants -> new GardenProfileResponse(plants, List.of()));
+        GardenProfileCache.Profile second = capped.get("user1", plants -> fail("should be cached"));
+
+        assertSame(first, second);
+        verify(viewRef, never()).addSnapshotListener(any());
+        verify(viewRef, times(1)).get();
+
+        // Unwatched entries only learn about this replica's writes
+        capped.invalidate("user1");
+        capped.get("user1", plants -> new GardenProfileResponse(plants, List.of()));
+        verify(viewRef, times(2)).get();
+    }
+
+    private GardenProfileCache cache(int maxListeners) {
+        return new GardenProfileCache(db, new ObjectMapper(), meterRegistry, DataSize.ofMegabytes(1), Duration.ofHours(1),
+                Duration.ofMinutes(1), maxListeners, Duration.ofSeconds(5));
+    }
+
+    private void stubBuiltView() {
+        UserPlant plant = new UserPlant();
+        plant.setOwnerId("user1");
+        GardenView view = new GardenView();
+        view.setPlants(Map.of("plant1", plant));
+        when(viewSnapshot.exists()).thenReturn(true);
+        when(viewSnapshot.get("builtAt")).thenReturn(1L);
+        when(viewSnapshot.toObject(GardenView.class)).thenReturn(view);
+    }
+}
@@ -0,0 +1,98 @@
+package si.uni.fri.sprouty.service;
+
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.Firestore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import si.uni.fri.sprouty.image.PerceptualHash;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImageHashIndexTest {
+
+    @Mock private Firestore db;
+    @Mock private CollectionReference hashCollection;
+    @Mock private DocumentReference hashDoc;
+    @Mock private DocumentReference evictedDoc;
+
+    @Test
+    void lookup_ShouldResolveNearDuplicatePhotoAndMissDifferentOne() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ImageHashIndex index = new ImageHashIndex(db, registry, 100, 6);
+        when(db.collection("image_hashes")).thenReturn(hashCollection);
+        when(hashCollection.document(anyString())).thenReturn(hashDoc);
+        when(hashDoc.set(anyMap())).thenReturn(ApiFutures.immediateFuture(null));
+
+        BufferedImage photo = photo(1600, 1200, false);
+        index.record(PerceptualHash.dHash(jpeg(photo)), "Monstera deliciosa");
+
+        // Same scene, re-encoded at a lower resolution
+        assertEquals("Monstera deliciosa", index.lookup(PerceptualHash.dHash(jpeg(scale(photo, 640, 480)))));
+        assertNull(index.lookup(PerceptualHash.dHash(jpeg(photo(1600, 1200, true)))));
+
+        assertEquals(1.0, registry.get("sprouty.identify.hash_cache").tag("result", "hit").counter().count());
+        assertEquals(1.0, registry.get("sprouty.identify.hash_cache").tag("result", "miss").counter().count());
+        verify(hashDoc, times(1)).set(anyMap());
+    }
+
+    @Test
+    void record_ShouldEvictLeastRecentlyUsedHash() {
+        ImageHashIndex index = new ImageHashIndex(db, new SimpleMeterRegistry(), 2, 0);
+        when(db.collection("image_hashes")).thenReturn(hashCollection);
+        when(hashCollection.document(anyString())).thenReturn(hashDoc);
+        when(hashCollection.document("0000000000000002")).thenReturn(evictedDoc);
+        when(hashDoc.set(anyMap())).thenReturn(ApiFutures.immediateFuture(null));
+        when(evictedDoc.set(anyMap())).thenReturn(ApiFutures.immediateFuture(null));
+        when(evictedDoc.delete()).thenReturn(ApiFutures.immediateFuture(null));
+
+        index.record(0x1L, "a");
+        index.record(0x2L, "b");
+        index.lookup(0x1L);
+        index.record(0x4L, "c");
+
+        assertEquals(2, index.size());
+        assertEquals("a", index.lookup(0x1L));
+        assertNull(index.lookup(0x2L));
+        verify(evictedDoc).delete();
+        verify(hashDoc, never()).delete();
+    }
+
+    private static BufferedImage photo(int width, int height, boolean inverted) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, inverted ? Color.WHITE : Color.GREEN.darker(), width, height, inverted ? Color.BLACK : Color.YELLOW));
+        g.fillRect(0, 0, width, height);
+        g.setColor(inverted ? Color.GREEN : Color.DARK_GRAY);
+        g.fillOval(width / 4, height / 5, width / 3, height / 2);
+        g.dispose();
+        return image;
+    }
+
+    private static BufferedImage scale(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(source, 0, 0, width, height, null);
+        g.dispose();
+        return target;
+    }
+
+    private static byte[] jpeg(BufferedImage image) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", out);
+        return out.toByteArray();
+    }
+}
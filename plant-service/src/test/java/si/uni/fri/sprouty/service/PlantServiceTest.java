@@ -1,14 +1,24 @@
 package si.uni.fri.sprouty.service;
 
 import com.google.api.core.ApiFutures;
+import com.google.api.core.SettableApiFuture;
 import com.google.cloud.firestore.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.RestTemplate;
+import si.uni.fri.sprouty.image.BlobStore;
+import si.uni.fri.sprouty.image.ImagePipeline;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -18,6 +28,12 @@ class PlantServiceTest {
 
     @Mock private Firestore db;
     @Mock private RestTemplate restTemplate;
+    @Mock private BlobStore blobStore;
+    @Mock private ImagePipeline imagePipeline;
+    @Mock private ImageHashIndex hashIndex;
+    @Mock private WateringReminderScheduler reminderScheduler;
+    @Mock private GardenProfileCache gardenProfileCache;
+    @Spy private MeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     // Firestore structure mocks
     @Mock private CollectionReference collectionReference;
@@ -44,12 +60,19 @@ class PlantServiceTest {
         // 1. Stub Internal Methods
         doReturn(species).when(plantService).callPlantRecognitionApi(any());
         doReturn("https://fake.com/fiddle.jpg").when(plantService).uploadImageToStorage(any(), any());
+        when(imagePipeline.submit(anyString(), any(byte[].class))).thenReturn(new CompletableFuture<>());
 
         // 2. Mock Firestore
         Firestore dbMock = mock(Firestore.class, RETURNS_DEEP_STUBS);
         java.lang.reflect.Field field = PlantService.class.getDeclaredField("db");
         field.setAccessible(true);
         field.set(plantService, dbMock);
+        java.lang.reflect.Field cacheField = PlantService.class.getDeclaredField("speciesCache");
+        cacheField.setAccessible(true);
+        cacheField.set(plantService, new SpeciesCache(dbMock, 100, Duration.ofHours(1), Duration.ofMinutes(1)));
+        java.lang.reflect.Field executorField = PlantService.class.getDeclaredField("identifyExecutor");
+        executorField.setAccessible(true);
+        executorField.set(plantService, (Executor) Runnable::run);
 
         // 3. Simulate MASTER DATA NOT FOUND
         DocumentReference masterDoc = dbMock.collection("master_plants").document(masterId);
@@ -68,12 +91,12 @@ class PlantServiceTest {
 
         // 5. Mock the Saves
         // For Master Save
-        when(masterDoc.set(any())).thenReturn(ApiFutures.immediateFuture(null));
+        when(masterDoc.create(any())).thenReturn(ApiFutures.immediateFuture(null));
 
         // For User Save
         DocumentReference userDoc = dbMock.collection("user_plants").document();
         when(userDoc.getId()).thenReturn("new-user-plant-id");
-        when(userDoc.set(any())).thenReturn(ApiFutures.immediateFuture(null));
+        when(dbMock.batch().commit()).thenReturn(ApiFutures.immediateFuture(List.of()));
 
         // --- ACT ---
         Map<String, Object> result = plantService.identifyAndProcess(uid, imageBytes);
@@ -83,7 +106,36 @@ class PlantServiceTest {
 
         // 1. Verify OpenAI was called
         verify(restTemplate, times(1)).postForEntity(contains("openai.com"), any(), any());
-        verify(masterDoc).set(any(si.uni.fri.sprouty.dto.MasterPlant.class));
-        verify(userDoc).set(any(si.uni.fri.sprouty.dto.UserPlant.class));
+        verify(masterDoc).create(any(si.uni.fri.sprouty.dto.MasterPlant.class));
+        // The plant and its garden view entry are written in one batch
+        verify(dbMock.batch()).set(eq(userDoc), any(si.uni.fri.sprouty.dto.UserPlant.class));
+        verify(dbMock.batch()).set(eq(dbMock.collection("garden_views").document(uid)), anyMap(), any(SetOptions.class));
+        verify(gardenProfileCache).invalidate(uid);
+        verify(imagePipeline).submit(startsWith("users/user123/plants/"), eq(imageBytes));
+        assertEquals(1, meterRegistry.get("sprouty.identify.stage").tag("stage", "recognize").timer().count());
     }
-}
\ No newline at end of file
+
+    @Test
+    void updatePlantName_ShouldInvalidateTheProfileOnlyOnceTheWriteCommitted() throws Exception {
+        Firestore dbMock = mock(Firestore.class, RETURNS_DEEP_STUBS);
+        java.lang.reflect.Field field = PlantService.class.getDeclaredField("db");
+        field.setAccessible(true);
+        field.set(plantService, dbMock);
+
+        DocumentReference plantDoc = dbMock.collection("user_plants").document("plant1");
+        when(plantDoc.get()).thenReturn(ApiFutures.immediateFuture(documentSnapshot));
+        when(plantDoc.getId()).thenReturn("plant1");
+        when(documentSnapshot.exists()).thenReturn(true);
+        when(documentSnapshot.getString("ownerId")).thenReturn("user123");
+        SettableApiFuture<List<WriteResult>> commit = SettableApiFuture.create();
+        when(dbMock.batch().commit()).thenReturn(commit);
+
+        CompletableFuture<Void> rename = CompletableFuture.runAsync(() -> plantService.updatePlantName("user123", "plant1", " Fern "));
+
+        // A profile read while the write is in flight must not be reinstated by an early invalidation
+        verify(gardenProfileCache, after(100).never()).invalidate(any());
+        commit.set(List.of());
+        rename.get(1, TimeUnit.SECONDS);
+        verify(gardenProfileCache).invalidate("user123");
+    }
+}
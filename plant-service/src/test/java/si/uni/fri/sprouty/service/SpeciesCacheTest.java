@@ -0,0 +1,166 @@
+package si.uni.fri.sprouty.service;
+
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.*;
+import io.grpc.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import si.uni.fri.sprouty.dto.MasterPlant;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SpeciesCacheTest {
+
+    @Mock private Firestore db;
+    @Mock private CollectionReference masterCollection;
+    @Mock private DocumentReference masterRef;
+    @Mock private DocumentSnapshot missingSnapshot;
+
+    private SpeciesCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new SpeciesCache(db, 100, Duration.ofHours(1), Duration.ofMinutes(1));
+        when(db.collection("master_plants")).thenReturn(masterCollection);
+        when(masterCollection.document("monstera")).thenReturn(masterRef);
+        lenient().when(masterRef.get()).thenReturn(ApiFutures.immediateFuture(missingSnapshot));
+        lenient().when(missingSnapshot.exists()).thenReturn(false);
+    }
+
+    @Test
+    void get_ShouldShareOneLoadBetweenConcurrentMisses() throws Exception {
+        when(masterRef.create(any(MasterPlant.class))).thenReturn(ApiFutures.immediateFuture(null));
+        AtomicInteger generated = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            Callable<MasterPlant> identify = () -> cache.get("monstera", () -> {
+                generated.incrementAndGet();
+                awaitQuietly(release);
+                MasterPlant plant = new MasterPlant();
+                plant.setSpeciesName("Monstera deliciosa");
+                return plant;
+            });
+            Future<MasterPlant> first = callers.submit(identify);
+            Future<MasterPlant> second = callers.submit(identify);
+            Thread.sleep(100);
+            release.countDown();
+
+            assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+        } finally {
+            callers.shutdownNow();
+        }
+
+        // A later identification is served from memory
+        assertEquals("Monstera deliciosa", cache.get("monstera", () -> fail("should be cached")).getSpeciesName());
+        assertEquals(1, generated.get());
+        verify(masterRef, times(1)).get();
+        verify(masterRef, times(1)).create(any(MasterPlant.class));
+    }
+
+    @Test
+    void get_ShouldCacheFailedLookups() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> cache.get("monstera", () -> {
+                attempts.incrementAndGet();
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "AI Care Data Generation Failed.");
+            }));
+            assertEquals("AI Care Data Generation Failed.", e.getReason());
+        }
+
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void get_ShouldKeepTheCopyAnotherReplicaStoredFirst() {
+        DocumentSnapshot storedSnapshot = mock(DocumentSnapshot.class);
+        MasterPlant stored = new MasterPlant();
+        stored.setSpeciesName("Monstera (stored)");
+        when(storedSnapshot.toObject(MasterPlant.class)).thenReturn(stored);
+        when(masterRef.get()).thenReturn(ApiFutures.immediateFuture(missingSnapshot), ApiFutures.immediateFuture(storedSnapshot));
+        when(masterRef.create(any(MasterPlant.class))).thenReturn(ApiFutures.immediateFailedFuture(Status.ALREADY_EXISTS.asRuntimeException()));
+
+        MasterPlant plant = cache.get("monstera", () -> {
+            MasterPlant generated = new MasterPlant();
+            generated.setSpeciesName("Monstera (generated here)");
+            return generated;
+        });
+
+        assertSame(stored, plant);
+        verify(masterRef, never()).set(any(MasterPlant.class));
+    }
+
+    @Test
+    void get_ShouldNotExpireSpeciesWhileTheListenerKeepsThemCurrent() throws Exception {
+        when(masterCollection.addSnapshotListener(any())).thenReturn(mock(ListenerRegistration.class));
+        when(masterRef.create(any(MasterPlant.class))).thenReturn(ApiFutures.immediateFuture(null));
+        SpeciesCache listened = new SpeciesCache(db, 100, Duration.ofMillis(1), Duration.ofMinutes(1));
+        SpeciesCache unlistened = new SpeciesCache(db, 100, Duration.ofMillis(1), Duration.ofMinutes(1));
+        listened.start();
+
+        listened.get("monstera", MasterPlant::new);
+        unlistened.get("monstera", MasterPlant::new);
+        Thread.sleep(50);
+        listened.get("monstera", () -> fail("should not have expired"));
+        unlistened.get("monstera", MasterPlant::new);
+
+        // One load for the listened cache, two for the one past its ttl
+        verify(masterRef, times(3)).get();
+    }
+
+    @Test
+    void get_ShouldNotCacheFirestoreErrors() {
+        DocumentSnapshot storedSnapshot = mock(DocumentSnapshot.class);
+        MasterPlant stored = new MasterPlant();
+        when(storedSnapshot.exists()).thenReturn(true);
+        when(storedSnapshot.toObject(MasterPlant.class)).thenReturn(stored);
+        when(masterRef.get()).thenReturn(
+                ApiFutures.immediateFailedFuture(Status.UNAVAILABLE.asRuntimeException()),
+                ApiFutures.immediateFuture(storedSnapshot));
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> cache.find("monstera"));
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, e.getStatusCode());
+
+        // The next profile build reads again instead of failing for the negative ttl
+        assertSame(stored, cache.find("monstera"));
+        verify(masterRef, times(2)).get();
+    }
+
+    @Test
+    void find_ShouldNotKeepAMissingSpeciesFromBeingGenerated() {
+        when(masterRef.create(any(MasterPlant.class))).thenReturn(ApiFutures.immediateFuture(null));
+
+        assertNull(cache.find("monstera"));
+        MasterPlant generated = cache.get("monstera", () -> {
+            MasterPlant plant = new MasterPlant();
+            plant.setSpeciesName("Monstera deliciosa");
+            return plant;
+        });
+
+        assertEquals("Monstera deliciosa", generated.getSpeciesName());
+        verify(masterRef).create(any(MasterPlant.class));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
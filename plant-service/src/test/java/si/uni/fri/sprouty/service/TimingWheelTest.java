@@ -0,0 +1,96 @@
+package si.uni.fri.sprouty.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    void advance_ShouldFireEachDeadlineInItsOwnMinute() {
+        TimingWheel<String> wheel = new TimingWheel<>(MINUTE, START);
+        wheel.schedule("soon", START + 5 * MINUTE);
+        wheel.schedule("tomorrow", START + TimeUnit.DAYS.toMillis(1));
+        wheel.schedule("next-month", START + TimeUnit.DAYS.toMillis(30) + 17 * MINUTE);
+
+        assertEquals(List.of(), wheel.advance(START + 4 * MINUTE));
+        assertEquals(List.of("soon"), wheel.advance(START + 5 * MINUTE));
+        assertEquals(List.of(), wheel.advance(START + TimeUnit.DAYS.toMillis(1) - MINUTE));
+        assertEquals(List.of("tomorrow"), wheel.advance(START + TimeUnit.DAYS.toMillis(1)));
+        assertEquals(List.of(), wheel.advance(START + TimeUnit.DAYS.toMillis(30) + 16 * MINUTE));
+        assertEquals(List.of("next-month"), wheel.advance(START + TimeUnit.DAYS.toMillis(30) + 17 * MINUTE));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void schedule_ShouldReplaceEarlierDeadline_AndCancelShouldRemoveIt() {
+        TimingWheel<String> wheel = new TimingWheel<>(MINUTE, START);
+        wheel.schedule("basil", START + 10 * MINUTE);
+        wheel.schedule("basil", START + 3 * TimeUnit.DAYS.toMillis(1));
+        wheel.schedule("fern", START + 10 * MINUTE);
+        assertTrue(wheel.cancel("fern"));
+        assertFalse(wheel.cancel("fern"));
+
+        assertEquals(List.of(), wheel.advance(START + 2 * TimeUnit.DAYS.toMillis(1)));
+        assertEquals(List.of("basil"), wheel.advance(START + 3 * TimeUnit.DAYS.toMillis(1)));
+    }
+
+    @Test
+    void schedule_ShouldFireOverdueDeadlineOnNextAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(MINUTE, START);
+        wheel.advance(START + 10 * MINUTE);
+        wheel.schedule("late", START);
+
+        assertEquals(List.of("late"), wheel.advance(START + 10 * MINUTE));
+    }
+
+    @Test
+    void removeIf_ShouldDropMatchingKeys() {
+        TimingWheel<String> wheel = new TimingWheel<>(MINUTE, START);
+        wheel.schedule("a1", START + MINUTE);
+        wheel.schedule("b1", START + MINUTE);
+        wheel.removeIf(key -> key.startsWith("a"));
+
+        assertFalse(wheel.contains("a1"));
+        assertEquals(List.of("b1"), wheel.advance(START + MINUTE));
+    }
+
+    @Test
+    void advance_ShouldMatchNaiveScheduleUnderRandomOperations() {
+        Random random = new Random(42);
+        TimingWheel<Integer> wheel = new TimingWheel<>(MINUTE, START);
+        Map<Integer, Long> expected = new HashMap<>();
+        long now = START;
+
+        for (int step = 0; step < 20_000; step++) {
+            int key = random.nextInt(300);
+            int op = random.nextInt(10);
+            if (op < 5) {
+                // Mostly near-term deadlines, some months or years out, a few already passed
+                long deadline = now - 2 * MINUTE + (long) (Math.pow(random.nextDouble(), 4) * 64L * 64 * 64 * 64 * 2 * MINUTE);
+                wheel.schedule(key, deadline);
+                expected.put(key, deadline);
+            } else if (op < 6) {
+                wheel.cancel(key);
+                expected.remove(key);
+            } else {
+                now += (long) (random.nextDouble() * random.nextDouble() * 300 * MINUTE);
+                long tick = now / MINUTE;
+                Set<Integer> due = new HashSet<>();
+                expected.forEach((k, deadline) -> { if (deadline / MINUTE <= tick) due.add(k); });
+                List<Integer> fired = wheel.advance(now);
+
+                assertEquals(due, new HashSet<>(fired));
+                assertEquals(due.size(), fired.size());
+                due.forEach(expected::remove);
+            }
+            assertEquals(expected.size(), wheel.size());
+        }
+    }
+}
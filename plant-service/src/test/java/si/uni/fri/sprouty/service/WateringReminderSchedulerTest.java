@@ -0,0 +1,40 @@
+package si.uni.fri.sprouty.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WateringReminderSchedulerTest {
+
+    @Test
+    void shardsOwnedBy_ShouldGiveEveryShardToExactlyOneMember() {
+        List<String> members = List.of("replica-a", "replica-b", "replica-c");
+
+        Set<Integer> all = new HashSet<>();
+        int total = 0;
+        for (String member : members) {
+            Set<Integer> owned = WateringReminderScheduler.shardsOwnedBy(member, members);
+            total += owned.size();
+            all.addAll(owned);
+        }
+
+        assertEquals(WateringSchedule.SHARDS, total);
+        assertEquals(WateringSchedule.SHARDS, all.size());
+    }
+
+    @Test
+    void shardsOwnedBy_ShouldOnlyMoveShardsOfTheMemberThatLeft() {
+        List<String> before = List.of("replica-a", "replica-b", "replica-c");
+        List<String> after = List.of("replica-a", "replica-b");
+
+        for (String member : after) {
+            Set<Integer> kept = WateringReminderScheduler.shardsOwnedBy(member, after);
+            assertTrue(kept.containsAll(WateringReminderScheduler.shardsOwnedBy(member, before)));
+        }
+        assertEquals(WateringSchedule.SHARDS, WateringReminderScheduler.shardsOwnedBy("solo", List.of("solo")).size());
+    }
+}
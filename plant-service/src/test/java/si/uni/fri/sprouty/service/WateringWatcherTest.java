@@ -0,0 +1,176 @@
+package si.uni.fri.sprouty.service;
+
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.RestTemplate;
+import si.uni.fri.sprouty.care.SpeciesThresholdCache;
+import si.uni.fri.sprouty.coordination.JobCoordinator;
+import si.uni.fri.sprouty.dto.BulkNotificationResponse;
+import si.uni.fri.sprouty.dto.NotificationRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WateringWatcherTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long RECHECK = TimeUnit.HOURS.toMillis(12);
+
+    @Mock private Firestore firestore;
+    @Mock private RestTemplate restTemplate;
+    @Mock private CollectionReference plantsCollection;
+    @Mock private Query query;
+    @Mock private QuerySnapshot querySnapshot;
+    @Mock private WriteBatch batch;
+    @Mock private CollectionReference viewsCollection;
+    @Mock private DocumentReference viewRef;
+    @Mock private JobCoordinator jobCoordinator;
+
+    private WateringWatcher watcher;
+
+    @BeforeEach
+    void setUp() {
+        watcher = new WateringWatcher(firestore, restTemplate, new SpeciesThresholdCache(firestore, 10),
+                jobCoordinator, new SimpleMeterRegistry(), 2, RECHECK, TimeUnit.HOURS.toMillis(1), 4);
+    }
+
+    @Test
+    void processShard_ShouldRemindThirstyPlantsAndTrustWetSensors() throws Exception {
+        DocumentReference thirstyRef = mock(DocumentReference.class);
+        DocumentReference wetRef = mock(DocumentReference.class);
+        QueryDocumentSnapshot thirsty = plant(thirstyRef, NOW - TimeUnit.DAYS.toMillis(8), 7L, null, null, null);
+        QueryDocumentSnapshot wet = plant(wetRef, NOW - TimeUnit.DAYS.toMillis(8), 7L, "AABBCC", 55.0, NOW - 60_000L);
+        // A full first page means the cursor is followed once more, onto an empty page
+        stubDueQuery();
+        when(querySnapshot.getDocuments()).thenReturn(List.of(thirsty, wet), List.of());
+        when(query.startAfter(wet)).thenReturn(query);
+        when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of()));
+        when(restTemplate.postForObject(anyString(), any(), eq(BulkNotificationResponse.class)))
+                .thenReturn(new BulkNotificationResponse(1, 0, 0));
+
+        WateringWatcher.Run run = new WateringWatcher.Run(4);
+        watcher.processShard(3, NOW, run, () -> {});
+        WateringWatcher.RunReport report = watcher.finish(run);
+
+        verify(batch).update(thirstyRef, Map.of("healthStatus", "Thirsty", WateringSchedule.NEXT_DUE_FIELD, NOW + RECHECK));
+        verify(batch).update(wetRef, Map.of("healthStatus", "Healthy", WateringSchedule.NEXT_DUE_FIELD, NOW + RECHECK));
+        // Both updates are mirrored into the owner's garden view in the same batch
+        verify(batch, times(2)).set(eq(viewRef), anyMap(), any(SetOptions.class));
+        verify(batch, times(1)).commit();
+        assertEquals(1, report.shards());
+        assertEquals(2, report.plantsChecked());
+        assertEquals(1, report.batchesCommitted());
+        assertEquals(1, report.reminders());
+        assertEquals(1, report.digestsSent());
+
+        ArgumentCaptor<List<NotificationRequest>> captor = ArgumentCaptor.captor();
+        verify(restTemplate, times(1)).postForObject(eq("http://notification-service/notifications/send/bulk"), captor.capture(), eq(BulkNotificationResponse.class));
+        assertEquals(1, captor.getValue().size());
+        assertEquals("owner", captor.getValue().getFirst().getUserId());
+    }
+
+    @Test
+    void finish_ShouldHoldBackReminders_WhenTheirBatchFailed() throws Exception {
+        DocumentReference ref = mock(DocumentReference.class);
+        QueryDocumentSnapshot thirsty = plant(ref, NOW - TimeUnit.DAYS.toMillis(8), 7L, null, null, null);
+        stubDueQuery();
+        when(querySnapshot.getDocuments()).thenReturn(List.of(thirsty));
+        when(batch.commit()).thenReturn(ApiFutures.immediateFailedFuture(new IllegalStateException("deadline exceeded")));
+
+        WateringWatcher.Run run = new WateringWatcher.Run(4);
+        watcher.processShard(3, NOW, run, () -> {});
+        WateringWatcher.RunReport report = watcher.finish(run);
+
+        assertEquals(0, report.batchesCommitted());
+        assertEquals(1, report.batchesFailed());
+        assertEquals(0, report.reminders());
+        verifyNoInteractions(restTemplate);
+    }
+
+    @Test
+    void sendDigests_ShouldCountOnlyDigestsNotificationServiceSent() {
+        when(restTemplate.postForObject(anyString(), any(), eq(BulkNotificationResponse.class)))
+                .thenReturn(new BulkNotificationResponse(1, 1, 0));
+
+        int sent = watcher.sendDigests(List.of(
+                new WateringWatcher.Reminder("owner", "Basil", "r"),
+                new WateringWatcher.Reminder("deviceless", "Fern", "r")));
+
+        // The second owner has no registered device, so notification-service skipped their digest
+        assertEquals(1, sent);
+    }
+
+    @Test
+    void digest_ShouldSummarizeSeveralPlantsForOneOwner() {
+        List<WateringWatcher.Reminder> plants = List.of(
+                new WateringWatcher.Reminder("owner", "Basil", "r"),
+                new WateringWatcher.Reminder("owner", "Fern", "r"),
+                new WateringWatcher.Reminder("owner", "Monstera", "r"),
+                new WateringWatcher.Reminder("owner", "Cactus", "r"));
+
+        NotificationRequest digest = WateringWatcher.digest("owner", plants);
+
+        assertEquals("Sprouty: 4 Thirsty Plants! 💧", digest.getTitle());
+        assertEquals("Basil, Fern, Monstera and 1 more need water.", digest.getBody());
+        assertEquals("Basil and Fern need water.", WateringWatcher.digest("owner", plants.subList(0, 2)).getBody());
+    }
+
+    @Test
+    void processShard_ShouldOnlyCorrectSchedule_WhenPlantWasWateredSinceItWasQueued() throws Exception {
+        DocumentReference ref = mock(DocumentReference.class);
+        long lastWatered = NOW - TimeUnit.DAYS.toMillis(1);
+        QueryDocumentSnapshot watered = plant(ref, lastWatered, 7L, null, null, null);
+        stubDueQuery();
+        when(querySnapshot.getDocuments()).thenReturn(List.of(watered));
+        when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of()));
+
+        WateringWatcher.Run run = new WateringWatcher.Run(4);
+        watcher.processShard(3, NOW, run, () -> {});
+        watcher.finish(run);
+
+        verify(batch).update(eq(ref), argThat((Map<String, Object> updates) ->
+                updates.size() == 1 && updates.get(WateringSchedule.NEXT_DUE_FIELD).equals(lastWatered + TimeUnit.DAYS.toMillis(7))));
+        verifyNoInteractions(restTemplate);
+    }
+
+    private void stubDueQuery() {
+        when(firestore.collection("user_plants")).thenReturn(plantsCollection);
+        when(plantsCollection.whereEqualTo(WateringSchedule.SHARD_FIELD, 3)).thenReturn(query);
+        when(query.whereLessThanOrEqualTo(WateringSchedule.NEXT_DUE_FIELD, NOW)).thenReturn(query);
+        when(query.orderBy(WateringSchedule.NEXT_DUE_FIELD)).thenReturn(query);
+        when(query.limit(2)).thenReturn(query);
+        when(query.get()).thenReturn(ApiFutures.immediateFuture(querySnapshot));
+        when(firestore.batch()).thenReturn(batch);
+        when(firestore.collection("garden_views")).thenReturn(viewsCollection);
+        when(viewsCollection.document("owner")).thenReturn(viewRef);
+    }
+
+    private static QueryDocumentSnapshot plant(DocumentReference ref, long lastWatered, long intervalDays,
+                                               String sensorId, Double soil, Long lastSeen) {
+        QueryDocumentSnapshot doc = mock(QueryDocumentSnapshot.class);
+        lenient().when(doc.getReference()).thenReturn(ref);
+        lenient().when(doc.getId()).thenReturn("plant-" + System.identityHashCode(ref));
+        lenient().when(doc.getLong("lastWatered")).thenReturn(lastWatered);
+        lenient().when(doc.getLong("targetWateringInterval")).thenReturn(intervalDays);
+        lenient().when(doc.getBoolean("notificationsEnabled")).thenReturn(true);
+        lenient().when(doc.getString("ownerId")).thenReturn("owner");
+        lenient().when(doc.getString("speciesName")).thenReturn("Basil");
+        lenient().when(doc.getString("connectedSensorId")).thenReturn(sensorId);
+        lenient().when(doc.getDouble("currentHumiditySoil")).thenReturn(soil);
+        lenient().when(doc.getLong("lastSeen")).thenReturn(lastSeen);
+        return doc;
+    }
+}
@@ -0,0 +1,17 @@
+package si.uni.fri.sprouty.config;
+
+import com.google.cloud.firestore.Firestore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import si.uni.fri.sprouty.care.SpeciesThresholdCache;
+
+@Configuration
+public class CacheConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public SpeciesThresholdCache speciesThresholdCache(Firestore firestore,
+                                                       @Value("${sprouty.cache.species-thresholds.max-size:5000}") long maxSize) {
+        return new SpeciesThresholdCache(firestore, maxSize);
+    }
+}
@@ -0,0 +1,31 @@
+package si.uni.fri.sprouty.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import si.uni.fri.sprouty.image.BlobStore;
+import si.uni.fri.sprouty.image.FirebaseBlobStore;
+import si.uni.fri.sprouty.image.ImagePipeline;
+import si.uni.fri.sprouty.image.ImageVariantGenerator;
+
+@Configuration
+public class ImageConfig {
+
+    @Bean
+    public BlobStore blobStore(@Value("${sprouty.storage.bucket:sprouty-plantapp.firebasestorage.app}") String bucketName,
+                               @Value("${sprouty.images.url-ttl-days:365}") long urlTtlDays) {
+        return new FirebaseBlobStore(bucketName, urlTtlDays);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ImagePipeline imagePipeline(BlobStore blobStore,
+                                       @Value("${sprouty.images.normalized-edge:1600}") int normalizedEdge,
+                                       @Value("${sprouty.images.medium-edge:640}") int mediumEdge,
+                                       @Value("${sprouty.images.thumbnail-edge:200}") int thumbnailEdge,
+                                       @Value("${sprouty.images.quality:0.82}") float quality,
+                                       @Value("${sprouty.images.workers:2}") int workers,
+                                       @Value("${sprouty.images.queue-capacity:32}") int queueCapacity) {
+        return new ImagePipeline(blobStore, new ImageVariantGenerator(normalizedEdge, mediumEdge, thumbnailEdge, quality),
+                workers, queueCapacity);
+    }
+}
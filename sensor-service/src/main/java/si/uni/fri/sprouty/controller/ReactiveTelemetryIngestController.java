@@ -0,0 +1,53 @@
+package si.uni.fri.sprouty.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import si.uni.fri.sprouty.dto.ErrorResponse;
+import si.uni.fri.sprouty.dto.SensorDataRequest;
+import si.uni.fri.sprouty.service.ReactiveSensorService;
+
+/**
+ * Reactive JSON ingest (sprouty.sensor.ingest.mode=reactive). The handler returns a Mono, so the
+ * servlet thread is released as soon as the lookup is issued and the response is written from the
+ * Firestore callback.
+ */
+@RestController
+@RequestMapping("/sensors")
+@Tag(name = "Sensor Integration", description = "IoT Hardware communication layer.")
+@ConditionalOnProperty(value = "sprouty.sensor.ingest.mode", havingValue = "reactive")
+public class ReactiveTelemetryIngestController {
+
+    private final ReactiveSensorService sensorService;
+
+    public ReactiveTelemetryIngestController(ReactiveSensorService sensorService) {
+        this.sensorService = sensorService;
+    }
+
+    @Operation(summary = "Ingest Environmental Telemetry")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Telemetry accepted for processing"),
+            @ApiResponse(responseCode = "404", description = "Sensor ID not recognized", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Server error", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Ingest saturated (too many readings in flight or queue full), retry later", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @PostMapping(value = "/data", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<String>> receiveSensorData(@Valid @RequestBody SensorDataRequest request) {
+        return sensorService.processSensorUpdate(
+                        request.getSensorId(),
+                        request.getTemperature(),
+                        request.getHumidity(),
+                        request.getMoisture(),
+                        System.currentTimeMillis())
+                .thenReturn(ResponseEntity.accepted().body("Data accepted."));
+    }
+}
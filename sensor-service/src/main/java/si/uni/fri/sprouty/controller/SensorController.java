@@ -1,50 +1,116 @@
 package si.uni.fri.sprouty.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import jakarta.validation.Valid;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.http.HttpStatus;
+import si.uni.fri.sprouty.dto.BatchIngestResponse;
 import si.uni.fri.sprouty.dto.ErrorResponse;
+import si.uni.fri.sprouty.dto.HistoryResponse;
 import si.uni.fri.sprouty.dto.ImageUploadRequest;
 import si.uni.fri.sprouty.dto.SensorDataRequest;
+import si.uni.fri.sprouty.service.SensorHistoryStore;
+import si.uni.fri.sprouty.service.SensorReadings;
 import si.uni.fri.sprouty.service.SensorService;
+import si.uni.fri.sprouty.service.TelemetryFrameDecoder;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
 
+/**
+ * JSON single-reading ingest on POST /sensors/data lives in {@link TelemetryIngestController}
+ * or {@link ReactiveTelemetryIngestController}, depending on sprouty.sensor.ingest.mode.
+ */
 @RestController
 @RequestMapping("/sensors")
 @Tag(name = "Sensor Integration", description = "IoT Hardware communication layer.")
 public class SensorController {
 
     private final SensorService sensorService;
+    private final SensorHistoryStore historyStore;
 
-    public SensorController(SensorService sensorService) {
+    public SensorController(SensorService sensorService, SensorHistoryStore historyStore) {
         this.sensorService = sensorService;
+        this.historyStore = historyStore;
     }
 
-    @Operation(summary = "Ingest Environmental Telemetry")
+    @Operation(summary = "Ingest Binary Telemetry", description = "Compact alternative to the JSON body for constrained sensors. " +
+            "The body is one or more 20 byte little-endian frames: 6 byte MAC, int64 epoch millis (0 = now), " +
+            "int16 temperature x100, uint16 air humidity x100, uint16 soil moisture x100.")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Telemetry updated"),
+            @ApiResponse(responseCode = "202", description = "Telemetry accepted for processing"),
+            @ApiResponse(responseCode = "400", description = "Malformed frame or invalid reading", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "404", description = "Sensor ID not recognized", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
-            @ApiResponse(responseCode = "500", description = "Server error", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+            @ApiResponse(responseCode = "413", description = "More frames than one batch", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Ingest queue saturated, retry later", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
     })
-    @PostMapping(value = "/data", consumes = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<String> receiveSensorData(@Valid @RequestBody SensorDataRequest request) {
-        sensorService.processSensorUpdate(
-                request.getSensorId(),
-                request.getTemperature(),
-                request.getHumidity(),
-                request.getMoisture()
-        );
-        return ResponseEntity.ok("Data ingested.");
+    @PostMapping(value = "/data", consumes = TelemetryFrameDecoder.MEDIA_TYPE)
+    public ResponseEntity<String> receiveSensorFrames(HttpServletRequest request) throws IOException {
+        // Frames are decoded in place from the body buffer, each field read on access
+        SensorReadings frames = TelemetryFrameDecoder.frames(readFrames(request));
+        if (frames.size() == 1) {
+            // Live reading: straight to the single-reading path
+            long timestamp = frames.timestamp(0);
+            long now = System.currentTimeMillis();
+            sensorService.processSensorUpdate(frames.sensorId(0), frames.temperature(0), frames.humidityAir(0), frames.humiditySoil(0),
+                    timestamp > 0 ? Math.min(timestamp, now) : now);
+            return ResponseEntity.accepted().body("Data accepted.");
+        }
+
+        // Several frames are a replayed buffer and take the batch path
+        sensorService.processSensorBatch(frames);
+        return ResponseEntity.accepted().body("Data accepted.");
+    }
+
+    /**
+     * Reads the body once into a buffer of exactly its declared length, refusing bodies larger than a batch
+     * before reading them.
+     */
+    private static ByteBuffer readFrames(HttpServletRequest request) throws IOException {
+        int maxLength = SensorService.MAX_BATCH_READINGS * TelemetryFrameDecoder.FRAME_SIZE;
+        long length = request.getContentLengthLong();
+        if (length > maxLength) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Batch exceeds " + SensorService.MAX_BATCH_READINGS + " readings.");
+        }
+
+        InputStream in = request.getInputStream();
+        if (length < 0) {
+            // Chunked upload without a declared length
+            byte[] body = in.readNBytes(maxLength + 1);
+            if (body.length > maxLength) {
+                throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Batch exceeds " + SensorService.MAX_BATCH_READINGS + " readings.");
+            }
+            return ByteBuffer.wrap(body);
+        }
+        byte[] body = new byte[(int) length];
+        int read = in.readNBytes(body, 0, body.length);
+        return ByteBuffer.wrap(body, 0, read);
+    }
+
+    @Operation(summary = "Ingest Buffered Telemetry", description = "Accepts readings a sensor buffered while offline, possibly for several sensors. " +
+            "Only the newest reading per sensor updates the plant; older readings are stored as history.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Readings accepted for processing", content = @Content(schema = @Schema(implementation = BatchIngestResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Empty batch or invalid reading", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "413", description = "Too many readings in one batch", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Ingest queue saturated, retry later", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @PostMapping(value = "/data/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BatchIngestResponse> receiveSensorBatch(@RequestBody List<SensorDataRequest> readings) {
+        return ResponseEntity.accepted().body(sensorService.processSensorBatch(readings));
     }
 
     @Operation(summary = "Upload Plant Snapshot")
@@ -60,7 +126,7 @@ public class SensorController {
         }
 
         try {
-            String imageUrl = sensorService.uploadSensorImage(request.getImage().getBytes(), request.getSensorId());
+            String imageUrl = sensorService.uploadSensorImage(request.getImage().getInputStream(), request.getSensorId());
             if (imageUrl == null) {
                 throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Cloud storage failed to provide URL.");
             }
@@ -69,4 +135,24 @@ public class SensorController {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to read image buffer.");
         }
     }
-}
\ No newline at end of file
+
+    @Operation(summary = "Query Sensor History", description = "Returns readings for a plant between 'from' and 'to' (epoch millis). " +
+            "The coarsest stored resolution (raw, hourly or daily) that is at least as fine as 'resolution' is served.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "History returned", content = @Content(schema = @Schema(implementation = HistoryResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid time range", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "403", description = "Forbidden - Not your plant", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "404", description = "Plant not found", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    @GetMapping("/history/{plantId}")
+    public ResponseEntity<HistoryResponse> getHistory(
+            @Parameter(hidden = true) @RequestHeader(name = "X-User-Id") String uid,
+            @PathVariable(name = "plantId") String plantId,
+            @RequestParam(name = "from", required = false) Long from,
+            @RequestParam(name = "to", required = false) Long to,
+            @Parameter(description = "Finest acceptable spacing between points, e.g. 15m, 1h, 1d")
+            @RequestParam(name = "resolution", required = false) Duration resolution) {
+        return ResponseEntity.ok(historyStore.getHistory(uid, plantId, from, to, resolution));
+    }
+}
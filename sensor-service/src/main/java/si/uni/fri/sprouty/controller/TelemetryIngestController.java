@@ -0,0 +1,50 @@
+package si.uni.fri.sprouty.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import si.uni.fri.sprouty.dto.ErrorResponse;
+import si.uni.fri.sprouty.dto.SensorDataRequest;
+import si.uni.fri.sprouty.service.SensorService;
+
+/**
+ * Default JSON ingest: the request thread runs the whole update (sprouty.sensor.ingest.mode=blocking).
+ */
+@RestController
+@RequestMapping("/sensors")
+@Tag(name = "Sensor Integration", description = "IoT Hardware communication layer.")
+@ConditionalOnProperty(value = "sprouty.sensor.ingest.mode", havingValue = "blocking", matchIfMissing = true)
+public class TelemetryIngestController {
+
+    private final SensorService sensorService;
+
+    public TelemetryIngestController(SensorService sensorService) {
+        this.sensorService = sensorService;
+    }
+
+    @Operation(summary = "Ingest Environmental Telemetry")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Telemetry accepted for processing"),
+            @ApiResponse(responseCode = "404", description = "Sensor ID not recognized", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Server error", content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Ingest queue saturated, retry later", content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @PostMapping(value = "/data", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> receiveSensorData(@Valid @RequestBody SensorDataRequest request) {
+        sensorService.processSensorUpdate(
+                request.getSensorId(),
+                request.getTemperature(),
+                request.getHumidity(),
+                request.getMoisture()
+        );
+        return ResponseEntity.accepted().body("Data accepted.");
+    }
+}
@@ -0,0 +1,14 @@
+package si.uni.fri.sprouty.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Outcome of a batched telemetry upload")
+public record BatchIngestResponse(
+        @Schema(description = "Number of readings queued for storage", example = "42")
+        int accepted,
+
+        @Schema(description = "Sensor IDs in the batch that are not linked to any plant; their readings were skipped")
+        List<String> unlinkedSensors
+) {}
@@ -0,0 +1,22 @@
+package si.uni.fri.sprouty.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Sensor values for one time slot. Raw samples have count 1 and identical min/avg/max. " +
+        "A measurement missing from the stored data is null.")
+public record HistoryPoint(
+        @Schema(description = "Epoch millis of the sample or start of the slot", example = "1704660000000")
+        long timestamp,
+
+        @Schema(description = "Number of samples aggregated into this point", example = "60")
+        long count,
+
+        @Schema(description = "Ambient temperature in Celsius")
+        MetricSummary temperature,
+
+        @Schema(description = "Relative air humidity percentage")
+        MetricSummary humidityAir,
+
+        @Schema(description = "Soil moisture percentage")
+        MetricSummary humiditySoil
+) {}
@@ -0,0 +1,17 @@
+package si.uni.fri.sprouty.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Sensor history of a plant over a time range")
+public record HistoryResponse(
+        @Schema(description = "User plant document ID")
+        String plantId,
+
+        @Schema(description = "Resolution the points were served at", allowableValues = {"RAW", "HOUR", "DAY"})
+        String resolution,
+
+        @Schema(description = "Points in ascending time order")
+        List<HistoryPoint> points
+) {}
@@ -0,0 +1,14 @@
+package si.uni.fri.sprouty.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Minimum, average and maximum of one measurement within a time slot")
+public record MetricSummary(
+        @Schema(example = "18.5") double min,
+        @Schema(example = "21.2") double avg,
+        @Schema(example = "24.0") double max
+) {
+    public static MetricSummary of(double value) {
+        return new MetricSummary(value, value, value);
+    }
+}
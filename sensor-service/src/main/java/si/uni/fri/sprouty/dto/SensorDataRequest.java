@@ -23,4 +23,7 @@ public class SensorDataRequest {
 
     @Schema(description = "Relative air humidity percentage", example = "60.0")
     private double humidity;
+
+    @Schema(description = "Time the reading was taken (epoch millis). Defaults to the time it is received.", example = "1718000000000")
+    private Long timestamp;
 }
\ No newline at end of file
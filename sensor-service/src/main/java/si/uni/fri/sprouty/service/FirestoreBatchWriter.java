@@ -0,0 +1,164 @@
+package si.uni.fri.sprouty.service;
+
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.firestore.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import si.uni.fri.sprouty.firestore.FirestoreErrors;
+import si.uni.fri.sprouty.garden.GardenViews;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Accumulates writes into WriteBatches and commits each one as it reaches Firestore's 500 operation limit.
+ * A batch is all or nothing, so its writes are kept until it commits: when a plant in it was deleted, that
+ * plant's writes are dropped and the rest are sent again, and transient failures are retried with backoff.
+ * A batch that still fails transiently is deferred for the owner to hand back on its next flush.
+ * Not thread-safe; owned by a single flush.
+ */
+class FirestoreBatchWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(FirestoreBatchWriter.class);
+    static final int MAX_BATCH_OPERATIONS = 500;
+
+    /** A write on behalf of one plant; plantRef is set when the write fails if the plant no longer exists. */
+    private record Write(String plantId, DocumentReference plantRef, int operations, Consumer<WriteBatch> apply) {}
+
+    /** The writes of one batch, kept so the batch can be rebuilt and sent again. */
+    static final class PendingBatch {
+        private final List<Write> writes = new ArrayList<>();
+        private int operations;
+
+        int operations() {
+            return operations;
+        }
+
+        private void add(Write write) {
+            writes.add(write);
+            operations += write.operations();
+        }
+    }
+
+    private final Firestore db;
+    private final int maxAttempts;
+    private final long retryBackoffMs;
+    private final List<PendingBatch> deferred = new ArrayList<>();
+    private PendingBatch current;
+    private int committedBatches;
+
+    FirestoreBatchWriter(Firestore db, int maxAttempts, long retryBackoffMs) {
+        this.db = db;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMs = retryBackoffMs;
+    }
+
+    /** Updates a plant and mirrors the update into its owner's garden view, always within one batch. */
+    void updatePlant(DocumentReference plantRef, String ownerId, String plantId, Map<String, Object> updates) {
+        if (current != null && current.operations + 2 > MAX_BATCH_OPERATIONS) commit();
+        add(new Write(plantId, plantRef, ownerId != null ? 2 : 1, batch -> {
+            batch.update(plantRef, updates);
+            GardenViews.updatePlant(batch, db, ownerId, plantId, updates);
+        }));
+    }
+
+    void merge(String plantId, DocumentReference ref, Map<String, Object> data) {
+        add(new Write(plantId, null, 1, batch -> batch.set(ref, data, SetOptions.merge())));
+    }
+
+    /** Sends a batch deferred by an earlier flush, ahead of this flush's writes. */
+    void resend(PendingBatch batch) {
+        commit();
+        send(batch);
+    }
+
+    int committedBatches() {
+        return committedBatches;
+    }
+
+    /** Batches that were still failing transiently after every attempt. */
+    List<PendingBatch> deferred() {
+        return deferred;
+    }
+
+    void commit() {
+        if (current == null) return;
+        PendingBatch batch = current;
+        current = null;
+        send(batch);
+    }
+
+    private void add(Write write) {
+        if (current == null) current = new PendingBatch();
+        current.add(write);
+        if (current.operations >= MAX_BATCH_OPERATIONS) commit();
+    }
+
+    private void send(PendingBatch pending) {
+        int attempt = 0;
+        while (!pending.writes.isEmpty()) {
+            WriteBatch batch = db.batch();
+            pending.writes.forEach(write -> write.apply().accept(batch));
+            try {
+                batch.commit().get();
+                committedBatches++;
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                deferred.add(pending);
+                return;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                // A deleted plant fails the whole batch; the other plants' readings still have to land
+                if (FirestoreErrors.is(cause, StatusCode.Code.NOT_FOUND) && dropDeletedPlants(pending)) continue;
+                if (!FirestoreErrors.isRetryable(cause)) {
+                    logger.error("Batch commit failed, {} writes lost: {}", pending.operations, cause.getMessage());
+                    return;
+                }
+                if (++attempt >= maxAttempts) {
+                    logger.warn("Batch commit failed {} times, deferring {} writes: {}", attempt, pending.operations, cause.getMessage());
+                    deferred.add(pending);
+                    return;
+                }
+                try {
+                    Thread.sleep(retryBackoffMs << (attempt - 1));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    deferred.add(pending);
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Removes every write for plants that no longer exist. Returns false if all plants in the batch still exist. */
+    private boolean dropDeletedPlants(PendingBatch pending) {
+        Map<DocumentReference, String> plants = new LinkedHashMap<>();
+        for (Write write : pending.writes) {
+            if (write.plantRef() != null) plants.put(write.plantRef(), write.plantId());
+        }
+        if (plants.isEmpty()) return false;
+
+        Set<String> deleted = new HashSet<>();
+        try {
+            for (DocumentSnapshot snapshot : db.getAll(plants.keySet().toArray(new DocumentReference[0])).get()) {
+                if (!snapshot.exists()) deleted.add(plants.get(snapshot.getReference()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            logger.warn("Could not check which plants of a failed batch were deleted: {}", e.getCause().getMessage());
+            return false;
+        }
+        if (deleted.isEmpty()) return false;
+
+        logger.info("Dropping readings of {} deleted plants from a failed batch", deleted.size());
+        List<Write> kept = new ArrayList<>(pending.writes);
+        pending.writes.clear();
+        pending.operations = 0;
+        kept.stream().filter(write -> !deleted.contains(write.plantId())).forEach(pending::add);
+        return true;
+    }
+}
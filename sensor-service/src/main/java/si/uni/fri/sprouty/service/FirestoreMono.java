@@ -0,0 +1,38 @@
+package si.uni.fri.sprouty.service;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
+
+/**
+ * Adapts Firestore ApiFutures to Mono without parking a thread on get().
+ */
+final class FirestoreMono {
+
+    private FirestoreMono() {}
+
+    /**
+     * The call is made on subscription; the Mono completes on the Firestore callback thread.
+     * A null result completes the Mono empty.
+     */
+    static <T> Mono<T> from(Supplier<ApiFuture<T>> call) {
+        return Mono.create(sink -> {
+            ApiFuture<T> future = call.get();
+            sink.onCancel(() -> future.cancel(false));
+            ApiFutures.addCallback(future, new ApiFutureCallback<>() {
+                @Override
+                public void onSuccess(T result) {
+                    sink.success(result);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    sink.error(t);
+                }
+            }, Runnable::run);
+        });
+    }
+}
@@ -0,0 +1,117 @@
+package si.uni.fri.sprouty.service;
+
+import com.google.cloud.firestore.Firestore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import si.uni.fri.sprouty.care.SpeciesThresholdCache;
+import si.uni.fri.sprouty.service.SensorPlantIndex.PlantBinding;
+import si.uni.fri.sprouty.service.TelemetryPipeline.TelemetryReading;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking counterpart of {@link SensorService#processSensorUpdate} for sprouty.sensor.ingest.mode=reactive.
+ * Plant lookup and species thresholds are chained on Firestore callbacks, the reading is offered to the
+ * write-behind pipeline without waiting, and the health alert is sent off the request path.
+ * At most max-in-flight readings are processed at once; beyond that requests are shed with 503.
+ */
+@Service
+@ConditionalOnProperty(value = "sprouty.sensor.ingest.mode", havingValue = "reactive")
+public class ReactiveSensorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveSensorService.class);
+
+    private final Firestore db;
+    private final SensorPlantIndex sensorIndex;
+    private final TelemetryPipeline telemetryPipeline;
+    private final SpeciesThresholdCache thresholdCache;
+    private final SilentSyncDispatcher silentSync;
+    private final SensorService sensorService;
+    private final int maxInFlight;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter shed;
+
+    public ReactiveSensorService(Firestore db, SensorPlantIndex sensorIndex, TelemetryPipeline telemetryPipeline,
+                                 SpeciesThresholdCache thresholdCache, SilentSyncDispatcher silentSync,
+                                 SensorService sensorService, MeterRegistry meterRegistry,
+                                 @Value("${sprouty.sensor.ingest.max-in-flight:2000}") int maxInFlight) {
+        this.db = db;
+        this.sensorIndex = sensorIndex;
+        this.telemetryPipeline = telemetryPipeline;
+        this.thresholdCache = thresholdCache;
+        this.silentSync = silentSync;
+        this.sensorService = sensorService;
+        this.maxInFlight = maxInFlight;
+
+        this.shed = Counter.builder("sprouty.ingest.shed")
+                .description("Readings rejected because too many were already in flight")
+                .register(meterRegistry);
+        meterRegistry.gauge("sprouty.ingest.in_flight", inFlight);
+    }
+
+    public Mono<Void> processSensorUpdate(String macAddress, double temp, double humAir, double humSoil, long timestamp) {
+        return Mono.defer(() -> {
+            if (inFlight.incrementAndGet() > maxInFlight) {
+                inFlight.decrementAndGet();
+                shed.increment();
+                return Mono.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Telemetry ingest is saturated, retry later."));
+            }
+
+            return resolvePlant(macAddress)
+                    .switchIfEmpty(Mono.error(() -> {
+                        logger.warn("Received data for unlinked sensor: {}", macAddress);
+                        return new ResponseStatusException(HttpStatus.NOT_FOUND, "Sensor not linked to any plant.");
+                    }))
+                    .flatMap(plant -> Mono.fromFuture(() -> thresholdCache.getAsync(plant.speciesId()))
+                            .doOnNext(thresholds -> {
+                                String newHealthStatus = thresholds.evaluate(temp, humSoil, humAir);
+                                boolean accepted = telemetryPipeline.tryOffer(new TelemetryReading(
+                                        plant.reference(), plant.plantId(), plant.ownerId(), temp, humAir, humSoil, newHealthStatus, timestamp));
+                                if (!accepted) {
+                                    logger.warn("Telemetry queue full, rejecting reading from MAC: {}", macAddress);
+                                    throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Telemetry ingest is saturated, retry later.");
+                                }
+                                sensorIndex.recordReading(macAddress, newHealthStatus, timestamp);
+                                silentSync.request(plant.ownerId());
+
+                                if (SensorService.shouldAlert(thresholds, plant, newHealthStatus)) {
+                                    // The notification client blocks, so it runs on the elastic scheduler and is not awaited
+                                    Mono.fromRunnable(() -> sensorService.sendPlantNotification(
+                                                    plant.ownerId(), plant.displayName(), "HEALTH_ALERT", newHealthStatus))
+                                            .subscribeOn(Schedulers.boundedElastic())
+                                            .subscribe();
+                                }
+                            }))
+                    .then()
+                    .onErrorMap(e -> !(e instanceof ResponseStatusException), e -> {
+                        logger.error("Critical error processing sensor update for MAC: {}", macAddress, e);
+                        return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error processing sensor telemetry.");
+                    })
+                    .doFinally(signal -> inFlight.decrementAndGet());
+        });
+    }
+
+    private Mono<PlantBinding> resolvePlant(String macAddress) {
+        PlantBinding cached = sensorIndex.lookup(macAddress);
+        if (cached != null) return Mono.just(cached);
+
+        // Index miss (cold start or a link the listener has not delivered yet)
+        return FirestoreMono.from(() -> db.collection("user_plants").whereEqualTo("connectedSensorId", macAddress).get())
+                .flatMap(qs -> {
+                    if (qs.isEmpty()) return Mono.empty();
+                    PlantBinding binding = PlantBinding.of(qs.getDocuments().getFirst());
+                    sensorIndex.put(macAddress, binding);
+                    return Mono.justOrEmpty(binding);
+                });
+    }
+}
@@ -0,0 +1,296 @@
+package si.uni.fri.sprouty.service;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import si.uni.fri.sprouty.coordination.ClusterMembership;
+import si.uni.fri.sprouty.garden.GardenViews;
+import si.uni.fri.sprouty.service.SensorPlantIndex.PlantBinding;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Marks a sensor Offline shortly after it misses its expected readings, instead of waiting for the
+ * connectivity scan.
+ * Sensors are split into {@link #PARTITIONS} partitions by MAC hash, assigned to replicas through
+ * {@link ClusterMembership}. For the sensors it owns, a replica keeps the last reading time and an
+ * estimate of the reporting interval, fed by {@link SensorPlantIndex}: readings ingested locally arrive
+ * directly, readings ingested by other replicas arrive through the index's listener once their lastSeen
+ * is written. A deadline queue holds one entry per online sensor. Firestore is only written when a
+ * sensor goes Offline; coming back online is written by the ingest path with the new health status.
+ */
+@Component
+public class SensorHeartbeatMonitor implements SensorPlantIndex.BindingListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(SensorHeartbeatMonitor.class);
+    static final int PARTITIONS = 16;
+    private static final String OFFLINE = "Offline";
+
+    private final Firestore db;
+    private final SensorPlantIndex sensorIndex;
+    private final SensorService sensorService;
+    private final ClusterMembership membership;
+    private final long expectedIntervalMs;
+    private final int graceFactor;
+    private final long minTimeoutMs;
+    private final long maxTimeoutMs;
+    private final long retryMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Heartbeat> heartbeats = new HashMap<>();
+    private final PriorityQueue<Deadline> deadlines = new PriorityQueue<>(Comparator.comparingLong(Deadline::at));
+    private final Set<Integer> ownedPartitions = ConcurrentHashMap.newKeySet();
+    private final Counter wentOffline;
+
+    private static final class Heartbeat {
+        long lastSeen;
+        // Moving average of the gaps between readings, 0 until a gap has been seen
+        long intervalMs;
+        boolean offline;
+        // Time of this sensor's live queue entry, 0 if it has none; older entries are skipped when polled
+        long queuedAt;
+    }
+
+    private record Deadline(String macAddress, long at) {}
+
+    public SensorHeartbeatMonitor(Firestore db, SensorPlantIndex sensorIndex, SensorService sensorService,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${sprouty.sensor.heartbeat.expected-interval-ms:900000}") long expectedIntervalMs,
+                                  @Value("${sprouty.sensor.heartbeat.grace-factor:3}") int graceFactor,
+                                  @Value("${sprouty.sensor.heartbeat.min-timeout-ms:600000}") long minTimeoutMs,
+                                  @Value("${sprouty.sensor.heartbeat.max-timeout-ms:86400000}") long maxTimeoutMs,
+                                  @Value("${sprouty.sensor.heartbeat.check-ms:30000}") long retryMs,
+                                  @Value("${sprouty.sensor.heartbeat.member-ttl-ms:180000}") long memberTtlMs) {
+        this.db = db;
+        this.sensorIndex = sensorIndex;
+        this.sensorService = sensorService;
+        this.expectedIntervalMs = expectedIntervalMs;
+        this.graceFactor = graceFactor;
+        this.minTimeoutMs = minTimeoutMs;
+        this.maxTimeoutMs = maxTimeoutMs;
+        this.retryMs = retryMs;
+        this.membership = new ClusterMembership(db, "sensor_heartbeats", Duration.ofMillis(memberTtlMs));
+
+        this.wentOffline = Counter.builder("sprouty.sensor.heartbeat.offline")
+                .description("Sensors marked Offline after missing their readings")
+                .register(meterRegistry);
+        meterRegistry.gauge("sprouty.sensor.heartbeat.tracked", this, SensorHeartbeatMonitor::size);
+        meterRegistry.gauge("sprouty.sensor.heartbeat.partitions", ownedPartitions, Set::size);
+    }
+
+    @PostConstruct
+    public void start() {
+        sensorIndex.addListener(this);
+    }
+
+    @PreDestroy
+    public void stop() {
+        try {
+            membership.leave();
+        } catch (Exception e) {
+            logger.warn("Could not leave sensor heartbeat membership: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Heartbeats this replica and adjusts the owned partitions to the current membership.
+     */
+    @Scheduled(fixedRateString = "${sprouty.sensor.heartbeat.rebalance-ms:60000}")
+    public void rebalance() {
+        try {
+            assign(ClusterMembership.partitionsOwnedBy(membership.memberId(), membership.heartbeat(), PARTITIONS));
+        } catch (Exception e) {
+            logger.warn("Sensor heartbeat rebalance failed, keeping {} partitions: {}", ownedPartitions.size(), e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedRateString = "${sprouty.sensor.heartbeat.check-ms:30000}")
+    public void check() {
+        check(System.currentTimeMillis());
+    }
+
+    @Override
+    public void bindingChanged(String macAddress, PlantBinding binding) {
+        if (!ownedPartitions.contains(partitionOf(macAddress))) return;
+        lock.lock();
+        try {
+            if (binding == null) {
+                heartbeats.remove(macAddress);
+            } else {
+                observe(macAddress, binding);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return heartbeats.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static int partitionOf(String macAddress) {
+        return Math.floorMod(macAddress.hashCode(), PARTITIONS);
+    }
+
+    void assign(Set<Integer> partitions) {
+        for (Integer partition : List.copyOf(ownedPartitions)) {
+            if (!partitions.contains(partition)) release(partition);
+        }
+        for (Integer partition : partitions) {
+            if (!ownedPartitions.contains(partition)) acquire(partition);
+        }
+    }
+
+    /**
+     * Polls every deadline that has passed. Sensors that read since their entry was queued are requeued,
+     * the rest are marked Offline.
+     */
+    void check(long now) {
+        Map<String, Long> expired = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            while (!deadlines.isEmpty() && deadlines.peek().at() <= now) {
+                Deadline entry = deadlines.poll();
+                Heartbeat heartbeat = heartbeats.get(entry.macAddress());
+                if (heartbeat == null || heartbeat.queuedAt != entry.at()) continue;
+                heartbeat.queuedAt = 0;
+                if (heartbeat.offline) continue;
+
+                if (deadlineOf(heartbeat) > now) {
+                    enqueue(entry.macAddress(), heartbeat, deadlineOf(heartbeat));
+                } else {
+                    heartbeat.offline = true;
+                    expired.put(entry.macAddress(), heartbeat.lastSeen);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        expired.forEach((macAddress, lastSeen) -> {
+            try {
+                markOffline(macAddress, lastSeen);
+            } catch (Exception e) {
+                logger.warn("Could not mark sensor {} Offline, retrying: {}", macAddress, e.getMessage());
+                retry(macAddress, now + retryMs);
+            }
+        });
+    }
+
+    private void markOffline(String macAddress, long lastSeen) throws Exception {
+        PlantBinding binding = sensorIndex.lookup(macAddress);
+        if (binding == null) return;
+
+        // Guards against readings that another replica ingested but this one has not heard about yet
+        boolean transitioned = Boolean.TRUE.equals(db.runTransaction(transaction -> {
+            DocumentSnapshot doc = transaction.get(binding.reference()).get();
+            if (!doc.exists() || !macAddress.equals(doc.getString("connectedSensorId"))) return false;
+            Long seen = doc.getLong("lastSeen");
+            if (seen != null && seen > lastSeen) return false;
+            if (OFFLINE.equals(doc.getString("healthStatus"))) return false;
+
+            transaction.update(binding.reference(), "healthStatus", OFFLINE);
+            GardenViews.updatePlant(transaction, db, binding.ownerId(), binding.plantId(), Map.of("healthStatus", OFFLINE));
+            return true;
+        }).get());
+
+        if (transitioned) {
+            wentOffline.increment();
+            logger.info("Sensor {} marked Offline, silent since {}", macAddress, lastSeen);
+            sensorService.sendPlantNotification(binding.ownerId(), binding.displayName(), "CONNECTION_LOST", null);
+        }
+    }
+
+    private void acquire(int partition) {
+        // Owned before seeding, so bindings that change meanwhile are not dropped by bindingChanged
+        ownedPartitions.add(partition);
+        lock.lock();
+        try {
+            sensorIndex.bindings().forEach((macAddress, binding) -> {
+                if (partitionOf(macAddress) == partition) observe(macAddress, binding);
+            });
+        } finally {
+            lock.unlock();
+        }
+        logger.info("Sensor heartbeat monitor acquired partition {}", partition);
+    }
+
+    private void release(int partition) {
+        ownedPartitions.remove(partition);
+        lock.lock();
+        try {
+            // Queue entries of dropped sensors are skipped when they come due
+            heartbeats.keySet().removeIf(macAddress -> partitionOf(macAddress) == partition);
+        } finally {
+            lock.unlock();
+        }
+        logger.info("Sensor heartbeat monitor released partition {}", partition);
+    }
+
+    /** Caller holds the lock. */
+    private void observe(String macAddress, PlantBinding binding) {
+        Long lastSeen = binding.lastSeen();
+        if (lastSeen == null) return;
+
+        Heartbeat heartbeat = heartbeats.get(macAddress);
+        if (heartbeat == null) {
+            heartbeat = new Heartbeat();
+            heartbeat.lastSeen = lastSeen;
+            heartbeat.offline = OFFLINE.equals(binding.healthStatus());
+            heartbeats.put(macAddress, heartbeat);
+        } else if (lastSeen > heartbeat.lastSeen) {
+            long gap = lastSeen - heartbeat.lastSeen;
+            // A sensor returning from an outage says nothing about its normal interval
+            if (!heartbeat.offline && gap <= maxTimeoutMs) {
+                heartbeat.intervalMs = heartbeat.intervalMs == 0 ? gap : (heartbeat.intervalMs * 7 + gap) / 8;
+            }
+            heartbeat.lastSeen = lastSeen;
+            heartbeat.offline = false;
+        } else {
+            return;
+        }
+
+        long deadline = deadlineOf(heartbeat);
+        if (!heartbeat.offline && (heartbeat.queuedAt == 0 || deadline < heartbeat.queuedAt)) {
+            enqueue(macAddress, heartbeat, deadline);
+        }
+    }
+
+    private void retry(String macAddress, long at) {
+        lock.lock();
+        try {
+            Heartbeat heartbeat = heartbeats.get(macAddress);
+            if (heartbeat == null || !heartbeat.offline) return;
+            heartbeat.offline = false;
+            enqueue(macAddress, heartbeat, at);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(String macAddress, Heartbeat heartbeat, long at) {
+        heartbeat.queuedAt = at;
+        deadlines.add(new Deadline(macAddress, at));
+    }
+
+    private long deadlineOf(Heartbeat heartbeat) {
+        long interval = heartbeat.intervalMs > 0 ? heartbeat.intervalMs : expectedIntervalMs;
+        return heartbeat.lastSeen + Math.min(maxTimeoutMs, Math.max(minTimeoutMs, interval * graceFactor));
+    }
+}
@@ -0,0 +1,322 @@
+package si.uni.fri.sprouty.service;
+
+import com.google.cloud.firestore.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import si.uni.fri.sprouty.dto.HistoryPoint;
+import si.uni.fri.sprouty.dto.HistoryResponse;
+import si.uni.fri.sprouty.dto.MetricSummary;
+import si.uni.fri.sprouty.service.TelemetryPipeline.TelemetryReading;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sensor history stored as one document per plant per hour, holding that hour's samples
+ * plus running count/sum/min/max, and one rollup document per plant per day.
+ * Range reads cost one document per bucket instead of one per sample.
+ */
+@Component
+public class SensorHistoryStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SensorHistoryStore.class);
+
+    static final String HOURLY_COLLECTION = "sensor_history_hourly";
+    static final String DAILY_COLLECTION = "sensor_history_daily";
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+    private static final String[] METRICS = {"temperature", "humidityAir", "humiditySoil"};
+
+    private final Firestore db;
+
+    // Min/max of buckets this replica is still writing to, only touched by the telemetry flusher
+    private final Map<String, RollupStats> openBuckets = new HashMap<>();
+
+    // Gives every sample a unique id, so arrayUnion cannot merge two identical readings into one entry
+    private final String replicaId = UUID.randomUUID().toString();
+    private long sampleSequence;
+
+    public SensorHistoryStore(Firestore db) {
+        this.db = db;
+    }
+
+    public enum Resolution {
+        RAW(0), HOUR(HOUR_MS), DAY(DAY_MS);
+
+        private final long bucketMillis;
+
+        Resolution(long bucketMillis) {
+            this.bucketMillis = bucketMillis;
+        }
+    }
+
+    // --- WRITE PATH ---
+
+    void stage(List<TelemetryReading> readings, FirestoreBatchWriter writer) {
+        Map<String, List<TelemetryReading>> hourly = new LinkedHashMap<>();
+        Map<String, List<TelemetryReading>> daily = new LinkedHashMap<>();
+        for (TelemetryReading reading : readings) {
+            hourly.computeIfAbsent(bucketId(reading.plantId(), floor(reading.timestamp(), HOUR_MS)), k -> new ArrayList<>()).add(reading);
+            daily.computeIfAbsent(bucketId(reading.plantId(), floor(reading.timestamp(), DAY_MS)), k -> new ArrayList<>()).add(reading);
+        }
+
+        Map<String, DocumentSnapshot> stored = readNewBuckets(hourly.keySet(), daily.keySet());
+        hourly.forEach((bucketId, group) -> writeBucket(writer, HOURLY_COLLECTION, bucketId, HOUR_MS, group, true, stored));
+        daily.forEach((bucketId, group) -> writeBucket(writer, DAILY_COLLECTION, bucketId, DAY_MS, group, false, stored));
+
+        long now = System.currentTimeMillis();
+        openBuckets.values().removeIf(stats -> stats.end < now - HOUR_MS);
+    }
+
+    private void writeBucket(FirestoreBatchWriter writer, String collection, String bucketId, long width,
+                             List<TelemetryReading> group, boolean withSamples, Map<String, DocumentSnapshot> stored) {
+        TelemetryReading first = group.getFirst();
+        long start = floor(first.timestamp(), width);
+        DocumentReference ref = db.collection(collection).document(bucketId);
+
+        RollupStats running = openBuckets.computeIfAbsent(collection + "/" + bucketId, k -> seed(stored.get(k), start + width));
+        RollupStats delta = new RollupStats(start + width);
+        List<Map<String, Object>> samples = new ArrayList<>(group.size());
+        for (TelemetryReading reading : group) {
+            delta.add(reading);
+            running.add(reading);
+            if (withSamples) {
+                samples.add(Map.of(
+                        "id", replicaId + ":" + sampleSequence++,
+                        "t", reading.timestamp(),
+                        "temperature", reading.temperature(),
+                        "humidityAir", reading.humidityAir(),
+                        "humiditySoil", reading.humiditySoil()));
+            }
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("plantId", first.plantId());
+        data.put("start", start);
+        // Count and sums are commutative increments, so concurrent replicas cannot lose them
+        data.put("count", FieldValue.increment(delta.count));
+        Map<String, Object> sums = new HashMap<>();
+        for (int i = 0; i < METRICS.length; i++) {
+            sums.put(METRICS[i], FieldValue.increment(delta.sum[i]));
+        }
+        data.put("sum", sums);
+        data.put("min", running.toMap(running.min));
+        data.put("max", running.toMap(running.max));
+        if (withSamples) {
+            data.put("samples", FieldValue.arrayUnion(samples.toArray()));
+        }
+        writer.merge(first.plantId(), ref, data);
+    }
+
+    /**
+     * Reads every bucket of the flush that this replica is not writing to yet in a single getAll,
+     * keyed like openBuckets. Buckets that could not be read are seeded empty.
+     */
+    private Map<String, DocumentSnapshot> readNewBuckets(Set<String> hourly, Set<String> daily) {
+        List<String> keys = new ArrayList<>();
+        List<DocumentReference> refs = new ArrayList<>();
+        collectNewBuckets(HOURLY_COLLECTION, hourly, keys, refs);
+        collectNewBuckets(DAILY_COLLECTION, daily, keys, refs);
+        if (refs.isEmpty()) return Map.of();
+
+        Map<String, DocumentSnapshot> stored = new HashMap<>();
+        try {
+            List<DocumentSnapshot> snapshots = db.getAll(refs.toArray(new DocumentReference[0])).get();
+            // getAll returns the snapshots in the order the references were passed
+            for (int i = 0; i < snapshots.size(); i++) {
+                stored.put(keys.get(i), snapshots.get(i));
+            }
+        } catch (Exception e) {
+            logger.warn("Could not seed {} history buckets: {}", refs.size(), e.getMessage());
+        }
+        return stored;
+    }
+
+    private void collectNewBuckets(String collection, Set<String> bucketIds, List<String> keys, List<DocumentReference> refs) {
+        for (String bucketId : bucketIds) {
+            String key = collection + "/" + bucketId;
+            if (openBuckets.containsKey(key)) continue;
+            keys.add(key);
+            refs.add(db.collection(collection).document(bucketId));
+        }
+    }
+
+    private static RollupStats seed(DocumentSnapshot existing, long end) {
+        RollupStats stats = new RollupStats(end);
+        if (existing != null && existing.exists()) {
+            stats.seed(existing.get("min"), existing.get("max"));
+        }
+        return stats;
+    }
+
+    // --- READ PATH ---
+
+    public HistoryResponse getHistory(String uid, String plantId, Long from, Long to, Duration resolution) {
+        long end = (to != null) ? to : System.currentTimeMillis();
+        long start = (from != null) ? from : end - DAY_MS;
+        if (start > end) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "'from' must not be after 'to'.");
+        }
+
+        verifyOwnership(uid, plantId);
+        Resolution chosen = chooseResolution(start, end, resolution);
+
+        try {
+            List<HistoryPoint> points = switch (chosen) {
+                case RAW -> readSamples(plantId, start, end);
+                case HOUR -> readRollups(HOURLY_COLLECTION, plantId, floor(start, HOUR_MS), end);
+                case DAY -> readRollups(DAILY_COLLECTION, plantId, floor(start, DAY_MS), end);
+            };
+            return new HistoryResponse(plantId, chosen.name(), points);
+        } catch (Exception e) {
+            logger.error("Failed to read history for plant {}", plantId, e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Could not load sensor history.");
+        }
+    }
+
+    /**
+     * Picks the coarsest stored resolution that is still at least as fine as the requested one.
+     * Without an explicit resolution the range length decides.
+     */
+    static Resolution chooseResolution(long from, long to, Duration requested) {
+        long wanted = (requested != null) ? requested.toMillis() : defaultResolutionFor(to - from);
+        if (wanted >= Resolution.DAY.bucketMillis) return Resolution.DAY;
+        if (wanted >= Resolution.HOUR.bucketMillis) return Resolution.HOUR;
+        return Resolution.RAW;
+    }
+
+    private static long defaultResolutionFor(long span) {
+        if (span > TimeUnit.DAYS.toMillis(14)) return DAY_MS;
+        if (span > TimeUnit.HOURS.toMillis(12)) return HOUR_MS;
+        return 0;
+    }
+
+    private void verifyOwnership(String uid, String plantId) {
+        try {
+            DocumentSnapshot plant = db.collection("user_plants").document(plantId).get().get();
+            if (!plant.exists()) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Plant record not found.");
+            }
+            if (uid == null || !uid.equals(plant.getString("ownerId"))) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Access denied: You do not own this plant.");
+            }
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Database access error.");
+        }
+    }
+
+    private List<QueryDocumentSnapshot> readBuckets(String collection, String plantId, long from, long to) throws Exception {
+        return db.collection(collection)
+                .whereEqualTo("plantId", plantId)
+                .whereGreaterThanOrEqualTo("start", from)
+                .whereLessThanOrEqualTo("start", to)
+                .orderBy("start")
+                .get().get().getDocuments();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<HistoryPoint> readSamples(String plantId, long from, long to) throws Exception {
+        List<HistoryPoint> points = new ArrayList<>();
+        for (QueryDocumentSnapshot bucket : readBuckets(HOURLY_COLLECTION, plantId, floor(from, HOUR_MS), to)) {
+            Object samples = bucket.get("samples");
+            if (!(samples instanceof List<?> list)) continue;
+            for (Object entry : list) {
+                Map<String, Object> sample = (Map<String, Object>) entry;
+                if (!(sample.get("t") instanceof Number time)) continue;
+                long t = time.longValue();
+                if (t < from || t > to) continue;
+                points.add(new HistoryPoint(t, 1,
+                        sampleSummary(sample.get("temperature")),
+                        sampleSummary(sample.get("humidityAir")),
+                        sampleSummary(sample.get("humiditySoil"))));
+            }
+        }
+        points.sort(Comparator.comparingLong(HistoryPoint::timestamp));
+        return points;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<HistoryPoint> readRollups(String collection, String plantId, long from, long to) throws Exception {
+        List<HistoryPoint> points = new ArrayList<>();
+        for (QueryDocumentSnapshot bucket : readBuckets(collection, plantId, from, to)) {
+            Long count = bucket.getLong("count");
+            if (count == null || count == 0) continue;
+            Map<String, Object> sum = (Map<String, Object>) bucket.get("sum");
+            Map<String, Object> min = (Map<String, Object>) bucket.get("min");
+            Map<String, Object> max = (Map<String, Object>) bucket.get("max");
+            MetricSummary[] metrics = new MetricSummary[METRICS.length];
+            for (int i = 0; i < METRICS.length; i++) {
+                String metric = METRICS[i];
+                metrics[i] = rollupSummary(min != null ? min.get(metric) : null, sum != null ? sum.get(metric) : null,
+                        max != null ? max.get(metric) : null, count);
+            }
+            points.add(new HistoryPoint(bucket.getLong("start"), count, metrics[0], metrics[1], metrics[2]));
+        }
+        return points;
+    }
+
+    // --- HELPERS ---
+
+    static String bucketId(String plantId, long bucketStart) {
+        return plantId + "_" + bucketStart;
+    }
+
+    private static long floor(long timestamp, long width) {
+        return timestamp - Math.floorMod(timestamp, width);
+    }
+
+    // A value missing from a stored bucket is reported as null; NaN would not serialize to valid JSON
+
+    private static MetricSummary sampleSummary(Object value) {
+        return (value instanceof Number n) ? MetricSummary.of(n.doubleValue()) : null;
+    }
+
+    private static MetricSummary rollupSummary(Object min, Object sum, Object max, long count) {
+        if (!(min instanceof Number lo) || !(sum instanceof Number total) || !(max instanceof Number hi)) return null;
+        return new MetricSummary(lo.doubleValue(), total.doubleValue() / count, hi.doubleValue());
+    }
+
+    private static final class RollupStats {
+        private final long end;
+        private long count;
+        private final double[] sum = new double[METRICS.length];
+        private final double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        private final double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+
+        RollupStats(long end) {
+            this.end = end;
+        }
+
+        void add(TelemetryReading reading) {
+            count++;
+            accept(0, reading.temperature());
+            accept(1, reading.humidityAir());
+            accept(2, reading.humiditySoil());
+        }
+
+        void seed(Object storedMin, Object storedMax) {
+            for (int i = 0; i < METRICS.length; i++) {
+                if (storedMin instanceof Map<?, ?> m && m.get(METRICS[i]) instanceof Number n) min[i] = Math.min(min[i], n.doubleValue());
+                if (storedMax instanceof Map<?, ?> m && m.get(METRICS[i]) instanceof Number n) max[i] = Math.max(max[i], n.doubleValue());
+            }
+        }
+
+        Map<String, Object> toMap(double[] values) {
+            Map<String, Object> map = new HashMap<>();
+            for (int i = 0; i < METRICS.length; i++) map.put(METRICS[i], values[i]);
+            return map;
+        }
+
+        private void accept(int metric, double value) {
+            sum[metric] += value;
+            min[metric] = Math.min(min[metric], value);
+            max[metric] = Math.max(max[metric], value);
+        }
+    }
+}
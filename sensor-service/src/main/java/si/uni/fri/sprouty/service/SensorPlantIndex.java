@@ -0,0 +1,175 @@
+package si.uni.fri.sprouty.service;
+
+import com.google.cloud.firestore.*;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import si.uni.fri.sprouty.dto.UserPlant;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Local MAC -> plant routing table for the telemetry hot path.
+ * Warmed and kept current by a snapshot listener on linked user_plants,
+ * so ingesting a reading does not need a Firestore lookup.
+ */
+@Component
+public class SensorPlantIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(SensorPlantIndex.class);
+
+    private final Firestore db;
+    private final Map<String, PlantBinding> bySensor = new ConcurrentHashMap<>();
+    private final Map<String, String> sensorByPlant = new ConcurrentHashMap<>();
+
+    private final List<BindingListener> listeners = new CopyOnWriteArrayList<>();
+
+    private ListenerRegistration registration;
+
+    /**
+     * Told about every change to a sensor's binding, whether it came from Firestore or from a reading
+     * ingested on this replica. binding is null once the sensor is no longer linked.
+     */
+    @FunctionalInterface
+    public interface BindingListener {
+        void bindingChanged(String macAddress, PlantBinding binding);
+    }
+
+    public SensorPlantIndex(Firestore db) {
+        this.db = db;
+    }
+
+    public record PlantBinding(
+            DocumentReference reference,
+            String plantId,
+            String ownerId,
+            String speciesId,
+            String speciesName,
+            String customName,
+            boolean notificationsEnabled,
+            String healthStatus,
+            Long lastSeen
+    ) {
+        public static PlantBinding of(DocumentSnapshot doc) {
+            UserPlant plant = doc.toObject(UserPlant.class);
+            if (plant == null) return null;
+            return new PlantBinding(doc.getReference(), doc.getId(), plant.getOwnerId(), plant.getSpeciesId(),
+                    plant.getSpeciesName(), plant.getCustomName(), plant.isNotificationsEnabled(), plant.getHealthStatus(),
+                    doc.getLong("lastSeen"));
+        }
+
+        public PlantBinding withReading(String status, long timestamp) {
+            long seen = lastSeen != null ? Math.max(lastSeen, timestamp) : timestamp;
+            return new PlantBinding(reference, plantId, ownerId, speciesId, speciesName, customName, notificationsEnabled, status, seen);
+        }
+
+        public String displayName() {
+            return (customName != null && !customName.isBlank()) ? customName : speciesName;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        try {
+            // The first snapshot delivers every linked plant, which warms the index
+            registration = db.collection("user_plants")
+                    .whereNotEqualTo("connectedSensorId", null)
+                    .addSnapshotListener((snapshot, error) -> {
+                        if (error != null) {
+                            logger.error("Sensor index listener failed, falling back to queries: {}", error.getMessage());
+                            return;
+                        }
+                        if (snapshot != null) apply(snapshot);
+                    });
+        } catch (Exception e) {
+            logger.warn("Sensor index could not subscribe to user_plants: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (registration != null) registration.remove();
+    }
+
+    public PlantBinding lookup(String macAddress) {
+        return bySensor.get(macAddress);
+    }
+
+    public void put(String macAddress, PlantBinding binding) {
+        if (macAddress == null || binding == null) return;
+        // The plant changed sensor: its old sensor is unbound
+        String previousSensor = sensorByPlant.put(binding.plantId(), macAddress);
+        if (previousSensor != null && !previousSensor.equals(macAddress)) {
+            removeBinding(previousSensor, binding.plantId());
+        }
+        // The sensor moved from another plant: that plant no longer owns it, so its later removal must not unbind it
+        PlantBinding previous = bySensor.put(macAddress, binding);
+        if (previous != null && !previous.plantId().equals(binding.plantId())) {
+            sensorByPlant.remove(previous.plantId(), macAddress);
+        }
+        notifyListeners(macAddress, binding);
+    }
+
+    public void recordReading(String macAddress, String healthStatus, long timestamp) {
+        PlantBinding updated = bySensor.computeIfPresent(macAddress, (mac, binding) -> binding.withReading(healthStatus, timestamp));
+        if (updated != null) notifyListeners(macAddress, updated);
+    }
+
+    public Map<String, PlantBinding> bindings() {
+        return Collections.unmodifiableMap(bySensor);
+    }
+
+    public void addListener(BindingListener listener) {
+        listeners.add(listener);
+    }
+
+    public int size() {
+        return bySensor.size();
+    }
+
+    private void apply(QuerySnapshot snapshot) {
+        for (DocumentChange change : snapshot.getDocumentChanges()) {
+            QueryDocumentSnapshot doc = change.getDocument();
+            switch (change.getType()) {
+                case ADDED, MODIFIED -> {
+                    String mac = doc.getString("connectedSensorId");
+                    if (mac == null || mac.isBlank()) {
+                        removePlant(doc.getId());
+                    } else {
+                        put(mac, PlantBinding.of(doc));
+                    }
+                }
+                case REMOVED -> removePlant(doc.getId());
+            }
+        }
+    }
+
+    private void removePlant(String plantId) {
+        String mac = sensorByPlant.remove(plantId);
+        if (mac != null) removeBinding(mac, plantId);
+    }
+
+    /** Unbinds the sensor only while it is still bound to the given plant. */
+    private void removeBinding(String macAddress, String plantId) {
+        PlantBinding current = bySensor.get(macAddress);
+        if (current != null && current.plantId().equals(plantId) && bySensor.remove(macAddress, current)) {
+            notifyListeners(macAddress, null);
+        }
+    }
+
+    private void notifyListeners(String macAddress, PlantBinding binding) {
+        for (BindingListener listener : listeners) {
+            try {
+                listener.bindingChanged(macAddress, binding);
+            } catch (Exception e) {
+                logger.warn("Sensor index listener failed for {}: {}", macAddress, e.getMessage());
+            }
+        }
+    }
+}
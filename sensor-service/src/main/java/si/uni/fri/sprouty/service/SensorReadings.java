@@ -0,0 +1,60 @@
+package si.uni.fri.sprouty.service;
+
+import si.uni.fri.sprouty.dto.SensorDataRequest;
+
+import java.util.List;
+
+/**
+ * A batch of readings accessed by index, so readings decoded from binary frames can be ingested
+ * straight from the request buffer without building a request object per reading.
+ */
+public interface SensorReadings {
+
+    int size();
+
+    String sensorId(int index);
+
+    double temperature(int index);
+
+    double humidityAir(int index);
+
+    double humiditySoil(int index);
+
+    /** When the reading was taken in epoch millis, or 0 if the sensor did not say. */
+    long timestamp(int index);
+
+    static SensorReadings of(List<SensorDataRequest> requests) {
+        return new SensorReadings() {
+            @Override
+            public int size() {
+                return requests.size();
+            }
+
+            @Override
+            public String sensorId(int index) {
+                return requests.get(index).getSensorId();
+            }
+
+            @Override
+            public double temperature(int index) {
+                return requests.get(index).getTemperature();
+            }
+
+            @Override
+            public double humidityAir(int index) {
+                return requests.get(index).getHumidity();
+            }
+
+            @Override
+            public double humiditySoil(int index) {
+                return requests.get(index).getMoisture();
+            }
+
+            @Override
+            public long timestamp(int index) {
+                Long timestamp = requests.get(index).getTimestamp();
+                return timestamp != null ? timestamp : 0L;
+            }
+        };
+    }
+}
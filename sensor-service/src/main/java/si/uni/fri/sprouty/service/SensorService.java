@@ -1,24 +1,29 @@
 package si.uni.fri.sprouty.service;
 
-import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
-import com.google.firebase.cloud.StorageClient;
-import com.google.cloud.storage.Bucket;
-import com.google.cloud.storage.Blob;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.server.ResponseStatusException;
-import si.uni.fri.sprouty.dto.MasterPlant;
+import si.uni.fri.sprouty.care.SpeciesThresholdCache;
+import si.uni.fri.sprouty.care.SpeciesThresholds;
+import si.uni.fri.sprouty.coordination.JobCoordinator;
+import si.uni.fri.sprouty.dto.BatchIngestResponse;
 import si.uni.fri.sprouty.dto.NotificationRequest;
+import si.uni.fri.sprouty.dto.SensorDataRequest;
 import si.uni.fri.sprouty.dto.UserPlant;
-
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Random;
+import si.uni.fri.sprouty.garden.GardenViews;
+import si.uni.fri.sprouty.image.ImagePipeline;
+import si.uni.fri.sprouty.service.SensorPlantIndex.PlantBinding;
+import si.uni.fri.sprouty.service.TelemetryPipeline.TelemetryReading;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 
 @Service
@@ -27,53 +32,70 @@ public class SensorService {
     private static final Logger logger = LoggerFactory.getLogger(SensorService.class);
     private final RestTemplate restTemplate;
     private final Firestore db;
-    private final StorageClient storage;
+    private final StreamingImageUploader imageUploader;
+    private final SensorPlantIndex sensorIndex;
+    private final TelemetryPipeline telemetryPipeline;
+    private final SpeciesThresholdCache thresholdCache;
+    private final SilentSyncDispatcher silentSync;
+    private final ImagePipeline imagePipeline;
+    private final JobCoordinator jobCoordinator;
+    private final long monitorIntervalMs;
+
+    public static final int MAX_BATCH_READINGS = 500;
 
     private final String NOTIFICATION_SERVICE_URL = "http://notification-service/notifications/send";
 
-    public SensorService(RestTemplate restTemplate, Firestore db, StorageClient storage) {
+    public SensorService(RestTemplate restTemplate, Firestore db, StreamingImageUploader imageUploader,
+                         SensorPlantIndex sensorIndex, TelemetryPipeline telemetryPipeline,
+                         SpeciesThresholdCache thresholdCache, SilentSyncDispatcher silentSync,
+                         ImagePipeline imagePipeline, JobCoordinator jobCoordinator,
+                         @Value("${sprouty.sensor.monitor-interval-ms:86400000}") long monitorIntervalMs) {
         this.restTemplate = restTemplate;
         this.db = db;
-        this.storage = storage;
+        this.imageUploader = imageUploader;
+        this.sensorIndex = sensorIndex;
+        this.telemetryPipeline = telemetryPipeline;
+        this.thresholdCache = thresholdCache;
+        this.silentSync = silentSync;
+        this.imagePipeline = imagePipeline;
+        this.jobCoordinator = jobCoordinator;
+        this.monitorIntervalMs = monitorIntervalMs;
     }
 
     public void processSensorUpdate(String macAddress, double temp, double humAir, double humSoil) {
+        processSensorUpdate(macAddress, temp, humAir, humSoil, System.currentTimeMillis());
+    }
+
+    public void processSensorUpdate(String macAddress, double temp, double humAir, double humSoil, long timestamp) {
+        validateReading(macAddress, humSoil);
         try {
             // Find the plant linked to this sensor
-            QuerySnapshot qs = db.collection("user_plants").whereEqualTo("connectedSensorId", macAddress).get().get();
+            PlantBinding plant = resolvePlant(macAddress);
 
-            if (qs.isEmpty()) {
+            if (plant == null) {
                 logger.warn("Received data for unlinked sensor: {}", macAddress);
                 throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Sensor not linked to any plant.");
             }
 
-            DocumentSnapshot doc = qs.getDocuments().getFirst();
-            UserPlant userPlant = doc.toObject(UserPlant.class);
-
             // Get plant thresholds
-            DocumentSnapshot masterDoc = db.collection("master_plants").document(userPlant.getSpeciesId()).get().get();
-            MasterPlant master = masterDoc.toObject(MasterPlant.class);
-
-            String newHealthStatus = (master != null) ? calculateHealth(temp, humSoil, humAir, master) : "Unknown";
-
-            // update plant data
-            Map<String, Object> updates = new HashMap<>();
-            updates.put("currentHumiditySoil", humSoil);
-            updates.put("currentTemperature", temp);
-            updates.put("currentHumidityAir", humAir);
-            updates.put("healthStatus", newHealthStatus);
-            updates.put("lastSeen", System.currentTimeMillis());
-            doc.getReference().update(updates).get();
-
-            // Record historical data for charting
-            recordHistory(doc.getId(), temp, humAir, humSoil);
+            SpeciesThresholds thresholds = thresholdCache.get(plant.speciesId());
+            String newHealthStatus = thresholds.evaluate(temp, humSoil, humAir);
+
+            // Queue the plant update and history record for the next batched flush
+            boolean accepted = telemetryPipeline.submit(new TelemetryReading(
+                    plant.reference(), plant.plantId(), plant.ownerId(), temp, humAir, humSoil, newHealthStatus, timestamp));
+            if (!accepted) {
+                logger.warn("Telemetry queue full, rejecting reading from MAC: {}", macAddress);
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Telemetry ingest is saturated, retry later.");
+            }
+            sensorIndex.recordReading(macAddress, newHealthStatus, timestamp);
 
-            // Trigger a silent data sync in the mobile app
-            triggerSilentSync(userPlant.getOwnerId());
+            // Trigger a silent data sync in the mobile app, coalesced per user
+            silentSync.request(plant.ownerId());
 
             // Notify user if plant health has changed to a non-healthy status
-            if (master != null && userPlant.isNotificationsEnabled() && !"Healthy".equals(newHealthStatus) && !newHealthStatus.equals(userPlant.getHealthStatus())) {
-                sendPlantNotification(userPlant, "HEALTH_ALERT", newHealthStatus);
+            if (shouldAlert(thresholds, plant, newHealthStatus)) {
+                sendPlantNotification(plant.ownerId(), plant.displayName(), "HEALTH_ALERT", newHealthStatus);
             }
 
         } catch (ResponseStatusException e) {
@@ -84,79 +106,196 @@ public class SensorService {
         }
     }
 
-    @Scheduled(fixedRate = 6, timeUnit = TimeUnit.HOURS)
-    public void monitorSensorConnectivity() {
-        // Lock mechanism to ensure only one instance checks the sensors at a time
+    /**
+     * Ingests readings buffered by sensors while offline, possibly for several sensors.
+     * Each sensor is resolved once and only its newest reading is evaluated and written
+     * to the plant; older readings go straight to history.
+     */
+    public BatchIngestResponse processSensorBatch(List<SensorDataRequest> readings) {
+        if (readings == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Batch contains no readings.");
+        }
+        return processSensorBatch(SensorReadings.of(readings));
+    }
+
+    /** Ingests a batch of readings accessed by index, such as binary frames decoded in place. */
+    public BatchIngestResponse processSensorBatch(SensorReadings readings) {
+        int size = readings.size();
+        if (size == 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Batch contains no readings.");
+        }
+        if (size > MAX_BATCH_READINGS) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Batch exceeds " + MAX_BATCH_READINGS + " readings.");
+        }
 
-        DocumentReference lockRef = db.collection("locks").document("sensor_monitor_lock");
         long now = System.currentTimeMillis();
+        // Index of each sensor's newest reading, in order of first appearance
+        Map<String, int[]> newestIndex = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            String sensorId = readings.sensorId(i);
+            validateReading(sensorId, readings.humiditySoil(i));
+            int[] newest = newestIndex.get(sensorId);
+            if (newest == null) {
+                newestIndex.put(sensorId, new int[]{i});
+            } else if (effectiveTimestamp(readings, i, now) > effectiveTimestamp(readings, newest[0], now)) {
+                newest[0] = i;
+            }
+        }
 
         try {
-            boolean lockAcquired = Boolean.TRUE.equals(db.runTransaction(transaction -> {
-                DocumentSnapshot lockSnap = transaction.get(lockRef).get();
+            List<TelemetryReading> staged = new ArrayList<>(size);
+            List<String> unlinked = new ArrayList<>();
+            Map<String, TelemetryReading> newestBySensor = new LinkedHashMap<>();
+            Map<String, PlantBinding> plants = new HashMap<>();
+
+            for (String mac : newestIndex.keySet()) {
+                PlantBinding plant = resolvePlant(mac);
+                if (plant == null) {
+                    logger.warn("Batch contained readings for unlinked sensor: {}", mac);
+                    unlinked.add(mac);
+                } else {
+                    plants.put(mac, plant);
+                }
+            }
+
+            for (int i = 0; i < size; i++) {
+                String mac = readings.sensorId(i);
+                PlantBinding plant = plants.get(mac);
+                if (plant == null) continue;
 
-                long lastRun = 0L;
-                if (lockSnap.exists() && lockSnap.contains("lastRun")) {
-                    Timestamp ts = lockSnap.getTimestamp("lastRun");
-                    if (ts != null) lastRun = ts.toDate().getTime();
+                long timestamp = Math.min(effectiveTimestamp(readings, i, now), now);
+                String health = null;
+                if (newestIndex.get(mac)[0] == i) {
+                    health = thresholdCache.get(plant.speciesId()).evaluate(readings.temperature(i), readings.humiditySoil(i), readings.humidityAir(i));
                 }
+                TelemetryReading telemetry = new TelemetryReading(plant.reference(), plant.plantId(), plant.ownerId(),
+                        readings.temperature(i), readings.humidityAir(i), readings.humiditySoil(i), health, timestamp);
+                staged.add(telemetry);
+                if (health != null) newestBySensor.put(mac, telemetry);
+            }
+
+            if (!staged.isEmpty() && !telemetryPipeline.submitAll(staged)) {
+                logger.warn("Telemetry queue full, rejecting batch of {} readings", staged.size());
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Telemetry ingest is saturated, retry later.");
+            }
 
-                // If already run in the last 5 hours, skip
-                if (now - lastRun < TimeUnit.HOURS.toMillis(5)) {
-                    return false;
+            Set<String> syncedOwners = new HashSet<>();
+            newestBySensor.forEach((mac, telemetry) -> {
+                PlantBinding plant = plants.get(mac);
+                String newHealthStatus = telemetry.healthStatus();
+                sensorIndex.recordReading(mac, newHealthStatus, telemetry.timestamp());
+                if (syncedOwners.add(plant.ownerId())) {
+                    silentSync.request(plant.ownerId());
+                }
+                if (shouldAlert(thresholdCache.get(plant.speciesId()), plant, newHealthStatus)) {
+                    sendPlantNotification(plant.ownerId(), plant.displayName(), "HEALTH_ALERT", newHealthStatus);
                 }
+            });
 
-                transaction.set(lockRef, Map.of("lastRun", Timestamp.ofTimeMicroseconds(now * 1000)));
-                return true;
-            }).get());
+            return new BatchIngestResponse(staged.size(), unlinked);
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Critical error processing sensor batch of {} readings", size, e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error processing sensor telemetry.");
+        }
+    }
 
-            if (!lockAcquired) return;
+    /** The checks bean validation applies to a JSON reading, for readings that did not arrive as JSON. */
+    private static void validateReading(String sensorId, double humiditySoil) {
+        if (sensorId == null || sensorId.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Sensor ID is required for every reading.");
+        }
+        if (!(humiditySoil >= 0 && humiditySoil <= 100)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Soil moisture must be between 0 and 100.");
+        }
+    }
 
-            // This instance has the lock, proceed to check for offline sensors
+    private static long effectiveTimestamp(SensorReadings readings, int index, long now) {
+        long timestamp = readings.timestamp(index);
+        return timestamp > 0 ? timestamp : now;
+    }
 
-            long twentyFourHoursAgo = now - TimeUnit.DAYS.toMillis(1);
+    /**
+     * Safety net behind {@link SensorHeartbeatMonitor}: marks plants whose sensor has been silent for a day
+     * as Offline, covering any the monitor missed. Runs as a leased job, so only one replica checks per
+     * interval, and a replica that dies mid-run is taken over once its lease expires.
+     */
+    @Scheduled(fixedRateString = "${sprouty.jobs.poll-ms:900000}")
+    public void monitorSensorConnectivity() {
+        jobCoordinator.run("sensor-monitor", 1, Duration.ofMillis(monitorIntervalMs), partition -> {
+            long twentyFourHoursAgo = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1);
             QuerySnapshot offlinePlants = db.collection("user_plants")
                     .whereNotEqualTo("connectedSensorId", null)
                     .whereLessThan("lastSeen", twentyFourHoursAgo)
                     .get().get();
 
+            int checked = 0;
             for (QueryDocumentSnapshot doc : offlinePlants) {
                 UserPlant plant = doc.toObject(UserPlant.class);
                 if (!"Offline".equals(plant.getHealthStatus())) {
-                    sendPlantNotification(plant, "CONNECTION_LOST", null);
-                    doc.getReference().update("healthStatus", "Offline");
+                    String plantName = (plant.getCustomName() != null && !plant.getCustomName().isBlank()) ? plant.getCustomName() : plant.getSpeciesName();
+                    sendPlantNotification(plant.getOwnerId(), plantName, "CONNECTION_LOST", null);
+                    WriteBatch batch = db.batch();
+                    batch.update(doc.getReference(), "healthStatus", "Offline");
+                    GardenViews.updatePlant(batch, db, plant.getOwnerId(), doc.getId(), Map.of("healthStatus", "Offline"));
+                    batch.commit();
                     logger.info("Sensor {} marked Offline due to inactivity.", plant.getConnectedSensorId());
                 }
+                // Stops a stalled run before it duplicates notifications sent by the replica that took over
+                if (++checked % 100 == 0) partition.renew();
             }
-        } catch (Exception e) {
-            logger.error("Connectivity Monitor Job Failed: ", e);
-        }
+        });
     }
 
-    public String uploadSensorImage(byte[] imageBytes, String mac) {
+    public String uploadSensorImage(InputStream image, String mac) {
         try {
-            String bucketName = "sprouty-plantapp.firebasestorage.app";
-            Bucket bucket = storage.bucket(bucketName);
             String fileName = String.format("sensors/%s/%d.jpg", mac, System.currentTimeMillis());
+            String url = imageUploader.upload(image, fileName, "image/jpeg");
 
-            Blob blob = bucket.create(fileName, imageBytes, "image/jpeg");
-            return blob.signUrl(365, TimeUnit.DAYS).toString();
+            // Variants are rendered from the stored original off the request thread
+            imagePipeline.submit(fileName).whenComplete((variants, error) -> {
+                if (error != null) logger.warn("Image variants failed for {}: {}", fileName, error.getMessage());
+            });
+            return url;
+        } catch (ResponseStatusException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Storage Upload Failed for MAC {}: {}", mac, e.getMessage());
             return null;
         }
     }
 
-    private void sendPlantNotification(UserPlant plant, String type, String healthStatus) {
-        NotificationRequest request = new NotificationRequest();
-        request.setUserId(plant.getOwnerId());
+    private PlantBinding resolvePlant(String macAddress) throws Exception {
+        PlantBinding cached = sensorIndex.lookup(macAddress);
+        if (cached != null) return cached;
 
-        String plantName = (plant.getCustomName() != null && !plant.getCustomName().isBlank()) ? plant.getCustomName() : plant.getSpeciesName();
+        // Index miss (cold start or a link the listener has not delivered yet)
+        QuerySnapshot qs = db.collection("user_plants").whereEqualTo("connectedSensorId", macAddress).get().get();
+        if (qs.isEmpty()) return null;
+
+        PlantBinding binding = PlantBinding.of(qs.getDocuments().getFirst());
+        sensorIndex.put(macAddress, binding);
+        return binding;
+    }
+
+    /**
+     * A health alert is sent when a plant with known thresholds and notifications enabled
+     * moves into a non-healthy status it was not already in.
+     */
+    static boolean shouldAlert(SpeciesThresholds thresholds, PlantBinding plant, String newHealthStatus) {
+        return thresholds.known() && plant.notificationsEnabled()
+                && !"Healthy".equals(newHealthStatus) && !newHealthStatus.equals(plant.healthStatus());
+    }
+
+    void sendPlantNotification(String ownerId, String plantName, String type, String healthStatus) {
+        NotificationRequest request = new NotificationRequest();
+        request.setUserId(ownerId);
 
         switch (type) {
             case "CONNECTION_LOST" -> {
                 request.setTitle("Connection Lost: " + plantName);
-                request.setBody("We haven't heard from your sensor in 24 hours. Check its battery!");
+                request.setBody("We haven't heard from your sensor in a while. Check its battery!");
             }
             case "HEALTH_ALERT" -> {
                 request.setTitle("Sprouty Alert: " + plantName + " needs attention!");
@@ -167,47 +306,8 @@ public class SensorService {
         try {
             restTemplate.postForEntity(NOTIFICATION_SERVICE_URL, request, String.class);
         } catch (Exception e) {
-            logger.error("Notification delivery failed for user {}: {}", plant.getOwnerId(), e.getMessage());
-        }
-    }
-
-    private void triggerSilentSync(String userId) {
-        NotificationRequest syncRequest = new NotificationRequest();
-        syncRequest.setUserId(userId);
-        try {
-            restTemplate.postForEntity(NOTIFICATION_SERVICE_URL, syncRequest, String.class);
-        } catch (Exception e) {
-            logger.warn("Silent sync failed for user {}: {}", userId, e.getMessage());
-        }
-    }
-
-    private String calculateHealth(double temp, double humSoil, double humAir, MasterPlant master) {
-        if (master == null) return "Unknown";
-        if (temp <= 0.0) return "Freezing Risk";
-
-        try {
-            String[] soilInterval = master.getSoilH().split(",");
-            double minSoil = Double.parseDouble(soilInterval[0].trim());
-            double maxSoil = Double.parseDouble(soilInterval[1].trim());
-
-            if (humSoil < (minSoil - 15)) return "Thirsty";
-            if (humSoil > (maxSoil + 15)) return "Overwatered";
-
-            if (temp < (master.getMinT() - 5)) return "Too Cold";
-            if (temp > (master.getMaxT() + 5)) return "Too Hot";
-
-            if (master.getAirH() != null && !master.getAirH().isBlank()) {
-                String[] airInterval = master.getAirH().split(",");
-                double minAir = Double.parseDouble(airInterval[0].trim());
-                double maxAir = Double.parseDouble(airInterval[1].trim());
-
-                if (humAir < (minAir - 20)) return "Dry Air";
-                if (humAir > (maxAir + 20)) return "Too Humid";
-            }
-        } catch (Exception e) {
-            logger.warn("Threshold parsing failed for species {}: {}", master.getSpeciesName(), e.getMessage());
+            logger.error("Notification delivery failed for user {}: {}", ownerId, e.getMessage());
         }
-        return "Healthy";
     }
 
     private String getFriendlyMessage(String status) {
@@ -260,14 +360,4 @@ public class SensorService {
             default -> "Something feels off... can you take a look at me?";
         };
     }
-
-    private void recordHistory(String plantId, double temp, double humAir, double humSoil) {
-        Map<String, Object> log = new HashMap<>();
-        log.put("plantId", plantId);
-        log.put("temperature", temp);
-        log.put("humidityAir", humAir);
-        log.put("humiditySoil", humSoil);
-        log.put("timestamp", System.currentTimeMillis());
-        db.collection("sensor_history").add(log);
-    }
 }
\ No newline at end of file
@@ -0,0 +1,134 @@
+package si.uni.fri.sprouty.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import si.uni.fri.sprouty.concurrent.ThreadFactories;
+import si.uni.fri.sprouty.dto.NotificationRequest;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends REFRESH_PLANTS silent pushes off the ingest path.
+ * The first request for a user opens a window; every further request for that user
+ * inside the window is folded into the single push sent when the window closes.
+ */
+@Component
+public class SilentSyncDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(SilentSyncDispatcher.class);
+
+    private final RestTemplate restTemplate;
+    private final long windowMs;
+    private final int maxPendingUsers;
+    private final ScheduledThreadPoolExecutor executor;
+
+    // userId -> time the window opened; bounds both this map and the executor queue
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+
+    private final Counter requested;
+    private final Counter coalesced;
+    private final Counter sent;
+    private final Counter dropped;
+    private final Counter failed;
+
+    private final String NOTIFICATION_SERVICE_URL = "http://notification-service/notifications/send";
+
+    public SilentSyncDispatcher(RestTemplate restTemplate, MeterRegistry meterRegistry,
+                                @Value("${sprouty.silent-sync.window-ms:60000}") long windowMs,
+                                @Value("${sprouty.silent-sync.max-pending-users:10000}") int maxPendingUsers,
+                                @Value("${sprouty.silent-sync.threads:2}") int threads,
+                                @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.restTemplate = restTemplate;
+        this.windowMs = windowMs;
+        this.maxPendingUsers = maxPendingUsers;
+
+        // Sends block on the notification call; on virtual threads they stop occupying a carrier while waiting
+        this.executor = new ScheduledThreadPoolExecutor(threads, ThreadFactories.named("silent-sync", virtualThreads));
+        this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.executor.setRemoveOnCancelPolicy(true);
+
+        this.requested = syncCounter(meterRegistry, "requested");
+        this.coalesced = syncCounter(meterRegistry, "coalesced");
+        this.sent = syncCounter(meterRegistry, "sent");
+        this.dropped = syncCounter(meterRegistry, "dropped");
+        this.failed = syncCounter(meterRegistry, "failed");
+        meterRegistry.gauge("sprouty.silent_sync.pending", pending, Map::size);
+    }
+
+    /**
+     * Asks for a silent sync for the user. Never blocks; returns false if the request was dropped
+     * because too many users already have a window open.
+     */
+    public boolean request(String userId) {
+        if (userId == null || userId.isBlank()) return false;
+        requested.increment();
+
+        if (pending.containsKey(userId)) {
+            coalesced.increment();
+            return true;
+        }
+        if (pending.size() >= maxPendingUsers) {
+            dropped.increment();
+            logger.warn("Silent sync backlog full ({} users), dropping sync for user {}", maxPendingUsers, userId);
+            return false;
+        }
+        if (pending.putIfAbsent(userId, System.currentTimeMillis()) != null) {
+            coalesced.increment();
+            return true;
+        }
+
+        try {
+            executor.schedule(() -> send(userId), windowMs, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // Executor is shutting down
+            pending.remove(userId);
+            dropped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    public int pendingUsers() {
+        return pending.size();
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+        if (!pending.isEmpty()) {
+            logger.info("Skipping {} pending silent syncs on shutdown", pending.size());
+            pending.clear();
+        }
+    }
+
+    void send(String userId) {
+        // Close the window first so readings arriving during the call open the next one
+        pending.remove(userId);
+
+        NotificationRequest syncRequest = new NotificationRequest();
+        syncRequest.setUserId(userId);
+        try {
+            restTemplate.postForEntity(NOTIFICATION_SERVICE_URL, syncRequest, String.class);
+            sent.increment();
+        } catch (Exception e) {
+            failed.increment();
+            logger.warn("Silent sync failed for user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private static Counter syncCounter(MeterRegistry registry, String outcome) {
+        return Counter.builder("sprouty.silent_sync")
+                .description("Silent sync requests by outcome")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
@@ -0,0 +1,142 @@
+package si.uni.fri.sprouty.service;
+
+import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.firebase.cloud.StorageClient;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams uploads into Cloud Storage through a resumable WriteChannel.
+ * Every upload borrows one fixed-size chunk buffer from a bounded pool, so heap per
+ * upload stays at one chunk regardless of image size and the pool caps concurrent uploads.
+ */
+@Component
+public class StreamingImageUploader {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingImageUploader.class);
+
+    private final StorageClient storage;
+    private final String bucketName;
+    private final int chunkSize;
+    private final long acquireTimeoutMs;
+    private final int poolSize;
+    private final BlockingQueue<ByteBuffer> buffers;
+
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary uploadedBytes;
+    private final DistributionSummary throughput;
+    private final DistributionSummary bufferHeap;
+
+    public StreamingImageUploader(StorageClient storage, MeterRegistry meterRegistry,
+                                  @Value("${sprouty.storage.bucket:sprouty-plantapp.firebasestorage.app}") String bucketName,
+                                  @Value("${sprouty.storage.upload.chunk-size:262144}") int chunkSize,
+                                  @Value("${sprouty.storage.upload.max-concurrent:8}") int maxConcurrent,
+                                  @Value("${sprouty.storage.upload.acquire-timeout-ms:2000}") long acquireTimeoutMs) {
+        this.storage = storage;
+        this.bucketName = bucketName;
+        this.chunkSize = chunkSize;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.poolSize = maxConcurrent;
+        this.buffers = new ArrayBlockingQueue<>(maxConcurrent);
+        for (int i = 0; i < maxConcurrent; i++) {
+            buffers.add(ByteBuffer.allocate(chunkSize));
+        }
+
+        this.meterRegistry = meterRegistry;
+        this.uploadedBytes = DistributionSummary.builder("sprouty.image.upload.size")
+                .description("Size of streamed image uploads")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.throughput = DistributionSummary.builder("sprouty.image.upload.throughput")
+                .description("Upload throughput per request")
+                .baseUnit("bytes_per_second")
+                .register(meterRegistry);
+        meterRegistry.gauge("sprouty.image.upload.buffers.in_use", buffers, b -> poolSize - b.size());
+        this.bufferHeap = DistributionSummary.builder("sprouty.image.upload.buffer_heap")
+                .description("Chunk buffer heap checked out of the pool when an upload starts")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Copies the stream into the named object and returns a signed download URL.
+     * Throws 503 if every chunk buffer stays busy for the acquire timeout.
+     */
+    public String upload(InputStream content, String objectName, String contentType) throws IOException {
+        ByteBuffer buffer = acquire();
+        long started = System.nanoTime();
+        String outcome = "error";
+        try {
+            Storage client = storage.bucket(bucketName).getStorage();
+            BlobInfo blobInfo = BlobInfo.newBuilder(BlobId.of(bucketName, objectName))
+                    .setContentType(contentType)
+                    .build();
+
+            long total = 0;
+            try (WriteChannel writer = client.writer(blobInfo)) {
+                writer.setChunkSize(chunkSize);
+                byte[] chunk = buffer.array();
+                int read;
+                while ((read = content.readNBytes(chunk, 0, chunkSize)) > 0) {
+                    buffer.clear().limit(read);
+                    while (buffer.hasRemaining()) {
+                        writer.write(buffer);
+                    }
+                    total += read;
+                }
+            }
+
+            long elapsedNanos = System.nanoTime() - started;
+            uploadedBytes.record(total);
+            if (elapsedNanos > 0) {
+                throughput.record(total * 1_000_000_000.0 / elapsedNanos);
+            }
+            outcome = "success";
+            return client.signUrl(blobInfo, 365, TimeUnit.DAYS).toString();
+        } finally {
+            Timer.builder("sprouty.image.upload")
+                    .description("Time to stream an image into storage")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            release(buffer);
+        }
+    }
+
+    private ByteBuffer acquire() {
+        try {
+            ByteBuffer buffer = buffers.poll(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+            if (buffer == null) {
+                logger.warn("All {} upload buffers busy, rejecting upload", buffers.remainingCapacity());
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many concurrent uploads, retry later.");
+            }
+            bufferHeap.record((double) (poolSize - buffers.size()) * chunkSize);
+            return buffer;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Upload interrupted.");
+        }
+    }
+
+    private void release(ByteBuffer buffer) {
+        buffer.clear();
+        buffers.offer(buffer);
+    }
+}
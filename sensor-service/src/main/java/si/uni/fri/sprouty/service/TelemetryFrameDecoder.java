@@ -0,0 +1,113 @@
+package si.uni.fri.sprouty.service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Decoder for the compact binary telemetry format ({@value #MEDIA_TYPE}).
+ * A body is one or more fixed 20 byte little-endian frames:
+ * <pre>
+ *  0..5   MAC address, 6 bytes, most significant byte first
+ *  6..13  reading time, int64 epoch millis (0 = time of arrival)
+ * 14..15  temperature, int16, hundredths of a degree Celsius
+ * 16..17  air humidity, uint16, hundredths of a percent
+ * 18..19  soil moisture, uint16, hundredths of a percent
+ * </pre>
+ * Frames are looked up by index through {@link #frames(ByteBuffer)}, which reads each field with
+ * absolute gets straight from the buffer into primitives.
+ */
+public final class TelemetryFrameDecoder {
+
+    public static final String MEDIA_TYPE = "application/vnd.sprouty.telemetry";
+    public static final int FRAME_SIZE = 20;
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private TelemetryFrameDecoder() {}
+
+    /**
+     * Returns a view of the frames in the body that decodes each field on access, without copying the body.
+     * Throws IllegalArgumentException if the body is empty or not a whole number of frames.
+     */
+    public static SensorReadings frames(ByteBuffer body) {
+        ByteBuffer buffer = body.order(ByteOrder.LITTLE_ENDIAN);
+        int start = buffer.position();
+        int length = buffer.remaining();
+        if (length == 0 || length % FRAME_SIZE != 0) {
+            throw new IllegalArgumentException("Telemetry body must be a multiple of " + FRAME_SIZE + " bytes, got " + length + ".");
+        }
+
+        return new SensorReadings() {
+            // A replayed buffer usually comes from one sensor, so its ID is formatted once
+            private long lastMac = -1;
+            private String lastSensorId;
+
+            @Override
+            public int size() {
+                return length / FRAME_SIZE;
+            }
+
+            @Override
+            public String sensorId(int index) {
+                long mac = mac(buffer, start + index * FRAME_SIZE);
+                if (mac != lastMac) {
+                    lastSensorId = macToString(mac);
+                    lastMac = mac;
+                }
+                return lastSensorId;
+            }
+
+            @Override
+            public double temperature(int index) {
+                return TelemetryFrameDecoder.temperature(buffer, start + index * FRAME_SIZE);
+            }
+
+            @Override
+            public double humidityAir(int index) {
+                return TelemetryFrameDecoder.humidityAir(buffer, start + index * FRAME_SIZE);
+            }
+
+            @Override
+            public double humiditySoil(int index) {
+                return TelemetryFrameDecoder.humiditySoil(buffer, start + index * FRAME_SIZE);
+            }
+
+            @Override
+            public long timestamp(int index) {
+                return buffer.getLong(start + index * FRAME_SIZE + 6);
+            }
+        };
+    }
+
+    private static long mac(ByteBuffer buffer, int offset) {
+        long mac = 0;
+        for (int b = 0; b < 6; b++) {
+            mac = (mac << 8) | (buffer.get(offset + b) & 0xFF);
+        }
+        return mac;
+    }
+
+    private static double temperature(ByteBuffer buffer, int offset) {
+        return buffer.getShort(offset + 14) / 100.0;
+    }
+
+    private static double humidityAir(ByteBuffer buffer, int offset) {
+        return (buffer.getShort(offset + 16) & 0xFFFF) / 100.0;
+    }
+
+    private static double humiditySoil(ByteBuffer buffer, int offset) {
+        return (buffer.getShort(offset + 18) & 0xFFFF) / 100.0;
+    }
+
+    /**
+     * Formats a 48-bit MAC the way sensors register it: 12 upper-case hex digits without separators.
+     */
+    public static String macToString(long mac) {
+        char[] out = new char[12];
+        for (int i = 11; i >= 0; i--) {
+            out[i] = HEX[(int) (mac & 0xF)];
+            mac >>>= 4;
+        }
+        return new String(out);
+    }
+}
@@ -0,0 +1,242 @@
+package si.uni.fri.sprouty.service;
+
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.Firestore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind buffer between the ingest endpoint and Firestore.
+ * Readings are queued, merged per plant and committed in WriteBatches
+ * by a single background flusher, either when enough readings are
+ * buffered or when the flush interval elapses.
+ * A batch that keeps failing transiently is kept and sent again ahead of
+ * the next flush, up to MAX_DEFERRED_BATCHES.
+ */
+@Component
+public class TelemetryPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryPipeline.class);
+    static final int MAX_DEFERRED_BATCHES = 20;
+
+    private final Firestore db;
+    private final SensorHistoryStore historyStore;
+    private final BlockingQueue<TelemetryReading> queue;
+    // One permit per free queue slot. Producers reserve slots before offering, so a group reserves all of its
+    // slots at once and its offers cannot fail; the flusher hands slots back as it takes readings out
+    private final Semaphore slots;
+    private final int flushSize;
+    private final long flushIntervalMs;
+    private final long offerTimeoutMs;
+    private final long shutdownTimeoutMs;
+    private final int commitAttempts;
+    private final long retryBackoffMs;
+
+    // Submitters hold the read lock from the running check to the enqueue, so once stop() has taken the
+    // write lock no reading can slip in behind the flusher's final drain
+    private final ReadWriteLock admission = new ReentrantReadWriteLock();
+    private volatile boolean running;
+    private Thread flusher;
+    // Only touched by the flusher
+    private final Deque<FirestoreBatchWriter.PendingBatch> deferred = new ArrayDeque<>();
+
+    /**
+     * A reading with a null healthStatus is history-only: it is recorded but never
+     * written to the plant document (used for replayed, older readings).
+     */
+    public record TelemetryReading(
+            DocumentReference plantRef,
+            String plantId,
+            String ownerId,
+            double temperature,
+            double humidityAir,
+            double humiditySoil,
+            String healthStatus,
+            long timestamp
+    ) {
+        public boolean updatesPlant() {
+            return healthStatus != null;
+        }
+    }
+
+    public TelemetryPipeline(Firestore db, SensorHistoryStore historyStore,
+                             @Value("${sprouty.telemetry.queue-capacity:10000}") int queueCapacity,
+                             @Value("${sprouty.telemetry.flush-size:250}") int flushSize,
+                             @Value("${sprouty.telemetry.flush-interval-ms:1000}") long flushIntervalMs,
+                             @Value("${sprouty.telemetry.offer-timeout-ms:50}") long offerTimeoutMs,
+                             @Value("${sprouty.telemetry.shutdown-timeout-ms:15000}") long shutdownTimeoutMs,
+                             @Value("${sprouty.telemetry.commit-attempts:3}") int commitAttempts,
+                             @Value("${sprouty.telemetry.retry-backoff-ms:200}") long retryBackoffMs) {
+        this.db = db;
+        this.historyStore = historyStore;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.slots = new Semaphore(queueCapacity);
+        this.flushSize = flushSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        this.commitAttempts = commitAttempts;
+        this.retryBackoffMs = retryBackoffMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        flusher = new Thread(this::runFlusher, "telemetry-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        admission.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            admission.writeLock().unlock();
+        }
+        try {
+            flusher.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            logger.error("Telemetry pipeline shut down with {} unflushed readings", queue.size());
+        }
+        if (!deferred.isEmpty()) {
+            logger.error("Telemetry pipeline shut down with {} uncommitted batches", deferred.size());
+        }
+    }
+
+    /**
+     * Queues a reading for the next flush.
+     * Returns false when the queue stays full for the offer timeout, so callers can shed load.
+     */
+    public boolean submit(TelemetryReading reading) {
+        admission.readLock().lock();
+        try {
+            if (!running || !slots.tryAcquire(offerTimeoutMs, TimeUnit.MILLISECONDS)) return false;
+            queue.offer(reading);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            admission.readLock().unlock();
+        }
+    }
+
+    /**
+     * Queues a reading only if there is room right now. Used by the reactive ingest path,
+     * which must not park its thread waiting for the flusher.
+     */
+    public boolean tryOffer(TelemetryReading reading) {
+        admission.readLock().lock();
+        try {
+            if (!running || !slots.tryAcquire()) return false;
+            queue.offer(reading);
+            return true;
+        } finally {
+            admission.readLock().unlock();
+        }
+    }
+
+    /**
+     * Queues a group of readings, all or nothing.
+     * Returns false without queueing anything if the group does not fit.
+     */
+    public boolean submitAll(List<TelemetryReading> readings) {
+        admission.readLock().lock();
+        try {
+            if (!running || !slots.tryAcquire(readings.size())) return false;
+            readings.forEach(queue::offer);
+            return true;
+        } finally {
+            admission.readLock().unlock();
+        }
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    private void runFlusher() {
+        List<TelemetryReading> buffer = new ArrayList<>(flushSize);
+        long deadline = Long.MAX_VALUE;
+
+        while (running) {
+            try {
+                long wait = buffer.isEmpty() ? flushIntervalMs : Math.max(0, deadline - System.currentTimeMillis());
+                TelemetryReading reading = queue.poll(wait, TimeUnit.MILLISECONDS);
+                if (reading != null) {
+                    if (buffer.isEmpty()) deadline = System.currentTimeMillis() + flushIntervalMs;
+                    buffer.add(reading);
+                    slots.release(1 + queue.drainTo(buffer, flushSize - buffer.size()));
+                }
+                boolean due = !buffer.isEmpty() && (buffer.size() >= flushSize || System.currentTimeMillis() >= deadline);
+                // An idle interval is also when deferred batches are retried
+                if (due || (buffer.isEmpty() && !deferred.isEmpty())) {
+                    flush(buffer);
+                    buffer.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                logger.error("Telemetry flusher iteration failed: ", e);
+            }
+        }
+
+        // Drain whatever was accepted before shutdown
+        slots.release(queue.drainTo(buffer));
+        if (!buffer.isEmpty() || !deferred.isEmpty()) {
+            logger.info("Draining {} buffered readings and {} deferred batches before shutdown", buffer.size(), deferred.size());
+            flush(buffer);
+        }
+    }
+
+    void flush(List<TelemetryReading> readings) {
+        // Only the newest reading per plant is written to user_plants, every reading goes to history
+        Map<String, TelemetryReading> latestPerPlant = new LinkedHashMap<>();
+        for (TelemetryReading reading : readings) {
+            if (!reading.updatesPlant()) continue;
+            latestPerPlant.merge(reading.plantId(), reading,
+                    (current, candidate) -> candidate.timestamp() >= current.timestamp() ? candidate : current);
+        }
+
+        FirestoreBatchWriter writer = new FirestoreBatchWriter(db, commitAttempts, retryBackoffMs);
+        // Older writes go first, so a retried batch cannot overwrite newer plant fields
+        while (!deferred.isEmpty()) {
+            writer.resend(deferred.poll());
+        }
+        for (TelemetryReading latest : latestPerPlant.values()) {
+            Map<String, Object> updates = new HashMap<>();
+            updates.put("currentHumiditySoil", latest.humiditySoil());
+            updates.put("currentTemperature", latest.temperature());
+            updates.put("currentHumidityAir", latest.humidityAir());
+            updates.put("healthStatus", latest.healthStatus());
+            updates.put("lastSeen", latest.timestamp());
+            writer.updatePlant(latest.plantRef(), latest.ownerId(), latest.plantId(), updates);
+        }
+
+        historyStore.stage(readings, writer);
+        writer.commit();
+
+        deferred.addAll(writer.deferred());
+        while (deferred.size() > MAX_DEFERRED_BATCHES) {
+            logger.error("Too many uncommitted telemetry batches, {} writes lost", deferred.poll().operations());
+        }
+    }
+}
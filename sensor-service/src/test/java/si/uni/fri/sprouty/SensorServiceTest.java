@@ -2,19 +2,30 @@ package si.uni.fri.sprouty;
 
 import com.google.api.core.ApiFutures;
 import com.google.cloud.firestore.*;
-import com.google.firebase.cloud.StorageClient;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import si.uni.fri.sprouty.care.SpeciesThresholdCache;
+import si.uni.fri.sprouty.coordination.JobCoordinator;
+import si.uni.fri.sprouty.dto.BatchIngestResponse;
 import si.uni.fri.sprouty.dto.MasterPlant;
+import si.uni.fri.sprouty.dto.SensorDataRequest;
 import si.uni.fri.sprouty.dto.UserPlant;
+import si.uni.fri.sprouty.image.ImagePipeline;
+import si.uni.fri.sprouty.service.SensorPlantIndex;
 import si.uni.fri.sprouty.service.SensorService;
+import si.uni.fri.sprouty.service.SilentSyncDispatcher;
+import si.uni.fri.sprouty.service.StreamingImageUploader;
+import si.uni.fri.sprouty.service.TelemetryPipeline;
 
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -22,12 +33,15 @@ import static org.mockito.Mockito.*;
 class SensorServiceTest {
 
     @Mock private Firestore db;
-    @Mock private StorageClient storage;
+    @Mock private StreamingImageUploader imageUploader;
     @Mock private RestTemplate restTemplate;
 
     @Mock private CollectionReference usersCollection;
     @Mock private CollectionReference masterCollection;
-    @Mock private CollectionReference historyCollection; // Added this
+    @Mock private TelemetryPipeline telemetryPipeline;
+    @Mock private SilentSyncDispatcher silentSync;
+    @Mock private ImagePipeline imagePipeline;
+    @Mock private JobCoordinator jobCoordinator;
     @Mock private Query query;
     @Mock private QuerySnapshot querySnapshot;
     @Mock private QueryDocumentSnapshot documentSnapshot;
@@ -35,11 +49,14 @@ class SensorServiceTest {
     @Mock private DocumentSnapshot masterDocSnapshot;
     @Mock private DocumentReference masterDocRef;
 
+    private SensorPlantIndex sensorIndex;
     private SensorService sensorService;
 
     @BeforeEach
     void setUp() {
-        sensorService = new SensorService(restTemplate, db, storage);
+        sensorIndex = new SensorPlantIndex(db);
+        sensorService = new SensorService(restTemplate, db, imageUploader, sensorIndex, telemetryPipeline,
+                new SpeciesThresholdCache(db, 100), silentSync, imagePipeline, jobCoordinator, 86400000L);
     }
 
     @Test
@@ -72,21 +89,92 @@ class SensorServiceTest {
         master.setMaxT(30);
         when(masterDocSnapshot.toObject(MasterPlant.class)).thenReturn(master);
 
-        // 3. Mock the updates and history collection
-        when(plantDocRef.update(anyMap())).thenReturn(ApiFutures.immediateFuture(null));
-        when(db.collection("sensor_history")).thenReturn(historyCollection);
-        when(historyCollection.add(anyMap())).thenReturn(ApiFutures.immediateFuture(null));
-
+        // 3. Accept the reading into the write-behind pipeline
+        when(telemetryPipeline.submit(any())).thenReturn(true);
 
         sensorService.processSensorUpdate(mac, 22.0, 50.0, 45.0);
-        verify(plantDocRef).update(argThat(map ->
-                map.get("healthStatus").equals("Healthy") &&
-                        map.get("currentTemperature").equals(22.0)
-        ));
-        verify(historyCollection).add(argThat(map ->
-                map.get("plantId").equals("plant_doc_id") &&
-                        map.get("temperature").equals(22.0)
+        verify(telemetryPipeline).submit(argThat(reading ->
+                reading.plantRef() == plantDocRef &&
+                        reading.plantId().equals("plant_doc_id") &&
+                        reading.healthStatus().equals("Healthy") &&
+                        reading.temperature() == 22.0
         ));
-        verify(restTemplate, atLeastOnce()).postForEntity(anyString(), any(), eq(String.class));
+        verify(silentSync).request("user123");
+        verify(restTemplate, never()).postForEntity(anyString(), any(), eq(String.class));
+    }
+
+    @Test
+    void processSensorUpdate_ShouldSkipLookupQuery_WhenSensorIsIndexed() {
+        String mac = "AABBCCDDEEFF";
+        sensorIndex.put(mac, new SensorPlantIndex.PlantBinding(
+                plantDocRef, "plant_doc_id", "user123", "basil_01", "Basil", null, true, "Healthy", null));
+
+        when(db.collection("master_plants")).thenReturn(masterCollection);
+        when(masterCollection.document("basil_01")).thenReturn(masterDocRef);
+        when(masterDocRef.get()).thenReturn(ApiFutures.immediateFuture(masterDocSnapshot));
+        when(masterDocSnapshot.toObject(MasterPlant.class)).thenReturn(null);
+
+        when(telemetryPipeline.submit(any())).thenReturn(true);
+
+        sensorService.processSensorUpdate(mac, 22.0, 50.0, 45.0);
+
+        verify(db, never()).collection("user_plants");
+        verify(telemetryPipeline).submit(argThat(reading -> reading.healthStatus().equals("Unknown")));
+    }
+
+    @Test
+    void processSensorUpdate_ShouldReject_WhenPipelineIsSaturated() {
+        String mac = "AABBCCDDEEFF";
+        sensorIndex.put(mac, new SensorPlantIndex.PlantBinding(
+                plantDocRef, "plant_doc_id", "user123", "basil_01", "Basil", null, true, "Healthy", null));
+
+        when(db.collection("master_plants")).thenReturn(masterCollection);
+        when(masterCollection.document("basil_01")).thenReturn(masterDocRef);
+        when(masterDocRef.get()).thenReturn(ApiFutures.immediateFuture(masterDocSnapshot));
+        when(masterDocSnapshot.toObject(MasterPlant.class)).thenReturn(null);
+        when(telemetryPipeline.submit(any())).thenReturn(false);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> sensorService.processSensorUpdate(mac, 22.0, 50.0, 45.0));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatusCode());
+        verify(silentSync, never()).request(anyString());
+    }
+
+    @Test
+    void processSensorBatch_ShouldEvaluateOnlyNewestReadingPerSensor() {
+        String mac = "AABBCCDDEEFF";
+        sensorIndex.put(mac, new SensorPlantIndex.PlantBinding(
+                plantDocRef, "plant_doc_id", "user123", "basil_01", "Basil", null, true, "Healthy", null));
+
+        when(db.collection("master_plants")).thenReturn(masterCollection);
+        when(masterCollection.document("basil_01")).thenReturn(masterDocRef);
+        when(masterDocRef.get()).thenReturn(ApiFutures.immediateFuture(masterDocSnapshot));
+        when(masterDocSnapshot.toObject(MasterPlant.class)).thenReturn(null);
+        when(db.collection("user_plants")).thenReturn(usersCollection);
+        when(usersCollection.whereEqualTo("connectedSensorId", "UNLINKED")).thenReturn(query);
+        when(query.get()).thenReturn(ApiFutures.immediateFuture(querySnapshot));
+        when(querySnapshot.isEmpty()).thenReturn(true);
+        when(telemetryPipeline.submitAll(anyList())).thenReturn(true);
+
+        BatchIngestResponse response = sensorService.processSensorBatch(List.of(
+                reading(mac, 1_000L), reading(mac, 3_000L), reading(mac, 2_000L), reading("UNLINKED", 1_000L)));
+
+        assertEquals(3, response.accepted());
+        assertEquals(List.of("UNLINKED"), response.unlinkedSensors());
+        verify(telemetryPipeline).submitAll(argThat(staged -> staged.size() == 3 &&
+                staged.stream().filter(TelemetryPipeline.TelemetryReading::updatesPlant).count() == 1 &&
+                staged.stream().filter(TelemetryPipeline.TelemetryReading::updatesPlant).findFirst().get().timestamp() == 3_000L));
+        verify(silentSync, times(1)).request("user123");
+    }
+
+    private static SensorDataRequest reading(String mac, long timestamp) {
+        SensorDataRequest request = new SensorDataRequest();
+        request.setSensorId(mac);
+        request.setTemperature(22.0);
+        request.setHumidity(50.0);
+        request.setMoisture(45.0);
+        request.setTimestamp(timestamp);
+        return request;
     }
-}
\ No newline at end of file
+}
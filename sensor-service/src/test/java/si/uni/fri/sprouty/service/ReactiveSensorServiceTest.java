@@ -0,0 +1,137 @@
+package si.uni.fri.sprouty.service;
+
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import si.uni.fri.sprouty.care.SpeciesThresholdCache;
+import si.uni.fri.sprouty.coordination.JobCoordinator;
+import si.uni.fri.sprouty.dto.MasterPlant;
+import si.uni.fri.sprouty.dto.NotificationRequest;
+import si.uni.fri.sprouty.image.ImagePipeline;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveSensorServiceTest {
+
+    private static final String MAC = "AABBCCDDEEFF";
+
+    @Mock private Firestore db;
+    @Mock private RestTemplate restTemplate;
+    @Mock private StreamingImageUploader imageUploader;
+    @Mock private TelemetryPipeline telemetryPipeline;
+    @Mock private SilentSyncDispatcher silentSync;
+    @Mock private ImagePipeline imagePipeline;
+    @Mock private JobCoordinator jobCoordinator;
+
+    @Mock private CollectionReference usersCollection;
+    @Mock private CollectionReference masterCollection;
+    @Mock private Query query;
+    @Mock private QuerySnapshot querySnapshot;
+    @Mock private DocumentReference plantDocRef;
+    @Mock private DocumentReference masterDocRef;
+    @Mock private DocumentSnapshot masterDocSnapshot;
+
+    private SensorPlantIndex sensorIndex;
+    private SpeciesThresholdCache thresholdCache;
+    private SensorService sensorService;
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        sensorIndex = new SensorPlantIndex(db);
+        thresholdCache = new SpeciesThresholdCache(db, 100);
+        sensorService = new SensorService(restTemplate, db, imageUploader, sensorIndex, telemetryPipeline,
+                thresholdCache, silentSync, imagePipeline, jobCoordinator, 86400000L);
+    }
+
+    @Test
+    void processSensorUpdate_ShouldQueueReadingAndAlertOnNewUnhealthyStatus() {
+        sensorIndex.put(MAC, new SensorPlantIndex.PlantBinding(
+                plantDocRef, "plant_doc_id", "user123", "basil_01", "Basil", null, true, "Healthy", null));
+        stubSpecies(master("30,70"));
+        when(telemetryPipeline.tryOffer(any())).thenReturn(true);
+
+        service(10).processSensorUpdate(MAC, 22.0, 50.0, 5.0, 1_000L).block();
+
+        verify(telemetryPipeline).tryOffer(argThat(reading ->
+                reading.plantId().equals("plant_doc_id") && reading.healthStatus().equals("Thirsty") && reading.timestamp() == 1_000L));
+        verify(silentSync).request("user123");
+        verify(restTemplate, timeout(2000)).postForEntity(anyString(),
+                argThat((NotificationRequest r) -> "user123".equals(r.getUserId())), eq(String.class));
+        assertEquals("Thirsty", sensorIndex.lookup(MAC).healthStatus());
+    }
+
+    @Test
+    void processSensorUpdate_ShouldReturnNotFound_WhenSensorIsUnlinked() {
+        when(db.collection("user_plants")).thenReturn(usersCollection);
+        when(usersCollection.whereEqualTo("connectedSensorId", MAC)).thenReturn(query);
+        when(query.get()).thenReturn(ApiFutures.immediateFuture(querySnapshot));
+        when(querySnapshot.isEmpty()).thenReturn(true);
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> service(10).processSensorUpdate(MAC, 22.0, 50.0, 45.0, 1_000L).block());
+
+        assertEquals(HttpStatus.NOT_FOUND, e.getStatusCode());
+        verifyNoInteractions(telemetryPipeline);
+    }
+
+    @Test
+    void processSensorUpdate_ShouldRejectWithoutWaiting_WhenPipelineIsFull() {
+        sensorIndex.put(MAC, new SensorPlantIndex.PlantBinding(
+                plantDocRef, "plant_doc_id", "user123", "basil_01", "Basil", null, true, "Healthy", null));
+        stubSpecies(null);
+        when(telemetryPipeline.tryOffer(any())).thenReturn(false);
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> service(10).processSensorUpdate(MAC, 22.0, 50.0, 45.0, 1_000L).block());
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+        verify(telemetryPipeline, never()).submit(any());
+        verify(silentSync, never()).request(anyString());
+    }
+
+    @Test
+    void processSensorUpdate_ShouldShedLoad_WhenTooManyReadingsInFlight() {
+        ReactiveSensorService service = service(0);
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> service.processSensorUpdate(MAC, 22.0, 50.0, 45.0, 1_000L).block());
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+        assertEquals(1.0, registry.get("sprouty.ingest.shed").counter().count());
+        assertEquals(0.0, registry.get("sprouty.ingest.in_flight").gauge().value());
+        verifyNoInteractions(db, telemetryPipeline);
+    }
+
+    private ReactiveSensorService service(int maxInFlight) {
+        return new ReactiveSensorService(db, sensorIndex, telemetryPipeline, thresholdCache, silentSync,
+                sensorService, registry, maxInFlight);
+    }
+
+    private void stubSpecies(MasterPlant master) {
+        when(db.collection("master_plants")).thenReturn(masterCollection);
+        when(masterCollection.document("basil_01")).thenReturn(masterDocRef);
+        when(masterDocRef.get()).thenReturn(ApiFutures.immediateFuture(masterDocSnapshot));
+        when(masterDocSnapshot.toObject(MasterPlant.class)).thenReturn(master);
+    }
+
+    private static MasterPlant master(String soilRange) {
+        MasterPlant master = new MasterPlant();
+        master.setSoilH(soilRange);
+        master.setAirH("40,60");
+        master.setMinT(15);
+        master.setMaxT(30);
+        return master;
+    }
+}
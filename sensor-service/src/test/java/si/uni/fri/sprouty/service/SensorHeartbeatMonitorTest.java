@@ -0,0 +1,119 @@
+package si.uni.fri.sprouty.service;
+
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SensorHeartbeatMonitorTest {
+
+    private static final String MAC = "AA:BB:CC:DD:EE:FF";
+    private static final long T0 = 1_700_000_000_000L;
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    @Mock private Firestore db;
+    @Mock private SensorService sensorService;
+    @Mock private Transaction transaction;
+    @Mock private DocumentReference plantRef;
+    @Mock private DocumentSnapshot plantDoc;
+    @Mock private CollectionReference viewsCollection;
+    @Mock private DocumentReference viewRef;
+
+    private SensorPlantIndex sensorIndex;
+    private SensorHeartbeatMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        sensorIndex = new SensorPlantIndex(db);
+        // Expects a reading every 15 minutes and allows three missed ones
+        monitor = new SensorHeartbeatMonitor(db, sensorIndex, sensorService, new SimpleMeterRegistry(),
+                15 * MINUTE, 3, 10 * MINUTE, TimeUnit.DAYS.toMillis(1), 30_000, 180_000);
+        monitor.start();
+        monitor.assign(IntStream.range(0, SensorHeartbeatMonitor.PARTITIONS).boxed().collect(Collectors.toSet()));
+    }
+
+    @Test
+    void check_ShouldMarkSensorOfflineOnce_WhenItMissesItsReadings() throws Exception {
+        link(T0);
+        stubPlantDoc(T0, "Healthy");
+
+        monitor.check(T0 + 44 * MINUTE);
+        verifyNoInteractions(transaction);
+
+        monitor.check(T0 + 46 * MINUTE);
+        monitor.check(T0 + 120 * MINUTE);
+
+        verify(transaction, times(1)).update(plantRef, "healthStatus", "Offline");
+        verify(transaction, times(1)).set(eq(viewRef), anyMap(), any(SetOptions.class));
+        verify(sensorService, times(1)).sendPlantNotification("user123", "Basil", "CONNECTION_LOST", null);
+    }
+
+    @Test
+    void check_ShouldFollowTheSensorsOwnInterval_WhenReadingsArrive() throws Exception {
+        link(T0);
+        sensorIndex.recordReading(MAC, "Healthy", T0 + 5 * MINUTE);
+        sensorIndex.recordReading(MAC, "Healthy", T0 + 10 * MINUTE);
+        stubPlantDoc(T0 + 10 * MINUTE, "Healthy");
+
+        // Readings every 5 minutes: three missed ones end at minute 25, well before the 15 minute default would
+        monitor.check(T0 + 21 * MINUTE);
+        monitor.check(T0 + 24 * MINUTE);
+        verifyNoInteractions(transaction);
+
+        monitor.check(T0 + 26 * MINUTE);
+        verify(transaction).update(plantRef, "healthStatus", "Offline");
+    }
+
+    @Test
+    void check_ShouldNotWrite_WhenAnotherReplicaIngestedANewerReading() throws Exception {
+        link(T0);
+        stubPlantDoc(T0 + 40 * MINUTE, "Healthy");
+
+        monitor.check(T0 + 46 * MINUTE);
+
+        verify(transaction, never()).update(any(DocumentReference.class), anyString(), any());
+        verifyNoInteractions(sensorService);
+    }
+
+    @Test
+    void bindingChanged_ShouldIgnoreSensorsInPartitionsOwnedElsewhere() {
+        monitor.assign(Set.of());
+        link(T0);
+
+        assertEquals(0, monitor.size());
+        monitor.check(T0 + TimeUnit.DAYS.toMillis(2));
+        verifyNoInteractions(db);
+    }
+
+    private void link(long lastSeen) {
+        sensorIndex.put(MAC, new SensorPlantIndex.PlantBinding(
+                plantRef, "plant_doc_id", "user123", "basil_01", "Basil", null, true, "Healthy", lastSeen));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubPlantDoc(long lastSeen, String healthStatus) throws Exception {
+        when(db.runTransaction(any(Transaction.Function.class))).thenAnswer(invocation ->
+                ApiFutures.immediateFuture(((Transaction.Function<Object>) invocation.getArgument(0)).updateCallback(transaction)));
+        when(transaction.get(plantRef)).thenReturn(ApiFutures.immediateFuture(plantDoc));
+        when(plantDoc.exists()).thenReturn(true);
+        when(plantDoc.getString("connectedSensorId")).thenReturn(MAC);
+        when(plantDoc.getLong("lastSeen")).thenReturn(lastSeen);
+        lenient().when(plantDoc.getString("healthStatus")).thenReturn(healthStatus);
+        lenient().when(db.collection("garden_views")).thenReturn(viewsCollection);
+        lenient().when(viewsCollection.document("user123")).thenReturn(viewRef);
+    }
+}
@@ -0,0 +1,134 @@
+package si.uni.fri.sprouty.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import si.uni.fri.sprouty.dto.HistoryResponse;
+import si.uni.fri.sprouty.service.SensorHistoryStore.Resolution;
+import si.uni.fri.sprouty.service.TelemetryPipeline.TelemetryReading;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SensorHistoryStoreTest {
+
+    @Mock private Firestore db;
+    @Mock private WriteBatch batch;
+    @Mock private CollectionReference hourlyCollection;
+    @Mock private CollectionReference dailyCollection;
+    @Mock private DocumentReference bucketRef;
+    @Mock private DocumentSnapshot emptyBucket;
+    @Mock private CollectionReference plantsCollection;
+    @Mock private DocumentReference plantRef;
+    @Mock private DocumentSnapshot plant;
+    @Mock private Query bucketQuery;
+    @Mock private QuerySnapshot buckets;
+    @Mock private QueryDocumentSnapshot bucket;
+
+    @Test
+    void stage_ShouldWriteOneHourlyAndOneDailyBucketPerPlant() {
+        SensorHistoryStore store = new SensorHistoryStore(db);
+        long hour = TimeUnit.HOURS.toMillis(1000);
+
+        when(db.collection(SensorHistoryStore.HOURLY_COLLECTION)).thenReturn(hourlyCollection);
+        when(db.collection(SensorHistoryStore.DAILY_COLLECTION)).thenReturn(dailyCollection);
+        when(hourlyCollection.document(anyString())).thenReturn(bucketRef);
+        when(dailyCollection.document(anyString())).thenReturn(bucketRef);
+        when(db.getAll(any(DocumentReference[].class))).thenReturn(ApiFutures.immediateFuture(List.of(emptyBucket, emptyBucket)));
+        when(emptyBucket.exists()).thenReturn(false);
+        when(db.batch()).thenReturn(batch);
+        when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of()));
+
+        FirestoreBatchWriter writer = new FirestoreBatchWriter(db, 1, 0);
+        store.stage(List.of(
+                new TelemetryReading(null, "plant1", "user1", 20.0, 50.0, 40.0, "Healthy", hour + 1_000),
+                new TelemetryReading(null, "plant1", "user1", 24.0, 52.0, 30.0, "Healthy", hour + 61_000)
+        ), writer);
+        writer.commit();
+
+        verify(hourlyCollection, atLeastOnce()).document(SensorHistoryStore.bucketId("plant1", hour));
+        // Both new buckets are seeded by one read, not one blocking get per bucket
+        verify(db).getAll(any(DocumentReference[].class));
+        verify(bucketRef, never()).get();
+        verify(batch, times(2)).set(eq(bucketRef), argThat((Map<String, Object> data) ->
+                ((Map<?, ?>) data.get("min")).get("temperature").equals(20.0) &&
+                        ((Map<?, ?>) data.get("max")).get("temperature").equals(24.0)), any(SetOptions.class));
+    }
+
+    @Test
+    void chooseResolution_ShouldPickCoarsestResolutionWithinRequest() {
+        long day = TimeUnit.DAYS.toMillis(1);
+
+        assertEquals(Resolution.RAW, SensorHistoryStore.chooseResolution(0, day, Duration.ofMinutes(15)));
+        assertEquals(Resolution.HOUR, SensorHistoryStore.chooseResolution(0, day, Duration.ofHours(3)));
+        assertEquals(Resolution.DAY, SensorHistoryStore.chooseResolution(0, day, Duration.ofDays(7)));
+        assertEquals(Resolution.DAY, SensorHistoryStore.chooseResolution(0, 30 * day, null));
+        assertEquals(Resolution.RAW, SensorHistoryStore.chooseResolution(0, day / 4, null));
+    }
+
+    @Test
+    void getHistory_ShouldReportMissingStoredValuesAsNull_AndStayValidJson() throws Exception {
+        SensorHistoryStore store = new SensorHistoryStore(db);
+        long hour = TimeUnit.HOURS.toMillis(1000);
+        ownedPlantWithBuckets(hourlyCollection);
+        when(bucket.get("samples")).thenReturn(List.of(
+                Map.of("t", hour + 1_000, "temperature", 20.0, "humiditySoil", 40.0),
+                Map.of("temperature", 21.0, "humidityAir", 50.0, "humiditySoil", 41.0)));
+
+        HistoryResponse history = store.getHistory("user1", "plant1", hour, hour + 60_000, null);
+
+        // The sample without a timestamp is skipped, the missing air humidity is left out
+        assertEquals(1, history.points().size());
+        assertEquals(20.0, history.points().get(0).temperature().avg());
+        assertNull(history.points().get(0).humidityAir());
+        JsonNode json = new ObjectMapper().readTree(new ObjectMapper().writeValueAsString(history));
+        assertTrue(json.at("/points/0/humidityAir").isNull());
+    }
+
+    @Test
+    void getHistory_ShouldReportRollupsWithMissingSumsAsNull() throws Exception {
+        SensorHistoryStore store = new SensorHistoryStore(db);
+        long day = TimeUnit.DAYS.toMillis(100);
+        ownedPlantWithBuckets(dailyCollection);
+        when(bucket.getLong("count")).thenReturn(2L);
+        when(bucket.getLong("start")).thenReturn(day);
+        when(bucket.get("sum")).thenReturn(Map.of("temperature", 44.0, "humidityAir", 100.0));
+        when(bucket.get("min")).thenReturn(Map.of("temperature", 20.0, "humidityAir", 48.0, "humiditySoil", 30.0));
+        when(bucket.get("max")).thenReturn(Map.of("temperature", 24.0, "humidityAir", 52.0, "humiditySoil", 35.0));
+
+        HistoryResponse history = store.getHistory("user1", "plant1", day, day + TimeUnit.DAYS.toMillis(30), null);
+
+        assertEquals(22.0, history.points().get(0).temperature().avg());
+        assertNull(history.points().get(0).humiditySoil());
+        assertTrue(new ObjectMapper().readTree(new ObjectMapper().writeValueAsString(history)).at("/points/0/humiditySoil").isNull());
+    }
+
+    private void ownedPlantWithBuckets(CollectionReference collection) {
+        when(db.collection("user_plants")).thenReturn(plantsCollection);
+        when(plantsCollection.document("plant1")).thenReturn(plantRef);
+        when(plantRef.get()).thenReturn(ApiFutures.immediateFuture(plant));
+        when(plant.exists()).thenReturn(true);
+        when(plant.getString("ownerId")).thenReturn("user1");
+
+        String name = collection == hourlyCollection ? SensorHistoryStore.HOURLY_COLLECTION : SensorHistoryStore.DAILY_COLLECTION;
+        when(db.collection(name)).thenReturn(collection);
+        when(collection.whereEqualTo("plantId", "plant1")).thenReturn(bucketQuery);
+        when(bucketQuery.whereGreaterThanOrEqualTo(eq("start"), any())).thenReturn(bucketQuery);
+        when(bucketQuery.whereLessThanOrEqualTo(eq("start"), any())).thenReturn(bucketQuery);
+        when(bucketQuery.orderBy("start")).thenReturn(bucketQuery);
+        when(bucketQuery.get()).thenReturn(ApiFutures.immediateFuture(buckets));
+        when(buckets.getDocuments()).thenReturn(List.of(bucket));
+    }
+}
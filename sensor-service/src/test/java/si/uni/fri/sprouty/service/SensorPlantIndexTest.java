@@ -0,0 +1,82 @@
+package si.uni.fri.sprouty.service;
+
+import com.google.cloud.firestore.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import si.uni.fri.sprouty.dto.UserPlant;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SensorPlantIndexTest {
+
+    @Mock private Firestore db;
+    @Mock private CollectionReference plantsCollection;
+    @Mock private Query linkedPlants;
+
+    private SensorPlantIndex index;
+    private EventListener<QuerySnapshot> listener;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ArgumentCaptor<EventListener<QuerySnapshot>> captor = ArgumentCaptor.forClass(EventListener.class);
+        when(db.collection("user_plants")).thenReturn(plantsCollection);
+        when(plantsCollection.whereNotEqualTo("connectedSensorId", null)).thenReturn(linkedPlants);
+        when(linkedPlants.addSnapshotListener(captor.capture())).thenReturn(mock(ListenerRegistration.class));
+        index = new SensorPlantIndex(db);
+        index.start();
+        listener = captor.getValue();
+    }
+
+    @Test
+    void apply_ShouldKeepAMovedSensorBound_WhenItsOldPlantIsLaterRemoved() {
+        listener.onEvent(snapshot(change(DocumentChange.Type.ADDED, "plantA", "AABBCC")), null);
+        // The sensor is moved to plant B, then plant A is unlinked and deleted
+        listener.onEvent(snapshot(change(DocumentChange.Type.ADDED, "plantB", "AABBCC")), null);
+        listener.onEvent(snapshot(change(DocumentChange.Type.MODIFIED, "plantA", null)), null);
+        listener.onEvent(snapshot(change(DocumentChange.Type.REMOVED, "plantA", null)), null);
+
+        assertEquals("plantB", index.lookup("AABBCC").plantId());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void apply_ShouldUnbindTheOldSensor_WhenAPlantChangesSensor() {
+        listener.onEvent(snapshot(change(DocumentChange.Type.ADDED, "plantA", "AABBCC")), null);
+        listener.onEvent(snapshot(change(DocumentChange.Type.MODIFIED, "plantA", "DDEEFF")), null);
+
+        assertNull(index.lookup("AABBCC"));
+        assertEquals("plantA", index.lookup("DDEEFF").plantId());
+
+        listener.onEvent(snapshot(change(DocumentChange.Type.REMOVED, "plantA", null)), null);
+        assertEquals(0, index.size());
+    }
+
+    private static QuerySnapshot snapshot(DocumentChange change) {
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocumentChanges()).thenReturn(List.of(change));
+        return snapshot;
+    }
+
+    private static DocumentChange change(DocumentChange.Type type, String plantId, String sensorId) {
+        QueryDocumentSnapshot doc = mock(QueryDocumentSnapshot.class);
+        lenient().when(doc.getId()).thenReturn(plantId);
+        lenient().when(doc.getString("connectedSensorId")).thenReturn(sensorId);
+        UserPlant plant = new UserPlant();
+        plant.setConnectedSensorId(sensorId);
+        lenient().when(doc.toObject(UserPlant.class)).thenReturn(plant);
+        DocumentChange change = mock(DocumentChange.class);
+        when(change.getType()).thenReturn(type);
+        when(change.getDocument()).thenReturn(doc);
+        return change;
+    }
+}
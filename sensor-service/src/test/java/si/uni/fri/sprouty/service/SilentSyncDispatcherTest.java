@@ -0,0 +1,73 @@
+package si.uni.fri.sprouty.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.RestTemplate;
+import si.uni.fri.sprouty.dto.NotificationRequest;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SilentSyncDispatcherTest {
+
+    @Mock private RestTemplate restTemplate;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private SilentSyncDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) dispatcher.stop();
+    }
+
+    @Test
+    void request_ShouldCoalesceSyncsForSameUserWithinWindow() {
+        dispatcher = new SilentSyncDispatcher(restTemplate, registry, 100, 100, 1, false);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(dispatcher.request("user123"));
+        }
+        dispatcher.request("user456");
+
+        verify(restTemplate, timeout(2000).times(2)).postForEntity(anyString(), any(NotificationRequest.class), eq(String.class));
+        verify(restTemplate, times(1)).postForEntity(anyString(),
+                argThat((NotificationRequest r) -> "user123".equals(r.getUserId())), eq(String.class));
+        assertEquals(4.0, registry.get("sprouty.silent_sync").tag("outcome", "coalesced").counter().count());
+    }
+
+    @Test
+    void request_ShouldDropWhenTooManyUsersPending() {
+        dispatcher = new SilentSyncDispatcher(restTemplate, registry, 60_000, 2, 1, false);
+
+        assertTrue(dispatcher.request("a"));
+        assertTrue(dispatcher.request("b"));
+        assertFalse(dispatcher.request("c"));
+
+        assertEquals(2, dispatcher.pendingUsers());
+        assertEquals(1.0, registry.get("sprouty.silent_sync").tag("outcome", "dropped").counter().count());
+        verifyNoInteractions(restTemplate);
+    }
+
+    @Test
+    void send_ShouldRunOnVirtualThreadWhenEnabled() throws Exception {
+        dispatcher = new SilentSyncDispatcher(restTemplate, registry, 10, 100, 1, true);
+        CompletableFuture<Boolean> virtual = new CompletableFuture<>();
+        when(restTemplate.postForEntity(anyString(), any(NotificationRequest.class), eq(String.class))).thenAnswer(invocation -> {
+            virtual.complete(Thread.currentThread().isVirtual());
+            return null;
+        });
+
+        dispatcher.request("user123");
+
+        assertTrue(virtual.get(2, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,70 @@
+package si.uni.fri.sprouty.service;
+
+import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Bucket;
+import com.google.cloud.storage.Storage;
+import com.google.firebase.cloud.StorageClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StreamingImageUploaderTest {
+
+    @Mock private StorageClient storageClient;
+    @Mock private Bucket bucket;
+    @Mock private Storage storage;
+    @Mock private WriteChannel writeChannel;
+
+    @Test
+    void upload_ShouldStreamContentInChunksAndReturnBufferToPool() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        StreamingImageUploader uploader = new StreamingImageUploader(storageClient, registry, "test-bucket", 1024, 1, 100);
+
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        when(storageClient.bucket("test-bucket")).thenReturn(bucket);
+        when(bucket.getStorage()).thenReturn(storage);
+        when(storage.writer(any(BlobInfo.class))).thenReturn(writeChannel);
+        when(writeChannel.write(any(ByteBuffer.class))).thenAnswer(invocation -> {
+            ByteBuffer chunk = invocation.getArgument(0);
+            int length = chunk.remaining();
+            received.write(chunk.array(), chunk.position(), length);
+            chunk.position(chunk.limit());
+            return length;
+        });
+        when(storage.signUrl(any(BlobInfo.class), eq(365L), eq(TimeUnit.DAYS)))
+                .thenReturn(URI.create("https://storage.example/test.jpg").toURL());
+
+        byte[] image = new byte[5000];
+        new Random(7).nextBytes(image);
+
+        // Two uploads in a row succeed with a pool of one, so the buffer was returned
+        for (int i = 0; i < 2; i++) {
+            received.reset();
+            String url = uploader.upload(new ByteArrayInputStream(image), "sensors/mac/1.jpg", "image/jpeg");
+            assertEquals("https://storage.example/test.jpg", url);
+            assertArrayEquals(image, received.toByteArray());
+        }
+
+        verify(writeChannel, times(10)).write(any(ByteBuffer.class));
+        assertEquals(2, registry.get("sprouty.image.upload.size").summary().count());
+        assertEquals(0.0, registry.get("sprouty.image.upload.buffers.in_use").gauge().value());
+        // Each upload ran alone, so one chunk was checked out while it streamed
+        assertEquals(2, registry.get("sprouty.image.upload.buffer_heap").summary().count());
+        assertEquals(1024.0, registry.get("sprouty.image.upload.buffer_heap").summary().max());
+    }
+}
@@ -0,0 +1,109 @@
+package si.uni.fri.sprouty.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class TelemetryFrameDecoderTest {
+
+    @Test
+    void frames_ShouldReadEveryFrameInBody() {
+        ByteBuffer body = ByteBuffer.allocate(2 * TelemetryFrameDecoder.FRAME_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        writeFrame(body, 0xAABBCCDDEEFFL, 1_718_000_000_000L, -5.25, 60.5, 45.0);
+        writeFrame(body, 0x001122334455L, 0, 22.1, 655.35, 0.0);
+        body.flip();
+
+        SensorReadings frames = TelemetryFrameDecoder.frames(body);
+        List<String> decoded = new ArrayList<>();
+        for (int i = 0; i < frames.size(); i++) {
+            decoded.add(frames.sensorId(i) + "|" + frames.timestamp(i) + "|" + frames.temperature(i) + "|"
+                    + frames.humidityAir(i) + "|" + frames.humiditySoil(i));
+        }
+
+        assertEquals(2, frames.size());
+        assertEquals("AABBCCDDEEFF|1718000000000|-5.25|60.5|45.0", decoded.get(0));
+        assertEquals("001122334455|0|22.1|655.35|0.0", decoded.get(1));
+    }
+
+    @Test
+    void frames_ShouldReadEachFieldInPlace() {
+        ByteBuffer body = ByteBuffer.allocate(3 * TelemetryFrameDecoder.FRAME_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        writeFrame(body, 0xAABBCCDDEEFFL, 1_718_000_000_000L, -5.25, 60.5, 45.0);
+        writeFrame(body, 0xAABBCCDDEEFFL, 1_718_000_060_000L, 21.0, 61.0, 44.0);
+        writeFrame(body, 0x001122334455L, 0, 22.1, 655.35, 0.0);
+        body.flip();
+
+        SensorReadings frames = TelemetryFrameDecoder.frames(body);
+
+        assertEquals(3, frames.size());
+        assertEquals("001122334455", frames.sensorId(2));
+        assertEquals(655.35, frames.humidityAir(2));
+        assertEquals(0L, frames.timestamp(2));
+        assertEquals(-5.25, frames.temperature(0));
+        assertEquals(44.0, frames.humiditySoil(1));
+        assertEquals(1_718_000_060_000L, frames.timestamp(1));
+        // Consecutive frames of one sensor share its formatted ID
+        assertSame(frames.sensorId(0), frames.sensorId(1));
+        assertThrows(IllegalArgumentException.class, () -> TelemetryFrameDecoder.frames(ByteBuffer.allocate(TelemetryFrameDecoder.FRAME_SIZE - 1)));
+    }
+
+    @Test
+    void frames_ShouldNotAllocatePerFrame() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        // A full replayed buffer from one sensor
+        int frameCount = SensorService.MAX_BATCH_READINGS;
+        ByteBuffer body = ByteBuffer.allocate(frameCount * TelemetryFrameDecoder.FRAME_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < frameCount; i++) {
+            writeFrame(body, 0xAABBCCDDEEFFL, 1_718_000_000_000L + i, 20.0, 55.0, 40.0);
+        }
+        body.flip();
+        int rounds = 200;
+        readAll(body, rounds);
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        double sum = readAll(body, rounds);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertTrue(sum > 0);
+        // One view and one formatted sensor ID per body, nothing per frame
+        assertTrue(allocated < (long) rounds * frameCount, "reading " + rounds * frameCount + " frames allocated " + allocated + " bytes");
+    }
+
+    private static double readAll(ByteBuffer body, int rounds) {
+        double sum = 0;
+        for (int round = 0; round < rounds; round++) {
+            SensorReadings frames = TelemetryFrameDecoder.frames(body.duplicate());
+            for (int i = 0; i < frames.size(); i++) {
+                sum += frames.sensorId(i).length() + frames.temperature(i) + frames.humidityAir(i)
+                        + frames.humiditySoil(i) + frames.timestamp(i);
+            }
+        }
+        return sum;
+    }
+
+    @Test
+    void frames_ShouldRejectPartialFrames() {
+        ByteBuffer body = ByteBuffer.allocate(TelemetryFrameDecoder.FRAME_SIZE + 3);
+
+        assertThrows(IllegalArgumentException.class, () -> TelemetryFrameDecoder.frames(body));
+        assertThrows(IllegalArgumentException.class, () -> TelemetryFrameDecoder.frames(ByteBuffer.allocate(0)));
+    }
+
+    private static void writeFrame(ByteBuffer buffer, long mac, long timestamp, double temperature, double humidityAir, double humiditySoil) {
+        for (int shift = 40; shift >= 0; shift -= 8) {
+            buffer.put((byte) (mac >>> shift));
+        }
+        buffer.putLong(timestamp);
+        buffer.putShort((short) Math.round(temperature * 100));
+        buffer.putShort((short) Math.round(humidityAir * 100));
+        buffer.putShort((short) Math.round(humiditySoil * 100));
+    }
+}
@@ -0,0 +1,173 @@
+package si.uni.fri.sprouty.service;
+
+import com.google.api.core.ApiFutures;
+import com.google.api.core.SettableApiFuture;
+import com.google.cloud.firestore.*;
+import io.grpc.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import si.uni.fri.sprouty.service.TelemetryPipeline.TelemetryReading;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TelemetryPipelineTest {
+
+    @Mock private Firestore db;
+    @Mock private WriteBatch batch;
+    @Mock private SensorHistoryStore historyStore;
+    @Mock private DocumentReference plantA;
+    @Mock private DocumentReference plantB;
+    @Mock private CollectionReference viewsCollection;
+    @Mock private DocumentReference viewRef;
+
+    private TelemetryPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        pipeline = new TelemetryPipeline(db, historyStore, 100, 10, 1000, 10, 1000, 2, 1);
+
+        when(db.batch()).thenReturn(batch);
+        when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of()));
+        when(db.collection("garden_views")).thenReturn(viewsCollection);
+        when(viewsCollection.document("owner")).thenReturn(viewRef);
+    }
+
+    @Test
+    void flush_ShouldWriteLatestReadingPerPlantAndEveryReadingToHistory() {
+        List<TelemetryReading> readings = List.of(
+                new TelemetryReading(plantA, "a", "owner", 20.0, 50.0, 40.0, "Healthy", 1000),
+                new TelemetryReading(plantA, "a", "owner", 21.0, 51.0, 10.0, "Thirsty", 2000),
+                new TelemetryReading(plantB, "b", "owner", 18.0, 60.0, 55.0, "Healthy", 1500)
+        );
+
+        pipeline.flush(readings);
+
+        verify(batch).update(eq(plantA), argThat((Map<String, Object> map) ->
+                map.get("healthStatus").equals("Thirsty") && map.get("lastSeen").equals(2000L)));
+        verify(batch).update(eq(plantB), anyMap());
+        // Each plant update is mirrored into the owner's garden view in the same batch
+        verify(batch, times(2)).set(eq(viewRef), anyMap(), any(SetOptions.class));
+        verify(historyStore).stage(eq(readings), any());
+        verify(batch, times(1)).commit();
+    }
+
+    @Test
+    void flush_ShouldSplitIntoBatchesOfAtMost500Operations_KeepingEachPlantWithItsView() {
+        List<TelemetryReading> readings = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            readings.add(new TelemetryReading(plantA, "plant-" + i, "owner", 20.0, 50.0, 40.0, "Healthy", i));
+        }
+
+        pipeline.flush(readings);
+
+        // 600 plant updates and their 600 view entries need three batches of 250 plants at most
+        verify(db, times(3)).batch();
+        verify(batch, times(3)).commit();
+        verify(batch, times(600)).set(eq(viewRef), anyMap(), any(SetOptions.class));
+    }
+
+    @Test
+    void flush_ShouldNotWriteHistoryOnlyReadingsToPlant() {
+        List<TelemetryReading> readings = List.of(
+                new TelemetryReading(plantA, "a", "owner", 20.0, 50.0, 40.0, null, 3000),
+                new TelemetryReading(plantA, "a", "owner", 21.0, 51.0, 35.0, "Healthy", 2000)
+        );
+
+        pipeline.flush(readings);
+
+        verify(batch).update(eq(plantA), argThat((Map<String, Object> map) -> map.get("lastSeen").equals(2000L)));
+        verify(historyStore).stage(eq(readings), any());
+    }
+
+    @Test
+    void flush_ShouldDropADeletedPlantAndResendTheRestOfTheBatch() {
+        DocumentSnapshot existing = mock(DocumentSnapshot.class);
+        DocumentSnapshot deleted = mock(DocumentSnapshot.class);
+        when(existing.exists()).thenReturn(true);
+        when(deleted.exists()).thenReturn(false);
+        when(deleted.getReference()).thenReturn(plantB);
+        when(db.getAll(plantA, plantB)).thenReturn(ApiFutures.immediateFuture(List.of(existing, deleted)));
+        when(batch.commit()).thenReturn(
+                ApiFutures.immediateFailedFuture(Status.NOT_FOUND.asRuntimeException()),
+                ApiFutures.immediateFuture(List.of()));
+
+        pipeline.flush(List.of(
+                new TelemetryReading(plantA, "a", "owner", 20.0, 50.0, 40.0, "Healthy", 1000),
+                new TelemetryReading(plantB, "b", "owner", 18.0, 60.0, 55.0, "Healthy", 1500)));
+
+        // Plant a is written again without the deleted plant b
+        verify(batch, times(2)).update(eq(plantA), anyMap());
+        verify(batch, times(1)).update(eq(plantB), anyMap());
+        verify(batch, times(2)).commit();
+    }
+
+    @Test
+    void flush_ShouldRetryTransientFailures_AndDeferTheBatchToTheNextFlush() {
+        when(batch.commit()).thenReturn(
+                ApiFutures.immediateFailedFuture(Status.UNAVAILABLE.asRuntimeException()),
+                ApiFutures.immediateFailedFuture(Status.UNAVAILABLE.asRuntimeException()),
+                ApiFutures.immediateFuture(List.of()));
+
+        pipeline.flush(List.of(new TelemetryReading(plantA, "a", "owner", 20.0, 50.0, 40.0, "Healthy", 1000)));
+        verify(batch, times(2)).commit();
+
+        // Nothing new arrived, the deferred batch is sent on its own
+        pipeline.flush(List.of());
+        verify(batch, times(3)).commit();
+        verify(batch, times(3)).update(eq(plantA), anyMap());
+
+        pipeline.flush(List.of());
+        verify(batch, times(3)).commit();
+    }
+
+    @Test
+    void stop_ShouldFlushEveryAcceptedReading_AndRejectLaterOnes() {
+        TelemetryPipeline pipeline = new TelemetryPipeline(db, historyStore, 100, 10, 50, 10, 5000, 2, 1);
+        pipeline.start();
+        assertTrue(pipeline.submit(new TelemetryReading(plantA, "a", "owner", 20.0, 50.0, 40.0, "Healthy", 1000)));
+
+        pipeline.stop();
+
+        assertFalse(pipeline.submit(new TelemetryReading(plantB, "b", "owner", 18.0, 60.0, 55.0, "Healthy", 1500)));
+        assertFalse(pipeline.tryOffer(new TelemetryReading(plantB, "b", "owner", 18.0, 60.0, 55.0, "Healthy", 1500)));
+        assertEquals(0, pipeline.pending());
+        verify(batch).update(eq(plantA), anyMap());
+        verify(batch).commit();
+    }
+
+    @Test
+    void submitAll_ShouldQueueAWholeGroupOrNothing() throws Exception {
+        // Capacity 3, and a flusher held inside its first commit so nothing leaves the queue meanwhile
+        TelemetryPipeline pipeline = new TelemetryPipeline(db, historyStore, 3, 1, 1000, 10, 5000, 1, 1);
+        SettableApiFuture<List<WriteResult>> stalled = SettableApiFuture.create();
+        when(batch.commit()).thenReturn(stalled, ApiFutures.immediateFuture(List.of()));
+        pipeline.start();
+        assertTrue(pipeline.submit(new TelemetryReading(plantA, "a", "owner", 20.0, 50.0, 40.0, "Healthy", 1000)));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pipeline.pending() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        TelemetryReading reading = new TelemetryReading(plantB, "b", "owner", 18.0, 60.0, 55.0, "Healthy", 1500);
+        assertTrue(pipeline.submitAll(List.of(reading, reading)));
+        assertFalse(pipeline.submitAll(List.of(reading, reading)));
+        assertEquals(2, pipeline.pending());
+        // The rejected group left its slot free
+        assertTrue(pipeline.tryOffer(reading));
+        assertFalse(pipeline.tryOffer(reading));
+
+        stalled.set(List.of());
+        pipeline.stop();
+        assertEquals(0, pipeline.pending());
+    }
+}
@@ -0,0 +1,124 @@
+package si.uni.fri.sprouty.care;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.ListenerRegistration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import si.uni.fri.sprouty.dto.MasterPlant;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Bounded cache of compiled {@link SpeciesThresholds}, keyed by master_plants document ID.
+ * A snapshot listener on master_plants evicts entries whenever a species is added, edited or removed.
+ * Concurrent misses share one read, which is waited on outside Caffeine's map locks so a virtual thread
+ * waiting for it unmounts instead of pinning its carrier.
+ */
+public class SpeciesThresholdCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpeciesThresholdCache.class);
+    private static final String MASTER_PLANTS_COLLECTION = "master_plants";
+
+    private final Firestore db;
+    private final AsyncCache<String, SpeciesThresholds> cache;
+    private ListenerRegistration registration;
+
+    public SpeciesThresholdCache(Firestore db, long maximumSize) {
+        this.db = db;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .buildAsync();
+    }
+
+    public void start() {
+        try {
+            registration = db.collection(MASTER_PLANTS_COLLECTION).addSnapshotListener((snapshot, error) -> {
+                if (error != null) {
+                    // Without invalidation events the cache could serve stale thresholds indefinitely
+                    logger.error("Species threshold listener failed, clearing cache: {}", error.getMessage());
+                    cache.synchronous().invalidateAll();
+                    return;
+                }
+                if (snapshot == null) return;
+                for (DocumentChange change : snapshot.getDocumentChanges()) {
+                    cache.synchronous().invalidate(change.getDocument().getId());
+                }
+            });
+        } catch (Exception e) {
+            logger.warn("Species threshold cache could not subscribe to master_plants: {}", e.getMessage());
+        }
+    }
+
+    public void stop() {
+        if (registration != null) registration.remove();
+    }
+
+    public SpeciesThresholds get(String speciesId) {
+        if (speciesId == null) return SpeciesThresholds.unknown(null);
+        try {
+            return load(speciesId).join();
+        } catch (CompletionException e) {
+            throw (e.getCause() instanceof IllegalStateException failed) ? failed :
+                    new IllegalStateException("Failed to load species " + speciesId, e.getCause());
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #get}: a hit completes immediately, a miss completes
+     * on the Firestore callback thread once the species document arrives. Each caller gets
+     * its own copy, so cancelling it leaves the shared read alone.
+     */
+    public CompletableFuture<SpeciesThresholds> getAsync(String speciesId) {
+        if (speciesId == null) return CompletableFuture.completedFuture(SpeciesThresholds.unknown(null));
+        return load(speciesId).copy();
+    }
+
+    public void invalidate(String speciesId) {
+        cache.synchronous().invalidate(speciesId);
+    }
+
+    private CompletableFuture<SpeciesThresholds> load(String speciesId) {
+        CompletableFuture<SpeciesThresholds> cached = cache.getIfPresent(speciesId);
+        if (cached != null) return cached;
+
+        CompletableFuture<SpeciesThresholds> pending = new CompletableFuture<>();
+        CompletableFuture<SpeciesThresholds> existing = cache.asMap().putIfAbsent(speciesId, pending);
+        if (existing != null) return existing;
+
+        try {
+            ApiFutures.addCallback(db.collection(MASTER_PLANTS_COLLECTION).document(speciesId).get(), new ApiFutureCallback<>() {
+                @Override
+                public void onSuccess(DocumentSnapshot doc) {
+                    try {
+                        // An invalidation while the read was in flight already removed pending from the cache,
+                        // so a stale result only answers the callers that were waiting and is never cached
+                        pending.complete(SpeciesThresholds.compile(speciesId, doc.toObject(MasterPlant.class)));
+                    } catch (Exception e) {
+                        fail(speciesId, pending, new IllegalStateException("Failed to load species " + speciesId, e));
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    fail(speciesId, pending, new IllegalStateException("Failed to load species " + speciesId, t));
+                }
+            }, Runnable::run);
+        } catch (RuntimeException e) {
+            fail(speciesId, pending, new IllegalStateException("Failed to load species " + speciesId, e));
+        }
+        return pending;
+    }
+
+    /** Failed reads are not cached; the next lookup tries again. */
+    private void fail(String speciesId, CompletableFuture<SpeciesThresholds> pending, Exception e) {
+        cache.asMap().remove(speciesId, pending);
+        pending.completeExceptionally(e);
+    }
+}
@@ -0,0 +1,73 @@
+package si.uni.fri.sprouty.care;
+
+import si.uni.fri.sprouty.dto.MasterPlant;
+
+/**
+ * Care thresholds of a species, parsed once from its master_plants document.
+ * Missing or malformed ranges are stored as NaN, which makes every comparison
+ * against them false, so evaluation needs no branches or allocations for them.
+ */
+public record SpeciesThresholds(
+        String speciesId,
+        boolean known,
+        double minSoil,
+        double maxSoil,
+        double minAir,
+        double maxAir,
+        int minT,
+        int maxT
+) {
+    public static final String HEALTHY = "Healthy";
+    public static final String UNKNOWN = "Unknown";
+
+    public static SpeciesThresholds unknown(String speciesId) {
+        return new SpeciesThresholds(speciesId, false, Double.NaN, Double.NaN, Double.NaN, Double.NaN, 0, 0);
+    }
+
+    public static SpeciesThresholds compile(String speciesId, MasterPlant master) {
+        if (master == null) return unknown(speciesId);
+        double[] soil = parseRange(master.getSoilH());
+        double[] air = parseRange(master.getAirH());
+        return new SpeciesThresholds(speciesId, true, soil[0], soil[1], air[0], air[1], master.getMinT(), master.getMaxT());
+    }
+
+    /**
+     * Maps a single reading to a health status. Returns one of the status constants, never allocates.
+     */
+    public String evaluate(double temp, double humSoil, double humAir) {
+        if (!known) return UNKNOWN;
+        if (temp <= 0.0) return "Freezing Risk";
+
+        if (humSoil < (minSoil - 15)) return "Thirsty";
+        if (humSoil > (maxSoil + 15)) return "Overwatered";
+
+        if (temp < (minT - 5)) return "Too Cold";
+        if (temp > (maxT + 5)) return "Too Hot";
+
+        if (humAir < (minAir - 20)) return "Dry Air";
+        if (humAir > (maxAir + 20)) return "Too Humid";
+
+        return HEALTHY;
+    }
+
+    /**
+     * Minimum soil moisture for the species, or the fallback when the species has no usable range.
+     */
+    public double dryThreshold(double fallback) {
+        return Double.isNaN(minSoil) ? fallback : minSoil;
+    }
+
+    private static double[] parseRange(String range) {
+        if (range == null || range.isBlank()) return new double[]{Double.NaN, Double.NaN};
+        int comma = range.indexOf(',');
+        if (comma < 0) return new double[]{Double.NaN, Double.NaN};
+        try {
+            return new double[]{
+                    Double.parseDouble(range.substring(0, comma).trim()),
+                    Double.parseDouble(range.substring(comma + 1).trim())
+            };
+        } catch (NumberFormatException e) {
+            return new double[]{Double.NaN, Double.NaN};
+        }
+    }
+}
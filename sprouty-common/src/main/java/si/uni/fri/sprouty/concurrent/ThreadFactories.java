@@ -0,0 +1,22 @@
+package si.uni.fri.sprouty.concurrent;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Thread factories for the services' internal executors. When the service runs with
+ * spring.threads.virtual.enabled, executors that block on I/O pass virtual = true so their
+ * tasks unmount while waiting instead of holding a platform thread.
+ */
+public final class ThreadFactories {
+
+    private ThreadFactories() {}
+
+    /**
+     * Threads named prefix-1, prefix-2, ...; platform threads are daemons so they never hold up shutdown.
+     */
+    public static ThreadFactory named(String prefix, boolean virtual) {
+        return virtual
+                ? Thread.ofVirtual().name(prefix + "-", 1).factory()
+                : Thread.ofPlatform().name(prefix + "-", 1).daemon(true).factory();
+    }
+}
@@ -0,0 +1,90 @@
+package si.uni.fri.sprouty.concurrent;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streams the JFR jdk.VirtualThreadPinned event, which fires when a virtual thread blocks while it
+ * cannot unmount from its carrier (typically inside a synchronized block or a native frame) for
+ * longer than the threshold. Each pin is recorded as sprouty.virtual_threads.pinned, tagged with the
+ * first application frame on the stack, and the first pin from each site is logged with its stack.
+ */
+public class VirtualThreadPinningMonitor implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+    private static final String APPLICATION_PACKAGE = "si.uni.fri.sprouty.";
+    private static final int MAX_LOGGED_SITES = 256;
+
+    private final MeterRegistry meterRegistry;
+    private final Duration threshold;
+    private final Set<String> loggedSites = ConcurrentHashMap.newKeySet();
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry, Duration threshold) {
+        this.meterRegistry = meterRegistry;
+        this.threshold = threshold;
+    }
+
+    public void start() {
+        try {
+            stream = new RecordingStream();
+            stream.enable(EVENT).withThreshold(threshold).withStackTrace();
+            stream.onEvent(EVENT, this::onPinned);
+            stream.startAsync();
+            logger.info("Watching for virtual thread pinning longer than {} ms", threshold.toMillis());
+        } catch (Exception e) {
+            logger.warn("Virtual thread pinning monitor could not start: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (stream != null) stream.close();
+    }
+
+    private void onPinned(RecordedEvent event) {
+        String site = applicationFrame(event.getStackTrace());
+        Timer.builder("sprouty.virtual_threads.pinned")
+                .description("Time virtual threads spent blocked while pinned to their carrier")
+                .tag("site", site)
+                .register(meterRegistry)
+                .record(event.getDuration());
+
+        if (loggedSites.size() < MAX_LOGGED_SITES && loggedSites.add(site)) {
+            logger.warn("Virtual thread pinned for {} ms at {}; replace synchronized with a ReentrantLock there:\n{}",
+                    event.getDuration().toMillis(), site, stack(event.getStackTrace()));
+        }
+    }
+
+    private static String applicationFrame(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) return "unknown";
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (type.startsWith(APPLICATION_PACKAGE)) {
+                return type.substring(type.lastIndexOf('.') + 1) + "." + frame.getMethod().getName();
+            }
+        }
+        return "library";
+    }
+
+    private static String stack(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) return "  (no stack trace)";
+        StringBuilder out = new StringBuilder();
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            out.append("  at ").append(frame.getMethod().getType().getName()).append('.')
+                    .append(frame.getMethod().getName()).append(':').append(frame.getLineNumber()).append('\n');
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,87 @@
+package si.uni.fri.sprouty.coordination;
+
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Replicas of one service that split a fixed set of partitions between them.
+ * Each replica heartbeats into locks/{group}/members, and a member that missed its heartbeats for
+ * the TTL drops out. Partitions are assigned by rendezvous hashing over the live members, so every
+ * replica computes the same assignment without further coordination; for a short time after a
+ * membership change two replicas can disagree, so owners must tolerate brief overlap.
+ */
+public class ClusterMembership {
+
+    private final Firestore db;
+    private final String group;
+    private final Duration ttl;
+    private final String memberId = UUID.randomUUID().toString();
+
+    public ClusterMembership(Firestore db, String group, Duration ttl) {
+        this.db = db;
+        this.group = group;
+        this.ttl = ttl;
+    }
+
+    public String memberId() {
+        return memberId;
+    }
+
+    /**
+     * Records this replica's heartbeat and returns the live members, this one included.
+     */
+    public List<String> heartbeat() throws Exception {
+        long now = System.currentTimeMillis();
+        CollectionReference members = members();
+        members.document(memberId).set(Map.of("heartbeat", now)).get();
+
+        List<String> live = new ArrayList<>();
+        for (QueryDocumentSnapshot member : members.whereGreaterThan("heartbeat", now - ttl.toMillis()).get().get().getDocuments()) {
+            live.add(member.getId());
+        }
+        if (!live.contains(memberId)) live.add(memberId);
+        return live;
+    }
+
+    /**
+     * Leaving promptly lets the other replicas take over this one's partitions on their next heartbeat.
+     */
+    public void leave() throws Exception {
+        members().document(memberId).delete().get();
+    }
+
+    /**
+     * Rendezvous hashing: each partition goes to the member with the highest score for it, so a member
+     * joining or leaving only moves the partitions it gains or loses.
+     */
+    public static Set<Integer> partitionsOwnedBy(String member, Collection<String> members, int partitions) {
+        Set<Integer> owned = new HashSet<>();
+        for (int partition = 0; partition < partitions; partition++) {
+            String winner = null;
+            long best = 0;
+            for (String candidate : members) {
+                long score = mix(candidate.hashCode() * 31L + partition);
+                if (winner == null || score > best || (score == best && candidate.compareTo(winner) < 0)) {
+                    winner = candidate;
+                    best = score;
+                }
+            }
+            if (member.equals(winner)) owned.add(partition);
+        }
+        return owned;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private CollectionReference members() {
+        return db.collection("locks").document(group).collection("members");
+    }
+}
@@ -0,0 +1,133 @@
+package si.uni.fri.sprouty.coordination;
+
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Transaction;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link LeaseStore} backed by one Firestore document per lease name, updated in transactions.
+ * Fields: owner, token, expiresAt, checkpoint and lastCompleted (epoch millis).
+ * Expiry is judged by the caller's clock, so replicas need roughly synchronized clocks; keep lease
+ * TTLs well above the expected skew.
+ */
+public class FirestoreLeaseStore implements LeaseStore {
+
+    private final Firestore db;
+    private final String collection;
+    private final LongSupplier clock;
+
+    public FirestoreLeaseStore(Firestore db, String collection) {
+        this(db, collection, System::currentTimeMillis);
+    }
+
+    public FirestoreLeaseStore(Firestore db, String collection, LongSupplier clock) {
+        this.db = db;
+        this.collection = collection;
+        this.clock = clock;
+    }
+
+    @Override
+    public Optional<Lease> tryAcquire(String name, String owner, Duration ttl, long completedAfter) {
+        DocumentReference ref = db.collection(collection).document(name);
+        return transact(transaction -> {
+            DocumentSnapshot doc = transaction.get(ref).get();
+            long now = clock.getAsLong();
+            Long lastCompleted = doc.exists() ? doc.getLong("lastCompleted") : null;
+            if (lastCompleted != null && lastCompleted > completedAfter) return Optional.empty();
+
+            String holder = doc.exists() ? doc.getString("owner") : null;
+            Long expiresAt = doc.exists() ? doc.getLong("expiresAt") : null;
+            if (holder != null && !holder.equals(owner) && expiresAt != null && expiresAt > now) return Optional.empty();
+
+            Long previous = doc.exists() ? doc.getLong("token") : null;
+            long token = (previous != null ? previous : 0L) + 1;
+            String checkpoint = doc.exists() ? doc.getString("checkpoint") : null;
+
+            Map<String, Object> fields = new HashMap<>();
+            fields.put("owner", owner);
+            fields.put("token", token);
+            fields.put("expiresAt", now + ttl.toMillis());
+            fields.put("checkpoint", checkpoint);
+            fields.put("lastCompleted", lastCompleted);
+            transaction.set(ref, fields);
+            return Optional.of(new Lease(name, owner, token, now + ttl.toMillis(), checkpoint));
+        });
+    }
+
+    @Override
+    public Optional<Lease> renew(Lease lease, Duration ttl) {
+        return update(lease, ttl, false, null);
+    }
+
+    @Override
+    public Optional<Lease> checkpoint(Lease lease, String checkpoint, Duration ttl) {
+        return update(lease, ttl, true, checkpoint);
+    }
+
+    @Override
+    public boolean complete(Lease lease) {
+        DocumentReference ref = db.collection(collection).document(lease.name());
+        return transact(transaction -> {
+            if (!isCurrent(transaction.get(ref).get(), lease)) return false;
+            Map<String, Object> fields = new HashMap<>();
+            fields.put("owner", null);
+            fields.put("expiresAt", 0L);
+            fields.put("checkpoint", null);
+            fields.put("lastCompleted", clock.getAsLong());
+            transaction.update(ref, fields);
+            return true;
+        });
+    }
+
+    @Override
+    public void release(Lease lease) {
+        DocumentReference ref = db.collection(collection).document(lease.name());
+        transact(transaction -> {
+            if (!isCurrent(transaction.get(ref).get(), lease)) return false;
+            Map<String, Object> fields = new HashMap<>();
+            fields.put("owner", null);
+            fields.put("expiresAt", 0L);
+            transaction.update(ref, fields);
+            return true;
+        });
+    }
+
+    private Optional<Lease> update(Lease lease, Duration ttl, boolean saveCheckpoint, String checkpoint) {
+        DocumentReference ref = db.collection(collection).document(lease.name());
+        return transact(transaction -> {
+            DocumentSnapshot doc = transaction.get(ref).get();
+            if (!isCurrent(doc, lease)) return Optional.empty();
+
+            long expiresAt = clock.getAsLong() + ttl.toMillis();
+            Map<String, Object> fields = new HashMap<>();
+            fields.put("expiresAt", expiresAt);
+            if (saveCheckpoint) fields.put("checkpoint", checkpoint);
+            transaction.update(ref, fields);
+            return Optional.of(lease.withExpiry(expiresAt, saveCheckpoint ? checkpoint : doc.getString("checkpoint")));
+        });
+    }
+
+    private static boolean isCurrent(DocumentSnapshot doc, Lease lease) {
+        Long token = doc.exists() ? doc.getLong("token") : null;
+        return token != null && token == lease.token() && lease.owner().equals(doc.getString("owner"));
+    }
+
+    private <T> T transact(Transaction.Function<T> function) {
+        try {
+            return db.runTransaction(function).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while updating lease", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Lease transaction failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+}
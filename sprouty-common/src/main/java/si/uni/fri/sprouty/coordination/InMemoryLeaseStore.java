@@ -0,0 +1,100 @@
+package si.uni.fri.sprouty.coordination;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Single-process {@link LeaseStore}, for tests and for running one replica without Firestore.
+ */
+public class InMemoryLeaseStore implements LeaseStore {
+
+    private record Entry(String owner, long token, long expiresAt, String checkpoint, Long lastCompleted) {}
+
+    private final LongSupplier clock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    public InMemoryLeaseStore() {
+        this(System::currentTimeMillis);
+    }
+
+    public InMemoryLeaseStore(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public Optional<Lease> tryAcquire(String name, String owner, Duration ttl, long completedAfter) {
+        lock.lock();
+        try {
+            long now = clock.getAsLong();
+            Entry entry = entries.get(name);
+            if (entry != null) {
+                if (entry.lastCompleted() != null && entry.lastCompleted() > completedAfter) return Optional.empty();
+                if (entry.owner() != null && !entry.owner().equals(owner) && entry.expiresAt() > now) return Optional.empty();
+            }
+            long token = entry != null ? entry.token() + 1 : 1;
+            String checkpoint = entry != null ? entry.checkpoint() : null;
+            entries.put(name, new Entry(owner, token, now + ttl.toMillis(), checkpoint, entry != null ? entry.lastCompleted() : null));
+            return Optional.of(new Lease(name, owner, token, now + ttl.toMillis(), checkpoint));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Lease> renew(Lease lease, Duration ttl) {
+        return update(lease, ttl, false, null);
+    }
+
+    @Override
+    public Optional<Lease> checkpoint(Lease lease, String checkpoint, Duration ttl) {
+        return update(lease, ttl, true, checkpoint);
+    }
+
+    @Override
+    public boolean complete(Lease lease) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(lease.name());
+            if (!isCurrent(entry, lease)) return false;
+            entries.put(lease.name(), new Entry(null, entry.token(), 0, null, clock.getAsLong()));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void release(Lease lease) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(lease.name());
+            if (!isCurrent(entry, lease)) return;
+            entries.put(lease.name(), new Entry(null, entry.token(), 0, entry.checkpoint(), entry.lastCompleted()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Optional<Lease> update(Lease lease, Duration ttl, boolean saveCheckpoint, String checkpoint) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(lease.name());
+            if (!isCurrent(entry, lease)) return Optional.empty();
+            long expiresAt = clock.getAsLong() + ttl.toMillis();
+            String saved = saveCheckpoint ? checkpoint : entry.checkpoint();
+            entries.put(lease.name(), new Entry(entry.owner(), entry.token(), expiresAt, saved, entry.lastCompleted()));
+            return Optional.of(lease.withExpiry(expiresAt, saved));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean isCurrent(Entry entry, Lease lease) {
+        return entry != null && entry.token() == lease.token() && lease.owner().equals(entry.owner());
+    }
+}
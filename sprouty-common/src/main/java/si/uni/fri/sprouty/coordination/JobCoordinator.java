@@ -0,0 +1,147 @@
+package si.uni.fri.sprouty.coordination;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs periodic jobs split into partitions, each guarded by its own lease, so any number of replicas
+ * share the work: every replica walks the partitions from a random offset and processes the ones it can
+ * lease. A partition counts as done for minInterval after it completes. One that failed, or whose holder
+ * died, is picked up by the next run on any replica once its lease is released or expires, starting from
+ * its last checkpoint.
+ */
+public class JobCoordinator {
+
+    /** minInterval for a job that should complete once and never run again. */
+    public static final Duration ONCE = ChronoUnit.FOREVER.getDuration();
+
+    private static final Logger logger = LoggerFactory.getLogger(JobCoordinator.class);
+
+    private final LeaseStore store;
+    private final String owner;
+    private final Duration leaseTtl;
+    private final LongSupplier clock;
+
+    public JobCoordinator(LeaseStore store, Duration leaseTtl) {
+        this(store, UUID.randomUUID().toString(), leaseTtl, System::currentTimeMillis);
+    }
+
+    public JobCoordinator(LeaseStore store, String owner, Duration leaseTtl, LongSupplier clock) {
+        this.store = store;
+        this.owner = owner;
+        this.leaseTtl = leaseTtl;
+        this.clock = clock;
+    }
+
+    @FunctionalInterface
+    public interface PartitionWorker {
+        void process(Partition partition) throws Exception;
+    }
+
+    /**
+     * Handle for one leased partition. Workers should call {@link #checkpoint} or {@link #renew} more
+     * often than the lease TTL; both throw {@link LeaseLostException} once another replica has taken
+     * the partition over, which stops a stalled holder before it does more work.
+     */
+    public final class Partition {
+        private final int index;
+        private final int count;
+        private Lease lease;
+
+        private Partition(int index, int count, Lease lease) {
+            this.index = index;
+            this.count = count;
+            this.lease = lease;
+        }
+
+        public int index() {
+            return index;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        /** Fencing token of the current lease; higher than any earlier holder's. */
+        public long token() {
+            return lease.token();
+        }
+
+        /** Where an earlier holder stopped, or null when starting fresh. */
+        public String checkpoint() {
+            return lease.checkpoint();
+        }
+
+        public void checkpoint(String position) {
+            lease = store.checkpoint(lease, position, leaseTtl).orElseThrow(() -> new LeaseLostException(lease));
+        }
+
+        public void renew() {
+            lease = store.renew(lease, leaseTtl).orElseThrow(() -> new LeaseLostException(lease));
+        }
+    }
+
+    /**
+     * Processes every partition of the job that this replica can lease and that has not completed
+     * within minInterval. Returns the number of partitions completed by this call.
+     */
+    public int run(String job, int partitions, Duration minInterval, PartitionWorker worker) {
+        int completed = 0;
+        int offset = ThreadLocalRandom.current().nextInt(partitions);
+        for (int i = 0; i < partitions; i++) {
+            int index = (offset + i) % partitions;
+            String name = partitions == 1 ? job : job + "-" + index;
+
+            Optional<Lease> lease;
+            try {
+                lease = store.tryAcquire(name, owner, leaseTtl, completedAfter(minInterval));
+            } catch (Exception e) {
+                logger.warn("Could not acquire lease {}: {}", name, e.getMessage());
+                continue;
+            }
+            if (lease.isEmpty()) continue;
+
+            Partition partition = new Partition(index, partitions, lease.get());
+            if (partition.checkpoint() != null) {
+                logger.info("Resuming {} from checkpoint {}", name, partition.checkpoint());
+            }
+            try {
+                worker.process(partition);
+                if (store.complete(partition.lease)) {
+                    completed++;
+                } else {
+                    logger.warn("Lease {} was lost before it completed; the new holder resumes it", name);
+                }
+            } catch (LeaseLostException e) {
+                logger.warn("Stopped {}: {}", name, e.getMessage());
+            } catch (Exception e) {
+                logger.error("Job partition {} failed, will resume from checkpoint {}: {}", name, partition.checkpoint(), e.getMessage());
+                try {
+                    store.release(partition.lease);
+                } catch (Exception releaseError) {
+                    logger.warn("Could not release lease {}, it frees itself on expiry: {}", name, releaseError.getMessage());
+                }
+            }
+        }
+        return completed;
+    }
+
+    private long completedAfter(Duration minInterval) {
+        long now = clock.getAsLong();
+        long intervalMs;
+        try {
+            intervalMs = minInterval.toMillis();
+        } catch (ArithmeticException e) {
+            intervalMs = Long.MAX_VALUE;
+        }
+        // Saturates at 0, so ONCE skips anything that has ever completed
+        return now - Math.min(intervalMs, now);
+    }
+}
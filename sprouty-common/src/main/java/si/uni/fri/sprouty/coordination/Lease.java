@@ -0,0 +1,15 @@
+package si.uni.fri.sprouty.coordination;
+
+/**
+ * A time-limited claim on a named unit of work.
+ * The token grows with every grant of the same name, so a holder whose lease expired and was granted
+ * to someone else can be told apart from the current holder (fencing).
+ *
+ * @param checkpoint progress saved by an earlier holder that did not complete, or null to start from the beginning
+ */
+public record Lease(String name, String owner, long token, long expiresAt, String checkpoint) {
+
+    Lease withExpiry(long expiresAt, String checkpoint) {
+        return new Lease(name, owner, token, expiresAt, checkpoint);
+    }
+}
@@ -0,0 +1,12 @@
+package si.uni.fri.sprouty.coordination;
+
+/**
+ * Thrown when a holder tries to renew or checkpoint a lease that has since been granted to someone else.
+ * The holder must stop working on the partition; the new holder resumes from the last checkpoint.
+ */
+public class LeaseLostException extends IllegalStateException {
+
+    public LeaseLostException(Lease lease) {
+        super("Lease " + lease.name() + " (token " + lease.token() + ") is no longer held by " + lease.owner());
+    }
+}
@@ -0,0 +1,38 @@
+package si.uni.fri.sprouty.coordination;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Storage for named leases. Every operation is atomic per name, and operations on an existing lease
+ * succeed only while its token is still the latest one granted for that name.
+ */
+public interface LeaseStore {
+
+    /**
+     * Grants the lease to owner with a new, higher token, unless another owner holds an unexpired lease
+     * or the work was completed after completedAfter (epoch millis).
+     */
+    Optional<Lease> tryAcquire(String name, String owner, Duration ttl, long completedAfter);
+
+    /**
+     * Extends the lease by ttl from now. Empty if the lease was lost.
+     */
+    Optional<Lease> renew(Lease lease, Duration ttl);
+
+    /**
+     * Saves progress and extends the lease by ttl from now. Empty if the lease was lost.
+     */
+    Optional<Lease> checkpoint(Lease lease, String checkpoint, Duration ttl);
+
+    /**
+     * Records the work as completed now, clears the checkpoint and frees the lease.
+     * Returns false if the lease was lost.
+     */
+    boolean complete(Lease lease);
+
+    /**
+     * Frees the lease early, keeping the checkpoint for the next holder.
+     */
+    void release(Lease lease);
+}
@@ -0,0 +1,15 @@
+package si.uni.fri.sprouty.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Outcome of a bulk notification submission")
+public record BulkNotificationResponse(
+        @Schema(description = "Messages accepted by FCM", example = "42")
+        int sent,
+
+        @Schema(description = "Notifications skipped because the user does not exist or has no registered device", example = "3")
+        int skipped,
+
+        @Schema(description = "Messages FCM rejected", example = "0")
+        int failed
+) {}
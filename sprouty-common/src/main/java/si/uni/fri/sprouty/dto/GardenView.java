@@ -0,0 +1,22 @@
+package si.uni.fri.sprouty.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Map;
+
+/**
+ * Denormalized garden of one user, stored in garden_views/{ownerId} and maintained by
+ * {@link si.uni.fri.sprouty.garden.GardenViews}.
+ */
+@Getter
+@Setter
+public class GardenView {
+    private String ownerId;
+
+    /** The user's plants keyed by plant ID. */
+    private Map<String, UserPlant> plants;
+
+    /** When the view was last rebuilt from user_plants; absent until the first rebuild. */
+    private Long builtAt;
+}
@@ -23,15 +23,27 @@ public class UserPlant {
     @Schema(description = "Personal nickname for the plant", example = "Monty")
     private String customName;
 
-    @Schema(description = "Firebase storage URL for the plant photo")
+    @Schema(description = "Firebase storage URL for the plant photo, downscaled and stripped of metadata once processed")
     private String imageUrl;
 
+    @Schema(description = "URL of the medium (detail screen) variant of the plant photo")
+    private String mediumImageUrl;
+
+    @Schema(description = "URL of the thumbnail (list screen) variant of the plant photo")
+    private String thumbnailUrl;
+
     @Schema(description = "Timestamp of the last water log")
     private long lastWatered;
 
     @Schema(description = "User-adjusted watering frequency (days)", example = "7")
     private int targetWateringInterval;
 
+    @Schema(description = "When the watering job should next check this plant (epoch millis), null while reminders are off")
+    private Long nextWateringDue;
+
+    @Schema(description = "Bucket of the watering job this plant is processed in")
+    private int wateringShard;
+
     @Schema(description = "Current health status of the plant", example = "Thirsty")
     private String healthStatus;
 
@@ -0,0 +1,38 @@
+package si.uni.fri.sprouty.firestore;
+
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import io.grpc.StatusRuntimeException;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Reads the status code out of a failed Firestore call, which arrives wrapped in ExecutionException,
+ * CompletionException or FirestoreException depending on the call.
+ */
+public final class FirestoreErrors {
+
+    /** Codes with which Firestore rejects a request before applying it, so sending it again is safe. */
+    private static final Set<StatusCode.Code> RETRYABLE = EnumSet.of(
+            StatusCode.Code.UNAVAILABLE, StatusCode.Code.ABORTED, StatusCode.Code.RESOURCE_EXHAUSTED);
+
+    private FirestoreErrors() {}
+
+    /** The status code of the first gRPC error in the cause chain, or UNKNOWN if there is none. */
+    public static StatusCode.Code code(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ApiException api) return api.getStatusCode().getCode();
+            if (cause instanceof StatusRuntimeException grpc) return StatusCode.Code.valueOf(grpc.getStatus().getCode().name());
+        }
+        return StatusCode.Code.UNKNOWN;
+    }
+
+    public static boolean is(Throwable error, StatusCode.Code code) {
+        return code(error) == code;
+    }
+
+    public static boolean isRetryable(Throwable error) {
+        return RETRYABLE.contains(code(error));
+    }
+}
@@ -0,0 +1,91 @@
+package si.uni.fri.sprouty.garden;
+
+import com.google.cloud.firestore.*;
+import si.uni.fri.sprouty.dto.GardenView;
+import si.uni.fri.sprouty.dto.UserPlant;
+
+import java.util.*;
+
+/**
+ * The garden_views collection: one document per user holding all of their plants keyed by plant ID,
+ * so reading a garden is a single document read however many plants it has.
+ * Every write to user_plants is mirrored here in the same batch or transaction, so a plant and its view
+ * entry commit or fail together. Mirrored writes are set-merges on the plant's field paths: they need no
+ * read and create the view if it is missing. A view without builtAt (never built, or created by a mirrored
+ * write) is rebuilt from user_plants on its first read. Plants without an owner belong to no view.
+ * Firestore's 1 MiB document limit leaves room for roughly a thousand plants per user.
+ */
+public final class GardenViews {
+
+    public static final String COLLECTION = "garden_views";
+    /** Plants that fit in one batch together with their view entries, at Firestore's 500 writes. */
+    public static final int MAX_PLANTS_PER_BATCH = 250;
+    static final String USER_PLANTS_COLLECTION = "user_plants";
+    static final String OWNER_FIELD = "ownerId";
+    static final String PLANTS_FIELD = "plants";
+    static final String BUILT_AT_FIELD = "builtAt";
+
+    private GardenViews() {}
+
+    public static DocumentReference of(Firestore db, String ownerId) {
+        return db.collection(COLLECTION).document(ownerId);
+    }
+
+    /** Writes the whole plant into its owner's view, replacing any previous entry. */
+    public static void putPlant(UpdateBuilder<?> writes, Firestore db, UserPlant plant) {
+        if (plant.getOwnerId() == null) return;
+        Map<String, Object> entry = Map.of(PLANTS_FIELD, Map.of(plant.getId(), plant));
+        writes.set(of(db, plant.getOwnerId()), entry, SetOptions.mergeFieldPaths(List.of(FieldPath.of(PLANTS_FIELD, plant.getId()))));
+    }
+
+    /** Applies the same field updates that were written to the plant to its entry in the owner's view. */
+    public static void updatePlant(UpdateBuilder<?> writes, Firestore db, String ownerId, String plantId, Map<String, Object> updates) {
+        if (ownerId == null || updates.isEmpty()) return;
+        List<FieldPath> paths = new ArrayList<>(updates.size());
+        for (String field : updates.keySet()) {
+            paths.add(FieldPath.of(PLANTS_FIELD, plantId, field));
+        }
+        Map<String, Object> entry = Map.of(PLANTS_FIELD, Map.of(plantId, updates));
+        writes.set(of(db, ownerId), entry, SetOptions.mergeFieldPaths(paths));
+    }
+
+    public static void removePlant(UpdateBuilder<?> writes, Firestore db, String ownerId, String plantId) {
+        if (ownerId == null) return;
+        Map<String, Object> entry = Map.of(PLANTS_FIELD, Map.of(plantId, FieldValue.delete()));
+        writes.set(of(db, ownerId), entry, SetOptions.mergeFieldPaths(List.of(FieldPath.of(PLANTS_FIELD, plantId))));
+    }
+
+    /** Returns the plants in the view ordered by ID, or null if the view has not been built yet. */
+    public static List<UserPlant> plants(DocumentSnapshot view) {
+        if (!view.exists() || view.get(BUILT_AT_FIELD) == null) return null;
+        Map<String, UserPlant> plants = view.toObject(GardenView.class).getPlants();
+        if (plants == null) return List.of();
+
+        List<UserPlant> ordered = new ArrayList<>(plants.size());
+        new TreeMap<>(plants).forEach((plantId, plant) -> {
+            if (plant.getId() == null) plant.setId(plantId);
+            ordered.add(plant);
+        });
+        return ordered;
+    }
+
+    /**
+     * Rebuilds the owner's view from user_plants in a transaction, so a plant write that lands meanwhile
+     * is not overwritten, and returns the plants ordered by ID.
+     */
+    public static List<UserPlant> rebuild(Firestore db, String ownerId) throws Exception {
+        DocumentReference view = of(db, ownerId);
+        Query owned = db.collection(USER_PLANTS_COLLECTION).whereEqualTo(OWNER_FIELD, ownerId);
+        return db.runTransaction(transaction -> {
+            Map<String, UserPlant> plants = new TreeMap<>();
+            for (QueryDocumentSnapshot doc : transaction.get(owned).get().getDocuments()) {
+                UserPlant plant = doc.toObject(UserPlant.class);
+                plant.setId(doc.getId());
+                plants.put(doc.getId(), plant);
+            }
+            Map<String, Object> data = Map.of(OWNER_FIELD, ownerId, PLANTS_FIELD, plants, BUILT_AT_FIELD, System.currentTimeMillis());
+            transaction.set(view, data);
+            return List.copyOf(plants.values());
+        }).get();
+    }
+}
@@ -0,0 +1,37 @@
+package si.uni.fri.sprouty.http;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runtime state of one downstream system: its policy, bulkhead and circuit breaker.
+ */
+final class Dependency {
+
+    private final String name;
+    private final HttpClientProperties.Policy policy;
+    private final Semaphore bulkhead;
+    private final CircuitBreaker circuitBreaker;
+
+    Dependency(String name, HttpClientProperties.Policy policy) {
+        this.name = name;
+        this.policy = policy;
+        this.bulkhead = new Semaphore(Math.max(1, policy.getMaxConcurrent()));
+        this.circuitBreaker = new CircuitBreaker(policy.getFailureThreshold(), policy.getOpenDuration());
+    }
+
+    String name() {
+        return name;
+    }
+
+    HttpClientProperties.Policy policy() {
+        return policy;
+    }
+
+    Semaphore bulkhead() {
+        return bulkhead;
+    }
+
+    CircuitBreaker circuitBreaker() {
+        return circuitBreaker;
+    }
+}
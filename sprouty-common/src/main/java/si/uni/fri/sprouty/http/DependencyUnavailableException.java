@@ -0,0 +1,21 @@
+package si.uni.fri.sprouty.http;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a call is rejected locally because the dependency's circuit is open or its bulkhead is full.
+ * RestTemplate surfaces it as a ResourceAccessException, like a connection failure.
+ */
+public class DependencyUnavailableException extends IOException {
+
+    private final String dependency;
+
+    public DependencyUnavailableException(String dependency, String reason) {
+        super(dependency + " unavailable: " + reason);
+        this.dependency = dependency;
+    }
+
+    public String getDependency() {
+        return dependency;
+    }
+}
@@ -0,0 +1,35 @@
+package si.uni.fri.sprouty.http;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Shared outbound HTTP client for every service that depends on sprouty-common:
+ * binds sprouty.http and exposes a {@link RestTemplate} built by {@link ResilientRestTemplateFactory}.
+ */
+@AutoConfiguration
+public class HttpClientAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConfigurationProperties("sprouty.http")
+    public HttpClientProperties httpClientProperties() {
+        return new HttpClientProperties();
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    public ResilientRestTemplateFactory restTemplateFactory(HttpClientProperties properties, MeterRegistry meterRegistry) {
+        return new ResilientRestTemplateFactory(properties, meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public RestTemplate restTemplate(ResilientRestTemplateFactory factory) {
+        return factory.create();
+    }
+}
@@ -0,0 +1,47 @@
+package si.uni.fri.sprouty.http;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outbound HTTP settings, bound from sprouty.http.
+ * Each entry under dependencies names a downstream system and the hosts that belong to it;
+ * calls to hosts that are not listed get a policy with the default values.
+ */
+@Getter
+@Setter
+public class HttpClientProperties {
+
+    private int maxConnections = 200;
+    private int maxConnectionsPerRoute = 50;
+    private Duration idleTimeout = Duration.ofSeconds(30);
+    private Map<String, Policy> dependencies = new LinkedHashMap<>();
+
+    @Getter
+    @Setter
+    public static class Policy {
+        private List<String> hosts = new ArrayList<>();
+        private Duration connectTimeout = Duration.ofSeconds(2);
+        private Duration readTimeout = Duration.ofSeconds(5);
+
+        /** Bulkhead: calls in flight to this dependency, and how long a caller waits for a slot. */
+        private int maxConcurrent = 20;
+        private Duration acquireTimeout = Duration.ofMillis(500);
+
+        /** Total attempts for idempotent methods; POST and PATCH are tried once unless retryNonIdempotent is set. */
+        private int maxAttempts = 3;
+        private Duration backoff = Duration.ofMillis(100);
+        private Duration maxBackoff = Duration.ofSeconds(2);
+        private boolean retryNonIdempotent = false;
+
+        /** Consecutive failures that open the circuit, and how long it stays open before a probe call. */
+        private int failureThreshold = 5;
+        private Duration openDuration = Duration.ofSeconds(30);
+    }
+}
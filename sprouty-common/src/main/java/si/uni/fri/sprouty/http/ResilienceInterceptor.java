@@ -0,0 +1,135 @@
+package si.uni.fri.sprouty.http;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Applies the dependency's bulkhead, circuit breaker and retry policy around each outbound call
+ * and records its latency. Must be the last interceptor, because retries re-run the execution.
+ */
+class ResilienceInterceptor implements ClientHttpRequestInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResilienceInterceptor.class);
+    private static final Set<HttpMethod> IDEMPOTENT_METHODS =
+            Set.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.PUT, HttpMethod.DELETE);
+    private static final Set<Integer> RETRYABLE_STATUSES = Set.of(502, 503, 504);
+
+    private final Function<URI, Dependency> resolver;
+    private final MeterRegistry meterRegistry;
+
+    ResilienceInterceptor(Function<URI, Dependency> resolver, MeterRegistry meterRegistry) {
+        this.resolver = resolver;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        Dependency dependency = resolver.apply(request.getURI());
+        HttpClientProperties.Policy policy = dependency.policy();
+        long start = System.nanoTime();
+
+        if (!acquire(dependency)) {
+            record(dependency, request, "bulkhead_full", start);
+            throw new DependencyUnavailableException(dependency.name(), "too many concurrent calls");
+        }
+
+        String outcome = "io_error";
+        try {
+            boolean retryable = IDEMPOTENT_METHODS.contains(request.getMethod()) || policy.isRetryNonIdempotent();
+            int maxAttempts = retryable ? Math.max(1, policy.getMaxAttempts()) : 1;
+
+            for (int attempt = 1; ; attempt++) {
+                if (!dependency.circuitBreaker().tryAcquire()) {
+                    outcome = "circuit_open";
+                    throw new DependencyUnavailableException(dependency.name(), "circuit open");
+                }
+
+                ClientHttpResponse response;
+                try {
+                    response = execution.execute(request, body);
+                } catch (IOException e) {
+                    dependency.circuitBreaker().onFailure();
+                    if (attempt >= maxAttempts) throw e;
+                    logger.debug("{} {} failed on attempt {}: {}", request.getMethod(), dependency.name(), attempt, e.getMessage());
+                    backoff(dependency, attempt);
+                    continue;
+                }
+
+                int status = response.getStatusCode().value();
+                if (status >= 500) {
+                    dependency.circuitBreaker().onFailure();
+                } else {
+                    dependency.circuitBreaker().onSuccess();
+                }
+
+                if (attempt < maxAttempts && RETRYABLE_STATUSES.contains(status)) {
+                    response.close();
+                    logger.debug("{} {} returned {} on attempt {}", request.getMethod(), dependency.name(), status, attempt);
+                    backoff(dependency, attempt);
+                    continue;
+                }
+
+                outcome = status >= 500 ? "server_error" : status >= 400 ? "client_error" : "success";
+                return response;
+            }
+        } finally {
+            dependency.bulkhead().release();
+            record(dependency, request, outcome, start);
+        }
+    }
+
+    private boolean acquire(Dependency dependency) throws InterruptedIOException {
+        try {
+            return dependency.bulkhead().tryAcquire(dependency.policy().getAcquireTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for " + dependency.name());
+        }
+    }
+
+    /**
+     * Full-jitter exponential backoff: a random pause between zero and backoff * 2^(attempt - 1), capped at maxBackoff.
+     */
+    private void backoff(Dependency dependency, int attempt) throws InterruptedIOException {
+        Counter.builder("sprouty.http.client.retries")
+                .tag("dependency", dependency.name())
+                .register(meterRegistry).increment();
+
+        long base = dependency.policy().getBackoff().toMillis();
+        long cap = dependency.policy().getMaxBackoff().toMillis();
+        long ceiling = Math.min(cap, base << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted retrying " + dependency.name());
+        }
+    }
+
+    private void record(Dependency dependency, HttpRequest request, String outcome, long start) {
+        Timer.builder("sprouty.http.client")
+                .description("Outbound HTTP calls including retries")
+                .tag("dependency", dependency.name())
+                .tag("method", request.getMethod().name())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+}
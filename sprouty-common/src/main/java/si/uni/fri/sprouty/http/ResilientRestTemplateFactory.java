@@ -0,0 +1,105 @@
+package si.uni.fri.sprouty.http;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds RestTemplates on a shared keep-alive connection pool. Every call is matched to a dependency
+ * by host, which decides its connect and read timeouts, bulkhead, retries and circuit breaker.
+ * Latency is published as the sprouty.http.client timer with a percentile histogram.
+ */
+public class ResilientRestTemplateFactory implements AutoCloseable {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Dependency> dependenciesByHost = new ConcurrentHashMap<>();
+    private final CloseableHttpClient httpClient;
+
+    public ResilientRestTemplateFactory(HttpClientProperties properties, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        properties.getDependencies().forEach((name, policy) -> {
+            Dependency dependency = register(name, policy);
+            for (String host : policy.getHosts()) {
+                dependenciesByHost.put(host.toLowerCase(Locale.ROOT), dependency);
+            }
+        });
+
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(properties.getMaxConnections())
+                .setMaxConnPerRoute(properties.getMaxConnectionsPerRoute())
+                .build();
+        connectionManager.setConnectionConfigResolver(route -> ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(
+                        dependencyFor(route.getTargetHost().getHostName()).policy().getConnectTimeout().toMillis()))
+                .build());
+
+        // ResilienceInterceptor owns retries; the client's own retry would resend POSTs and stack its delays on ours
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .disableAutomaticRetries()
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(properties.getIdleTimeout().toMillis()))
+                .build();
+    }
+
+    public RestTemplate create() {
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        requestFactory.setHttpContextFactory((method, uri) -> {
+            HttpClientProperties.Policy policy = dependencyFor(uri).policy();
+            HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(RequestConfig.custom()
+                    .setConnectionRequestTimeout(Timeout.ofMilliseconds(policy.getAcquireTimeout().toMillis()))
+                    .setResponseTimeout(Timeout.ofMilliseconds(policy.getReadTimeout().toMillis()))
+                    .build());
+            return context;
+        });
+
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getInterceptors().add(new ResilienceInterceptor(this::dependencyFor, meterRegistry));
+        return restTemplate;
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    Dependency dependencyFor(URI uri) {
+        return dependencyFor(uri.getHost() != null ? uri.getHost() : "unknown");
+    }
+
+    private Dependency dependencyFor(String host) {
+        // Unlisted hosts get default limits of their own, so one of them cannot starve another
+        return dependenciesByHost.computeIfAbsent(host.toLowerCase(Locale.ROOT),
+                h -> register(h, new HttpClientProperties.Policy()));
+    }
+
+    private Dependency register(String name, HttpClientProperties.Policy policy) {
+        Dependency dependency = new Dependency(name, policy);
+        Gauge.builder("sprouty.http.client.circuit", dependency, d -> d.circuitBreaker().state().ordinal())
+                .description("Circuit state: 0 closed, 1 open, 2 half-open")
+                .tag("dependency", name)
+                .register(meterRegistry);
+        Gauge.builder("sprouty.http.client.in_flight", dependency,
+                        d -> d.policy().getMaxConcurrent() - d.bulkhead().availablePermits())
+                .tag("dependency", name)
+                .register(meterRegistry);
+        return dependency;
+    }
+}
@@ -0,0 +1,26 @@
+package si.uni.fri.sprouty.image;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Minimal object storage used by the image pipeline, so it can run against
+ * Firebase Storage in production and an in-memory map in tests.
+ */
+public interface BlobStore {
+
+    /**
+     * Stores the content under the path, replacing any existing object, and returns a download URL.
+     */
+    String put(String path, byte[] content, String contentType);
+
+    /**
+     * Opens the stored object for reading. Throws FileNotFoundException if it does not exist.
+     */
+    InputStream open(String path) throws IOException;
+
+    /**
+     * Removes the object if it exists. Returns false if there was nothing to delete.
+     */
+    boolean delete(String path);
+}
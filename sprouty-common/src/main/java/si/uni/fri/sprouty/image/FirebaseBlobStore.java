@@ -0,0 +1,49 @@
+package si.uni.fri.sprouty.image;
+
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.Bucket;
+import com.google.firebase.cloud.StorageClient;
+
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BlobStore} on a Firebase Storage bucket, returning long-lived signed URLs.
+ * The bucket is resolved on each call so the store can be created before Firebase is initialized.
+ */
+public class FirebaseBlobStore implements BlobStore {
+
+    private final String bucketName;
+    private final long urlTtlDays;
+
+    public FirebaseBlobStore(String bucketName, long urlTtlDays) {
+        this.bucketName = bucketName;
+        this.urlTtlDays = urlTtlDays;
+    }
+
+    @Override
+    public String put(String path, byte[] content, String contentType) {
+        Blob blob = bucket().create(path, content, contentType);
+        return blob.signUrl(urlTtlDays, TimeUnit.DAYS).toString();
+    }
+
+    @Override
+    public InputStream open(String path) throws FileNotFoundException {
+        Blob blob = bucket().get(path);
+        if (blob == null) throw new FileNotFoundException(path);
+        return Channels.newInputStream(blob.reader());
+    }
+
+    @Override
+    public boolean delete(String path) {
+        Bucket bucket = bucket();
+        return bucket.getStorage().delete(BlobId.of(bucket.getName(), path));
+    }
+
+    private Bucket bucket() {
+        return StorageClient.getInstance().bucket(bucketName);
+    }
+}
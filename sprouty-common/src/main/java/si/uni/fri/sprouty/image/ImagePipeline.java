@@ -0,0 +1,109 @@
+package si.uni.fri.sprouty.image;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders and stores image variants next to an uploaded original on a bounded worker pool.
+ * For "users/u1/plants/abc.jpg" the variants are "abc_normalized.jpg", "abc_medium.jpg" and "abc_thumb.jpg"
+ * in the same folder. When the queue is full the job is rejected rather than buffered.
+ */
+public class ImagePipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImagePipeline.class);
+    private static final String CONTENT_TYPE = "image/jpeg";
+
+    public record VariantUrls(String normalizedUrl, String mediumUrl, String thumbnailUrl) {}
+
+    private final BlobStore blobStore;
+    private final ImageVariantGenerator generator;
+    private final ThreadPoolExecutor executor;
+
+    public ImagePipeline(BlobStore blobStore, ImageVariantGenerator generator, int workers, int queueCapacity) {
+        this.blobStore = blobStore;
+        this.generator = generator;
+
+        AtomicInteger threadIds = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-pipeline-" + threadIds.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Processes an original the caller already holds in memory.
+     */
+    public CompletableFuture<VariantUrls> submit(String originalPath, byte[] original) {
+        return schedule(originalPath, () -> original);
+    }
+
+    /**
+     * Processes an original that was streamed into the blob store, reading it back on the worker.
+     */
+    public CompletableFuture<VariantUrls> submit(String originalPath) {
+        return schedule(originalPath, () -> {
+            try (InputStream in = blobStore.open(originalPath)) {
+                return in.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    public int queued() {
+        return executor.getQueue().size();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("Image pipeline stopped with {} jobs still queued", executor.getQueue().size());
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    private CompletableFuture<VariantUrls> schedule(String originalPath, Callable<byte[]> original) {
+        try {
+            return CompletableFuture.supplyAsync(() -> process(originalPath, original), executor);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Image pipeline saturated, skipping variants for {}", originalPath);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private VariantUrls process(String originalPath, Callable<byte[]> original) {
+        try {
+            ImageVariantGenerator.RenderedVariants rendered = generator.render(original.call());
+            return new VariantUrls(
+                    blobStore.put(variantPath(originalPath, "normalized"), rendered.normalized(), CONTENT_TYPE),
+                    blobStore.put(variantPath(originalPath, "medium"), rendered.medium(), CONTENT_TYPE),
+                    blobStore.put(variantPath(originalPath, "thumb"), rendered.thumbnail(), CONTENT_TYPE));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    static String variantPath(String originalPath, String variant) {
+        int slash = originalPath.lastIndexOf('/');
+        int dot = originalPath.lastIndexOf('.');
+        String base = (dot > slash) ? originalPath.substring(0, dot) : originalPath;
+        return base + "_" + variant + ".jpg";
+    }
+}
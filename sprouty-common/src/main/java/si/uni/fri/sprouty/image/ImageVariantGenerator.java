@@ -0,0 +1,216 @@
+package si.uni.fri.sprouty.image;
+
+import javax.imageio.*;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Produces the normalized, medium and thumbnail JPEG variants of an uploaded photo.
+ * Variants are re-encoded from pixels only, so EXIF (including GPS) and other metadata are dropped;
+ * the EXIF orientation is applied to the pixels first so photos stay upright.
+ */
+public class ImageVariantGenerator {
+
+    public record RenderedVariants(byte[] normalized, byte[] medium, byte[] thumbnail) {}
+
+    private final int normalizedEdge;
+    private final int mediumEdge;
+    private final int thumbnailEdge;
+    private final float quality;
+
+    public ImageVariantGenerator(int normalizedEdge, int mediumEdge, int thumbnailEdge, float quality) {
+        if (!(normalizedEdge >= mediumEdge && mediumEdge >= thumbnailEdge && thumbnailEdge > 0)) {
+            throw new IllegalArgumentException("Variant edges must satisfy normalized >= medium >= thumbnail > 0.");
+        }
+        this.normalizedEdge = normalizedEdge;
+        this.mediumEdge = mediumEdge;
+        this.thumbnailEdge = thumbnailEdge;
+        this.quality = quality;
+    }
+
+    public RenderedVariants render(byte[] original) throws IOException {
+        BufferedImage decoded = decode(original);
+        BufferedImage normalized = orient(scaleToFit(toRgb(decoded), normalizedEdge), exifOrientation(original));
+        BufferedImage medium = scaleToFit(normalized, mediumEdge);
+        BufferedImage thumbnail = scaleToFit(medium, thumbnailEdge);
+        return new RenderedVariants(encode(normalized), encode(medium), encode(thumbnail));
+    }
+
+    // --- DECODE / ENCODE ---
+
+    private BufferedImage decode(byte[] original) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(original))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IllegalArgumentException("Unsupported image format.");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int longEdge = Math.max(reader.getWidth(0), reader.getHeight(0));
+
+                // Subsample while decoding so large photos never inflate to full resolution,
+                // keeping 2x headroom for a smooth final downscale
+                ImageReadParam param = reader.getDefaultReadParam();
+                int factor = Math.max(1, longEdge / (2 * normalizedEdge));
+                if (factor > 1) param.setSourceSubsampling(factor, factor, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private byte[] encode(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    // --- PIXEL OPERATIONS ---
+
+    private static BufferedImage toRgb(BufferedImage source) {
+        if (source.getType() == BufferedImage.TYPE_INT_RGB) return source;
+        BufferedImage rgb = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            // JPEG has no alpha, flatten transparent PNGs onto white
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, rgb.getWidth(), rgb.getHeight());
+            g.drawImage(source, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+
+    static BufferedImage scaleToFit(BufferedImage source, int maxEdge) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        if (Math.max(width, height) <= maxEdge) return source;
+
+        double scale = (double) maxEdge / Math.max(width, height);
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        // Halve in steps first; a single bilinear pass over a large ratio aliases badly
+        BufferedImage current = source;
+        while (current.getWidth() / 2 >= targetWidth && current.getHeight() / 2 >= targetHeight) {
+            current = draw(current, current.getWidth() / 2, current.getHeight() / 2);
+        }
+        return draw(current, targetWidth, targetHeight);
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private static BufferedImage orient(BufferedImage source, int orientation) {
+        if (orientation < 2 || orientation > 8) return source;
+
+        int w = source.getWidth();
+        int h = source.getHeight();
+        boolean swap = orientation >= 5;
+        AffineTransform t = new AffineTransform();
+        switch (orientation) {
+            case 2 -> { t.translate(w, 0); t.scale(-1, 1); }
+            case 3 -> { t.translate(w, h); t.rotate(Math.PI); }
+            case 4 -> { t.translate(0, h); t.scale(1, -1); }
+            case 5 -> { t.rotate(-Math.PI / 2); t.scale(-1, 1); }
+            case 6 -> { t.translate(h, 0); t.rotate(Math.PI / 2); }
+            case 7 -> { t.translate(h, w); t.rotate(Math.PI / 2); t.scale(-1, 1); }
+            case 8 -> { t.translate(0, w); t.rotate(3 * Math.PI / 2); }
+        }
+
+        BufferedImage target = new BufferedImage(swap ? h : w, swap ? w : h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.drawImage(source, t, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    // --- EXIF ---
+
+    /**
+     * Reads the EXIF orientation tag (1-8) from a JPEG, or returns 1 if there is none.
+     */
+    static int exifOrientation(byte[] jpeg) {
+        if (jpeg.length < 4 || (jpeg[0] & 0xFF) != 0xFF || (jpeg[1] & 0xFF) != 0xD8) return 1;
+
+        int pos = 2;
+        while (pos + 4 <= jpeg.length && (jpeg[pos] & 0xFF) == 0xFF) {
+            int marker = jpeg[pos + 1] & 0xFF;
+            int length = ((jpeg[pos + 2] & 0xFF) << 8) | (jpeg[pos + 3] & 0xFF);
+            if (marker == 0xDA || marker == 0xD9 || length < 2) return 1;
+
+            int data = pos + 4;
+            if (marker == 0xE1 && data + 14 <= jpeg.length && jpeg[data] == 'E' && jpeg[data + 1] == 'x'
+                    && jpeg[data + 2] == 'i' && jpeg[data + 3] == 'f') {
+                return readTiffOrientation(jpeg, data + 6, Math.min(jpeg.length, pos + 2 + length));
+            }
+            pos += 2 + length;
+        }
+        return 1;
+    }
+
+    private static int readTiffOrientation(byte[] b, int tiff, int end) {
+        boolean little = b[tiff] == 'I' && b[tiff + 1] == 'I';
+        long ifd = tiff + readInt(b, tiff + 4, little);
+        if (ifd + 2 > end) return 1;
+
+        int entries = readShort(b, (int) ifd, little);
+        for (int i = 0; i < entries; i++) {
+            int entry = (int) ifd + 2 + i * 12;
+            if (entry + 12 > end) return 1;
+            if (readShort(b, entry, little) == 0x0112) {
+                int value = readShort(b, entry + 8, little);
+                return (value >= 1 && value <= 8) ? value : 1;
+            }
+        }
+        return 1;
+    }
+
+    private static int readShort(byte[] b, int at, boolean little) {
+        return little
+                ? (b[at] & 0xFF) | ((b[at + 1] & 0xFF) << 8)
+                : ((b[at] & 0xFF) << 8) | (b[at + 1] & 0xFF);
+    }
+
+    private static long readInt(byte[] b, int at, boolean little) {
+        long value = 0;
+        for (int i = 0; i < 4; i++) {
+            int shift = little ? 8 * i : 8 * (3 - i);
+            value |= (long) (b[at + i] & 0xFF) << shift;
+        }
+        return value;
+    }
+}
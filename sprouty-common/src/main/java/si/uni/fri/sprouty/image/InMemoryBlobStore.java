@@ -0,0 +1,48 @@
+package si.uni.fri.sprouty.image;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link BlobStore} backed by a map, for tests and local runs without Firebase.
+ */
+public class InMemoryBlobStore implements BlobStore {
+
+    private final Map<String, byte[]> blobs = new ConcurrentHashMap<>();
+    private final Map<String, String> contentTypes = new ConcurrentHashMap<>();
+
+    @Override
+    public String put(String path, byte[] content, String contentType) {
+        blobs.put(path, content.clone());
+        contentTypes.put(path, contentType);
+        return "memory://" + path;
+    }
+
+    @Override
+    public InputStream open(String path) throws FileNotFoundException {
+        byte[] content = blobs.get(path);
+        if (content == null) throw new FileNotFoundException(path);
+        return new ByteArrayInputStream(content);
+    }
+
+    @Override
+    public boolean delete(String path) {
+        contentTypes.remove(path);
+        return blobs.remove(path) != null;
+    }
+
+    public byte[] get(String path) {
+        return blobs.get(path);
+    }
+
+    public String contentType(String path) {
+        return contentTypes.get(path);
+    }
+
+    public int size() {
+        return blobs.size();
+    }
+}
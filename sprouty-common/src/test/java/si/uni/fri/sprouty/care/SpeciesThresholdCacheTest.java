@@ -0,0 +1,173 @@
+package si.uni.fri.sprouty.care;
+
+import com.google.api.core.ApiFutures;
+import com.google.api.core.SettableApiFuture;
+import com.google.cloud.firestore.*;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import si.uni.fri.sprouty.concurrent.VirtualThreadPinningMonitor;
+import si.uni.fri.sprouty.dto.MasterPlant;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SpeciesThresholdCacheTest {
+
+    @Mock private Firestore db;
+    @Mock private CollectionReference masterCollection;
+    @Mock private DocumentReference basilRef;
+    @Mock private DocumentSnapshot basilSnapshot;
+
+    private final Object lock = new Object();
+    private SpeciesThresholdCache cache;
+    private MasterPlant basil;
+
+    @BeforeEach
+    void setUp() {
+        cache = new SpeciesThresholdCache(db, 100);
+        basil = new MasterPlant();
+        basil.setSoilH("30,70");
+        basil.setAirH("40,60");
+        basil.setMinT(15);
+        basil.setMaxT(30);
+        when(db.collection("master_plants")).thenReturn(masterCollection);
+        lenient().when(masterCollection.document("basil")).thenReturn(basilRef);
+        lenient().when(basilRef.get()).thenReturn(ApiFutures.immediateFuture(basilSnapshot));
+        when(basilSnapshot.toObject(MasterPlant.class)).thenReturn(basil);
+    }
+
+    @Test
+    void get_ShouldServeHitsWithoutAllocating() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        int readings = 200_000;
+        evaluateAll(readings);
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        int healthy = evaluateAll(readings);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals(readings, healthy);
+        // The lookup and evaluation done for every reading must stay below one byte each
+        assertTrue(allocated < readings, "looking up " + readings + " readings allocated " + allocated + " bytes");
+        verify(basilRef, times(1)).get();
+    }
+
+    @Test
+    void get_ShouldNotPinVirtualThreadsWaitingOnFirestore_UnderLoad() throws Exception {
+        // From JDK 24 on, blocking inside synchronized no longer pins (JEP 491)
+        assumeTrue(Runtime.version().feature() < 24);
+        ScheduledExecutorService firestore = Executors.newSingleThreadScheduledExecutor();
+        DocumentReference speciesRef = mock(DocumentReference.class);
+        when(masterCollection.document(anyString())).thenReturn(speciesRef);
+        when(speciesRef.get()).thenAnswer(invocation -> {
+            SettableApiFuture<DocumentSnapshot> read = SettableApiFuture.create();
+            firestore.schedule(() -> read.set(basilSnapshot), 100, TimeUnit.MILLISECONDS);
+            return read;
+        });
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        int requests = 2_000;
+        try (VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor(registry, Duration.ofMillis(10));
+             ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            monitor.start();
+
+            // Many more blocked readers than carrier threads, spread over a few species so loads are shared
+            List<Future<SpeciesThresholds>> results = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                String speciesId = "species-" + i % 50;
+                results.add(callers.submit(() -> cache.get(speciesId)));
+            }
+            for (Future<SpeciesThresholds> result : results) {
+                assertTrue(result.get(10, TimeUnit.SECONDS).known());
+            }
+
+            // A known pin; once it is reported, any pin from the load above has been reported too
+            Thread.ofVirtual().start(this::sleepWhileHoldingMonitor).join();
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (pinned(registry, "SpeciesThresholdCacheTest.sleepWhileHoldingMonitor") == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+        } finally {
+            firestore.shutdownNow();
+        }
+
+        assertEquals(1, pinned(registry, "SpeciesThresholdCacheTest.sleepWhileHoldingMonitor"));
+        assertEquals(1, registry.find("sprouty.virtual_threads.pinned").timers().stream().mapToLong(Timer::count).sum(),
+                "virtual threads pinned while waiting on species reads");
+        // Concurrent misses for a species shared one read
+        verify(speciesRef, times(50)).get();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getAsync_ShouldNotCacheAReadThatAnInvalidationOvertook() throws Exception {
+        ArgumentCaptor<EventListener<QuerySnapshot>> listener = ArgumentCaptor.forClass(EventListener.class);
+        when(masterCollection.addSnapshotListener(listener.capture())).thenReturn(mock(ListenerRegistration.class));
+        SettableApiFuture<DocumentSnapshot> staleRead = SettableApiFuture.create();
+        DocumentSnapshot editedSnapshot = mock(DocumentSnapshot.class);
+        MasterPlant edited = new MasterPlant();
+        edited.setSoilH("50,80");
+        when(editedSnapshot.toObject(MasterPlant.class)).thenReturn(edited);
+        when(basilRef.get()).thenReturn(staleRead, ApiFutures.immediateFuture(editedSnapshot));
+        cache.start();
+
+        CompletableFuture<SpeciesThresholds> waiting = cache.getAsync("basil");
+        // The species is edited while the first read is still in flight
+        listener.getValue().onEvent(changeOf("basil"), null);
+        staleRead.set(basilSnapshot);
+
+        assertEquals(30.0, waiting.get(5, TimeUnit.SECONDS).minSoil());
+        assertEquals(50.0, cache.getAsync("basil").get(5, TimeUnit.SECONDS).minSoil());
+        assertEquals(50.0, cache.get("basil").minSoil());
+        verify(basilRef, times(2)).get();
+    }
+
+    private static QuerySnapshot changeOf(String speciesId) {
+        QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+        when(document.getId()).thenReturn(speciesId);
+        DocumentChange change = mock(DocumentChange.class);
+        when(change.getDocument()).thenReturn(document);
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocumentChanges()).thenReturn(List.of(change));
+        return snapshot;
+    }
+
+    private void sleepWhileHoldingMonitor() {
+        synchronized (lock) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static long pinned(SimpleMeterRegistry registry, String site) {
+        Timer timer = registry.find("sprouty.virtual_threads.pinned").tag("site", site).timer();
+        return timer != null ? timer.count() : 0;
+    }
+
+    private int evaluateAll(int readings) {
+        int healthy = 0;
+        for (int i = 0; i < readings; i++) {
+            if (cache.get("basil").evaluate(22.0, 45.0, 50.0) == SpeciesThresholds.HEALTHY) healthy++;
+        }
+        return healthy;
+    }
+}
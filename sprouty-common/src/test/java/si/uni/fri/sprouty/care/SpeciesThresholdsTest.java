@@ -0,0 +1,78 @@
+package si.uni.fri.sprouty.care;
+
+import org.junit.jupiter.api.Test;
+import si.uni.fri.sprouty.dto.MasterPlant;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class SpeciesThresholdsTest {
+
+    @Test
+    void evaluate_ShouldApplySoilTemperatureAndAirMargins() {
+        SpeciesThresholds thresholds = SpeciesThresholds.compile("basil", master("30, 70", "40,60", 15, 30));
+
+        assertEquals("Healthy", thresholds.evaluate(22.0, 45.0, 50.0));
+        assertEquals("Freezing Risk", thresholds.evaluate(-1.0, 45.0, 50.0));
+        assertEquals("Thirsty", thresholds.evaluate(22.0, 14.0, 50.0));
+        assertEquals("Overwatered", thresholds.evaluate(22.0, 86.0, 50.0));
+        assertEquals("Too Cold", thresholds.evaluate(9.0, 45.0, 50.0));
+        assertEquals("Too Hot", thresholds.evaluate(36.0, 45.0, 50.0));
+        assertEquals("Dry Air", thresholds.evaluate(22.0, 45.0, 19.0));
+        assertEquals("Too Humid", thresholds.evaluate(22.0, 45.0, 81.0));
+    }
+
+    @Test
+    void evaluate_ShouldSkipMalformedRangesWithoutFailing() {
+        SpeciesThresholds thresholds = SpeciesThresholds.compile("fern", master("wet", null, 10, 25));
+
+        assertTrue(thresholds.known());
+        assertEquals("Healthy", thresholds.evaluate(20.0, 0.0, 100.0));
+        assertEquals("Too Hot", thresholds.evaluate(31.0, 0.0, 100.0));
+        assertEquals(30.0, thresholds.dryThreshold(30.0));
+    }
+
+    @Test
+    void evaluate_ShouldReportUnknown_WhenSpeciesIsMissing() {
+        SpeciesThresholds thresholds = SpeciesThresholds.compile("ghost", null);
+
+        assertFalse(thresholds.known());
+        assertEquals("Unknown", thresholds.evaluate(20.0, 50.0, 50.0));
+    }
+
+    @Test
+    void evaluate_ShouldNotAllocatePerReading() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        SpeciesThresholds thresholds = SpeciesThresholds.compile("basil", master("30, 70", "40,60", 15, 30));
+        int readings = 200_000;
+        evaluateAll(thresholds, readings);
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        int healthy = evaluateAll(thresholds, readings);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertTrue(healthy > 0);
+        // Splitting and parsing the ranges per reading cost well over 100 bytes each; this must stay below one
+        assertTrue(allocated < readings, "evaluating " + readings + " readings allocated " + allocated + " bytes");
+    }
+
+    private static int evaluateAll(SpeciesThresholds thresholds, int readings) {
+        int healthy = 0;
+        for (int i = 0; i < readings; i++) {
+            if (thresholds.evaluate(10 + i % 30, i % 100, 30 + i % 50) == SpeciesThresholds.HEALTHY) healthy++;
+        }
+        return healthy;
+    }
+
+    private MasterPlant master(String soilH, String airH, int minT, int maxT) {
+        MasterPlant master = new MasterPlant();
+        master.setSoilH(soilH);
+        master.setAirH(airH);
+        master.setMinT(minT);
+        master.setMaxT(maxT);
+        return master;
+    }
+}
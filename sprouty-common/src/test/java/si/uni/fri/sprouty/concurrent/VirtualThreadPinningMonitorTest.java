@@ -0,0 +1,61 @@
+package si.uni.fri.sprouty.concurrent;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class VirtualThreadPinningMonitorTest {
+
+    private final Object lock = new Object();
+
+    @Test
+    void shouldRecordVirtualThreadBlockedInsideSynchronized() throws Exception {
+        // From JDK 24 on, blocking inside synchronized no longer pins (JEP 491)
+        assumeTrue(Runtime.version().feature() < 24);
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        try (VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor(registry, Duration.ofMillis(10))) {
+            monitor.start();
+
+            Thread.ofVirtual().start(this::sleepWhileHoldingMonitor).join();
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (pinnedCount(registry) == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+        }
+
+        assertTrue(pinnedCount(registry) >= 1);
+        assertNotNull(registry.find("sprouty.virtual_threads.pinned")
+                .tag("site", "VirtualThreadPinningMonitorTest.sleepWhileHoldingMonitor").timer());
+    }
+
+    @Test
+    void threadFactories_ShouldFollowVirtualFlag() {
+        assertTrue(ThreadFactories.named("worker", true).newThread(() -> {}).isVirtual());
+
+        Thread platform = ThreadFactories.named("worker", false).newThread(() -> {});
+        assertFalse(platform.isVirtual());
+        assertTrue(platform.isDaemon());
+        assertEquals("worker-1", platform.getName());
+    }
+
+    private void sleepWhileHoldingMonitor() {
+        synchronized (lock) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static long pinnedCount(SimpleMeterRegistry registry) {
+        return registry.find("sprouty.virtual_threads.pinned").timers().stream().mapToLong(Timer::count).sum();
+    }
+}
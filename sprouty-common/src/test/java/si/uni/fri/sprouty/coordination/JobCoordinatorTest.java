@@ -0,0 +1,111 @@
+package si.uni.fri.sprouty.coordination;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobCoordinatorTest {
+
+    private static final Duration TTL = Duration.ofMinutes(5);
+    private static final Duration INTERVAL = Duration.ofHours(1);
+
+    private final AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+    private final InMemoryLeaseStore store = new InMemoryLeaseStore(clock::get);
+
+    @Test
+    void run_ShouldSkipPartitionsCompletedWithinInterval() {
+        JobCoordinator coordinator = coordinator("a");
+        List<Integer> processed = new ArrayList<>();
+
+        assertEquals(4, coordinator.run("job", 4, INTERVAL, p -> processed.add(p.index())));
+        assertEquals(0, coordinator.run("job", 4, INTERVAL, p -> processed.add(p.index())));
+
+        clock.addAndGet(INTERVAL.toMillis());
+        assertEquals(4, coordinator.run("job", 4, INTERVAL, p -> processed.add(p.index())));
+        assertEquals(8, processed.size());
+    }
+
+    @Test
+    void run_ShouldLeavePartitionsHeldByAnotherReplica() {
+        JobCoordinator first = coordinator("a");
+        JobCoordinator second = coordinator("b");
+        Set<Integer> bySecond = new TreeSet<>();
+
+        // While the first replica works on one partition, the second one takes all the others
+        first.run("job", 4, INTERVAL, held -> {
+            if (bySecond.isEmpty()) {
+                second.run("job", 4, INTERVAL, p -> bySecond.add(p.index()));
+                assertFalse(bySecond.contains(held.index()));
+            }
+        });
+
+        assertEquals(3, bySecond.size());
+        assertEquals(0, second.run("job", 4, INTERVAL, p -> fail("all partitions are done")));
+    }
+
+    @Test
+    void run_ShouldResumeFailedPartitionFromCheckpoint() {
+        JobCoordinator coordinator = coordinator("a");
+
+        coordinator.run("backfill", 1, JobCoordinator.ONCE, p -> {
+            p.checkpoint("doc-200");
+            throw new IllegalStateException("deadline exceeded");
+        });
+
+        List<String> resumedFrom = new ArrayList<>();
+        assertEquals(1, coordinator.run("backfill", 1, JobCoordinator.ONCE, p -> resumedFrom.add(p.checkpoint())));
+        assertEquals(List.of("doc-200"), resumedFrom);
+
+        clock.addAndGet(Duration.ofDays(365).toMillis());
+        assertEquals(0, coordinator.run("backfill", 1, JobCoordinator.ONCE, p -> fail("completed jobs never rerun")));
+    }
+
+    @Test
+    void run_ShouldTakeOverExpiredLeaseAndFenceOutPreviousHolder() {
+        Lease stale = store.tryAcquire("job", "crashed", TTL, 0).orElseThrow();
+        store.checkpoint(stale, "page-3", TTL);
+
+        assertEquals(0, coordinator("b").run("job", 1, INTERVAL, p -> fail("lease is still held")));
+
+        clock.addAndGet(TTL.toMillis() + 1);
+        List<Long> tokens = new ArrayList<>();
+        List<String> checkpoints = new ArrayList<>();
+        assertEquals(1, coordinator("b").run("job", 1, INTERVAL, p -> {
+            tokens.add(p.token());
+            checkpoints.add(p.checkpoint());
+            // The old holder wakes up and is rejected
+            assertTrue(store.checkpoint(stale, "page-4", TTL).isEmpty());
+        }));
+
+        assertTrue(tokens.getFirst() > stale.token());
+        assertEquals(List.of("page-3"), checkpoints);
+        assertFalse(store.complete(stale));
+    }
+
+    @Test
+    void partition_ShouldStopWork_WhenLeaseIsLost() {
+        JobCoordinator coordinator = coordinator("a");
+        List<String> reached = new ArrayList<>();
+
+        int completed = coordinator.run("job", 1, INTERVAL, p -> {
+            clock.addAndGet(TTL.toMillis() + 1);
+            store.tryAcquire("job", "b", TTL, 0).orElseThrow();
+            p.renew();
+            reached.add("after renew");
+        });
+
+        assertEquals(0, completed);
+        assertTrue(reached.isEmpty());
+    }
+
+    private JobCoordinator coordinator(String owner) {
+        return new JobCoordinator(store, owner, TTL, clock::get);
+    }
+}
@@ -0,0 +1,179 @@
+package si.uni.fri.sprouty.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the client against a local stub server, one dependency named "stub" mapped to localhost.
+ */
+class ResilientRestTemplateFactoryTest {
+
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private ResilientRestTemplateFactory factory;
+
+    /** Status codes the stub returns in order; the last one repeats. */
+    private volatile List<Integer> statuses = List.of(200);
+    private volatile long delayMs = 0;
+    private volatile CountDownLatch gate = null;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", this::handle);
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() throws IOException {
+        if (gate != null) gate.countDown();
+        server.stop(0);
+        if (factory != null) factory.close();
+    }
+
+    @Test
+    void get_ShouldRetryGatewayErrorsAndReturnSuccess() {
+        statuses = List.of(503, 503, 200);
+        RestTemplate client = client(policy());
+
+        ResponseEntity<String> response = client.getForEntity(baseUrl + "/species", String.class);
+
+        assertEquals("ok", response.getBody());
+        assertEquals(3, hits.get());
+        assertEquals(2.0, registry.get("sprouty.http.client.retries").tag("dependency", "stub").counter().count());
+        assertEquals(1, registry.get("sprouty.http.client").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void post_ShouldNotBeRetriedByDefault() {
+        statuses = List.of(503, 200);
+        RestTemplate client = client(policy());
+
+        assertThrows(HttpServerErrorException.class, () -> client.postForEntity(baseUrl + "/send", "{}", String.class));
+        assertEquals(1, hits.get());
+    }
+
+    @Test
+    void post_ShouldBeRetriedWhenPolicyAllowsIt() {
+        statuses = List.of(502, 200);
+        HttpClientProperties.Policy policy = policy();
+        policy.setRetryNonIdempotent(true);
+
+        assertEquals("ok", client(policy).postForEntity(baseUrl + "/identify", "{}", String.class).getBody());
+        assertEquals(2, hits.get());
+    }
+
+    @Test
+    void get_ShouldGiveUpAfterReadTimeout() {
+        delayMs = 1000;
+        HttpClientProperties.Policy policy = policy();
+        policy.setReadTimeout(Duration.ofMillis(100));
+        policy.setMaxAttempts(1);
+
+        ResourceAccessException e = assertThrows(ResourceAccessException.class,
+                () -> client(policy).getForEntity(baseUrl + "/slow", String.class));
+        assertInstanceOf(SocketTimeoutException.class, e.getCause());
+    }
+
+    @Test
+    void circuit_ShouldOpenAfterConsecutiveFailuresAndStopCallingServer() {
+        statuses = List.of(500);
+        HttpClientProperties.Policy policy = policy();
+        policy.setMaxAttempts(1);
+        policy.setFailureThreshold(2);
+        RestTemplate client = client(policy);
+
+        assertThrows(HttpServerErrorException.class, () -> client.getForEntity(baseUrl + "/a", String.class));
+        assertThrows(HttpServerErrorException.class, () -> client.getForEntity(baseUrl + "/a", String.class));
+        ResourceAccessException rejected = assertThrows(ResourceAccessException.class,
+                () -> client.getForEntity(baseUrl + "/a", String.class));
+
+        assertInstanceOf(DependencyUnavailableException.class, rejected.getCause());
+        assertEquals(2, hits.get());
+        assertEquals(1.0, registry.get("sprouty.http.client.circuit").tag("dependency", "stub").gauge().value());
+    }
+
+    @Test
+    void bulkhead_ShouldRejectCallsBeyondConcurrencyLimit() throws Exception {
+        gate = new CountDownLatch(1);
+        HttpClientProperties.Policy policy = policy();
+        policy.setMaxConcurrent(1);
+        policy.setAcquireTimeout(Duration.ofMillis(50));
+        RestTemplate client = client(policy);
+
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<ResponseEntity<String>> first = caller.submit(() -> client.getForEntity(baseUrl + "/held", String.class));
+            while (hits.get() == 0) Thread.sleep(5);
+
+            ResourceAccessException rejected = assertThrows(ResourceAccessException.class,
+                    () -> client.getForEntity(baseUrl + "/held", String.class));
+            assertInstanceOf(DependencyUnavailableException.class, rejected.getCause());
+
+            gate.countDown();
+            assertEquals("ok", first.get(5, TimeUnit.SECONDS).getBody());
+            assertEquals(1, registry.get("sprouty.http.client").tag("outcome", "bulkhead_full").timer().count());
+        } finally {
+            caller.shutdownNow();
+        }
+    }
+
+    private HttpClientProperties.Policy policy() {
+        HttpClientProperties.Policy policy = new HttpClientProperties.Policy();
+        policy.setHosts(List.of("localhost"));
+        policy.setBackoff(Duration.ofMillis(1));
+        return policy;
+    }
+
+    private RestTemplate client(HttpClientProperties.Policy policy) {
+        HttpClientProperties properties = new HttpClientProperties();
+        properties.getDependencies().put("stub", policy);
+        factory = new ResilientRestTemplateFactory(properties, registry);
+        return factory.create();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int call = hits.getAndIncrement();
+        try {
+            if (delayMs > 0) Thread.sleep(delayMs);
+            if (gate != null) gate.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<Integer> sequence = statuses;
+        int status = sequence.get(Math.min(call, sequence.size() - 1));
+        byte[] body = (status == 200 ? "ok" : "error").getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        } catch (IOException ignored) {
+            // Client gave up (read timeout)
+        }
+        exchange.close();
+    }
+}
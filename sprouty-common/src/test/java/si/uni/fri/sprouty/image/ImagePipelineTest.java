@@ -0,0 +1,78 @@
+package si.uni.fri.sprouty.image;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImagePipelineTest {
+
+    private final InMemoryBlobStore store = new InMemoryBlobStore();
+    private final ImagePipeline pipeline = new ImagePipeline(store, new ImageVariantGenerator(400, 200, 50, 0.8f), 1, 4);
+
+    @AfterEach
+    void tearDown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    void submit_ShouldStoreDownscaledVariantsNextToOriginal() throws Exception {
+        byte[] original = jpeg(1200, 800);
+        store.put("users/u1/plants/abc.jpg", original, "image/jpeg");
+
+        ImagePipeline.VariantUrls urls = pipeline.submit("users/u1/plants/abc.jpg").get(10, TimeUnit.SECONDS);
+
+        assertEquals("memory://users/u1/plants/abc_normalized.jpg", urls.normalizedUrl());
+        assertEquals("memory://users/u1/plants/abc_medium.jpg", urls.mediumUrl());
+        assertEquals("memory://users/u1/plants/abc_thumb.jpg", urls.thumbnailUrl());
+
+        assertDimensions(store.get("users/u1/plants/abc_normalized.jpg"), 400, 267);
+        assertDimensions(store.get("users/u1/plants/abc_medium.jpg"), 200, 134);
+        assertDimensions(store.get("users/u1/plants/abc_thumb.jpg"), 50, 34);
+        assertEquals("image/jpeg", store.contentType("users/u1/plants/abc_thumb.jpg"));
+    }
+
+    @Test
+    void submit_ShouldNotUpscaleSmallImages() throws Exception {
+        ImagePipeline.VariantUrls urls = pipeline.submit("sensors/mac/1.jpg", jpeg(100, 80)).get(10, TimeUnit.SECONDS);
+
+        assertNotNull(urls.thumbnailUrl());
+        assertDimensions(store.get("sensors/mac/1_normalized.jpg"), 100, 80);
+        assertDimensions(store.get("sensors/mac/1_thumb.jpg"), 50, 40);
+    }
+
+    @Test
+    void exifOrientation_ShouldReadRotationTag() {
+        // SOI, APP1 "Exif\0\0", little-endian TIFF header, IFD0 with one orientation entry (6 = rotate 90 CW)
+        byte[] jpeg = {
+                (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE1, 0x00, 0x22,
+                'E', 'x', 'i', 'f', 0, 0,
+                'I', 'I', 0x2A, 0x00, 0x08, 0x00, 0x00, 0x00,
+                0x01, 0x00,
+                0x12, 0x01, 0x03, 0x00, 0x01, 0x00, 0x00, 0x00, 0x06, 0x00, 0x00, 0x00,
+                0x00, 0x00, 0x00, 0x00,
+                (byte) 0xFF, (byte) 0xD9
+        };
+
+        assertEquals(6, ImageVariantGenerator.exifOrientation(jpeg));
+        assertEquals(1, ImageVariantGenerator.exifOrientation(new byte[]{1, 2, 3}));
+    }
+
+    private static byte[] jpeg(int width, int height) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "jpeg", out);
+        return out.toByteArray();
+    }
+
+    private static void assertDimensions(byte[] jpeg, int width, int height) throws Exception {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(jpeg));
+        assertEquals(width, image.getWidth());
+        assertEquals(height, image.getHeight());
+    }
+}
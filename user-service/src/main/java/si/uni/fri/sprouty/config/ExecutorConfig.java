@@ -0,0 +1,24 @@
+package si.uni.fri.sprouty.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import si.uni.fri.sprouty.concurrent.VirtualThreadPinningMonitor;
+
+import java.time.Duration;
+
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Registered only when the service runs on virtual threads (SPROUTY_VIRTUAL_THREADS=true).
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(value = "spring.threads.virtual.enabled", havingValue = "true")
+    public VirtualThreadPinningMonitor pinningMonitor(MeterRegistry meterRegistry,
+                                                      @Value("${sprouty.threads.pinning-threshold-ms:20}") long thresholdMs) {
+        return new VirtualThreadPinningMonitor(meterRegistry, Duration.ofMillis(thresholdMs));
+    }
+}